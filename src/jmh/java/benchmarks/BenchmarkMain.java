@@ -0,0 +1,31 @@
+package benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа набора бенчмарков.
+ * Принимает те же аргументы, что и JMH, и всегда подключает профилировщик GC,
+ * чтобы рядом со временем печатались скорость аллокаций и байты на операцию (gc.alloc.rate.norm).
+ * <p>
+ * Пример: {@code java -jar target/benchmarks.jar GameModelBenchmark -p robots=100000}
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
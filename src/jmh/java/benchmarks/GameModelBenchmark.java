@@ -0,0 +1,97 @@
+package benchmarks;
+
+import model.GameModel;
+import model.MathKernel;
+import model.RobotFleet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шаг модели: основной робот и флот.
+ * <p>
+ * Цели лежат внутри окружности поворота, поэтому роботы кружат и никогда не прибывают:
+ * каждая итерация измеряет одну и ту же установившуюся нагрузку, а не долю еще едущих роботов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class GameModelBenchmark {
+    /**
+     * Расстояние от робота до цели по перпендикуляру к направлению - меньше радиуса поворота v/ω = 100.
+     */
+    private static final double ORBIT_TARGET_OFFSET = 50;
+
+    @Param({"1000", "100000"})
+    public int robots;
+
+    @Param({"strict", "fast"})
+    public String math;
+
+    /**
+     * Векторный шаг флота, см. {@link RobotFleet#setVectorized}; ядро тригонометрии тогда влияет
+     * только на основного робота и хвост флота.
+     */
+    @Param({"false", "true"})
+    public boolean vector;
+
+    private GameModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new GameModel();
+        model.setMathKernel("fast".equals(math) ? MathKernel.FAST : MathKernel.STRICT);
+        model.setTargetPosition(new Point(100, 150));
+        RobotFleet fleet = model.getFleet();
+        fleet.setVectorized(vector);
+        Random random = new Random(42);
+        for (int i = 0; i < robots; i++) {
+            double x = 200 + random.nextDouble() * 600;
+            double y = 200 + random.nextDouble() * 600;
+            double direction = random.nextDouble() * 2 * Math.PI;
+            int targetX = (int) (x + ORBIT_TARGET_OFFSET * Math.cos(direction + Math.PI / 2));
+            int targetY = (int) (y + ORBIT_TARGET_OFFSET * Math.sin(direction + Math.PI / 2));
+            fleet.addRobot(x, y, direction, targetX, targetY);
+        }
+    }
+
+    /**
+     * Шаг одного основного робота.
+     */
+    @Benchmark
+    public void updateRobot() {
+        model.updateRobot();
+    }
+
+    /**
+     * Шаг флота одним проходом по столбцам.
+     */
+    @Benchmark
+    public void updateFleet() {
+        model.updateFleet();
+    }
+
+    /**
+     * Полный тик: навигация, основной робот, флот и пространственный индекс.
+     */
+    @Benchmark
+    public void update() {
+        model.update(GameModel.DEFAULT_DURATION);
+    }
+}
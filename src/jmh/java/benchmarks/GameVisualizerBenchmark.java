@@ -0,0 +1,85 @@
+package benchmarks;
+
+import gui.windows.game.GameVisualizer;
+import model.GameModel;
+import model.RobotFleet;
+import model.WorldSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отрисовка панели игры во внеэкранное изображение.
+ * Панель создается без контроллера, поэтому часы симуляции не запускаются, модель не шагает
+ * и не присылает уведомлений, и каждый кадр рисует один и тот же снимок мира.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameVisualizerBenchmark {
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+
+    @Param({"0", "100", "10000"})
+    public int robots;
+
+    @Param({"false", "true"})
+    public boolean obstacles;
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private GameModel model;
+    private GameVisualizer visualizer;
+
+    @Setup
+    public void setUp() {
+        model = new GameModel();
+        RobotFleet fleet = model.getFleet();
+        Random random = new Random(42);
+        for (int i = 0; i < robots; i++) {
+            fleet.addRobot(random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT,
+                    random.nextDouble() * 2 * Math.PI, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+        if (obstacles) {
+            for (int x = 300; x < 700; x += 10) {
+                model.toggleObstacle(x, 400);
+            }
+        }
+        model.readSnapshot(new WorldSnapshot());
+        model.update(GameModel.DEFAULT_DURATION);
+
+        visualizer = new GameVisualizer(model, null);
+        visualizer.setSize(WIDTH, HEIGHT);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.removeUpdateListener(visualizer);
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        visualizer.paint(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import log.LogChangeListener;
+import log.LogLevel;
+import log.LogWindowSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Добавление записи в лог с разным количеством слушателей, из одного и из нескольких потоков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogWindowSourceBenchmark {
+    private static final String MESSAGE = "Новая строка";
+
+    @Param({"0", "1", "8"})
+    public int listeners;
+
+    private LogWindowSource source;
+
+    @Setup
+    public void setUp() {
+        source = new LogWindowSource(100);
+        for (int i = 0; i < listeners; i++) {
+            source.registerListener(new CountingListener());
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        source.append(LogLevel.Debug, MESSAGE);
+    }
+
+    /**
+     * Несколько писателей в один источник, как при логировании из потоков симуляции и Swing.
+     */
+    @Benchmark
+    @Threads(4)
+    public void appendConcurrent() {
+        source.append(LogLevel.Debug, MESSAGE);
+    }
+
+    /**
+     * Слушатель, который только считает уведомления, чтобы измерялась стоимость рассылки, а не реакции.
+     */
+    private static class CountingListener implements LogChangeListener {
+        private volatile int notifications;
+
+        @Override
+        public void onLogChanged() {
+            notifications++;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import exceptions.state.LoadException;
+import exceptions.state.SaveException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import state.WindowState;
+import state.WindowStateManager;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сохранение и загрузка состояний окон во временный файл.
+ * Вместо главного окна используется внутреннее окно, поэтому бенчмарк работает без дисплея.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WindowStateManagerBenchmark {
+    @Param({"2", "32"})
+    public int windows;
+
+    private File configLocation;
+    private WindowStateManager manager;
+
+    @Setup
+    public void setUp() throws IOException, SaveException {
+        configLocation = Files.createTempFile("windowStates", ".conf").toFile();
+        StateWindow parent = new StateWindow("main");
+        parent.setBounds(0, 0, 1024, 768);
+        for (int i = 0; i < windows; i++) {
+            StateWindow window = new StateWindow("window" + i);
+            window.setBounds(10 * i, 20 * i, 300, 400);
+            parent.getContentPane().add(window);
+        }
+        manager = new WindowStateManager(configLocation, parent);
+        manager.save();
+    }
+
+    @TearDown
+    public void tearDown() {
+        configLocation.delete();
+    }
+
+    @Benchmark
+    public void save() throws SaveException {
+        manager.save();
+    }
+
+    @Benchmark
+    public void load() throws LoadException {
+        manager.load();
+    }
+
+    private static class StateWindow extends JInternalFrame implements WindowState {
+        private final String prefix;
+
+        StateWindow(String prefix) {
+            super(prefix, true, true, true, true);
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String getPrefix() {
+            return prefix;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package behavior;
+
+/**
+ * Сценарий поведения одного робота флота: обычный блокирующий код вида
+ * {@code robot.moveTo(x, y); robot.waitUntilArrived(); robot.sleepTicks(50);}.
+ * Каждый сценарий выполняется в своем виртуальном потоке {@link BehaviorRuntime}
+ * и ждет тиков симуляции через {@link BehaviorContext}.
+ */
+public interface Behavior {
+    /**
+     * Выполняет сценарий. Возврат из метода завершает сценарий.
+     *
+     * @param robot робот, которым управляет сценарий
+     * @throws InterruptedException если сценарий остановлен во время ожидания
+     */
+    void run(BehaviorContext robot) throws InterruptedException;
+}
@@ -0,0 +1,270 @@
+package behavior;
+
+import model.WorldSnapshot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Робот глазами сценария поведения: чтение позы из снимка последнего тика,
+ * команды движения и ожидание тиков.
+ * <p>
+ * Методы ожидания вызываются только из потока своего сценария. Поток паркуется, пока
+ * планировщик {@link BehaviorRuntime} не разбудит его после нужного тика; ожидание прибытия
+ * проверяет сам планировщик, поэтому едущий робот не будит свой поток каждый тик.
+ * Цели из {@link #moveTo} планировщик отправляет в модель одной командой на все сценарии.
+ */
+public final class BehaviorContext {
+    /**
+     * Расстояние до цели, на котором робот считается прибывшим.
+     */
+    public static final double ARRIVAL_RADIUS = 1;
+
+    private static final VarHandle WAKE_TICK;
+
+    static {
+        try {
+            WAKE_TICK = MethodHandles.lookup().findVarHandle(BehaviorContext.class, "mWakeTick", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final BehaviorRuntime mRuntime;
+    private final int mId;
+    /**
+     * Поток сценария; назначается средой до запуска.
+     */
+    Thread thread;
+
+    /**
+     * Тик, после которого нужно разбудить сценарий, или 0, если сценарий не ждет.
+     * Сбрасывает в 0 тот, кто будит: планировщик или сам сценарий.
+     */
+    @SuppressWarnings("unused")
+    private volatile long mWakeTick;
+    private volatile boolean mWakeOnArrival;
+
+    private volatile int mGoalX;
+    private volatile int mGoalY;
+    /**
+     * Номер последней цели сценария; пишется после координат. 0 - целей еще не было.
+     */
+    private volatile int mGoalVersion;
+    /**
+     * Номер последней цели, отправленной в модель. Используется только планировщиком.
+     */
+    private int mSubmittedGoalVersion;
+
+    BehaviorContext(BehaviorRuntime runtime, int id) {
+        mRuntime = runtime;
+        mId = id;
+    }
+
+    /**
+     * @return идентификатор робота во флоте
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * @return номер последнего тика, после которого планировщик будил сценарии
+     */
+    public long getTick() {
+        return mRuntime.getReleasedTick();
+    }
+
+    public double getX() {
+        return mRuntime.positionX(mId);
+    }
+
+    public double getY() {
+        return mRuntime.positionY(mId);
+    }
+
+    public double getDirection() {
+        return mRuntime.direction(mId);
+    }
+
+    /**
+     * @return количество роботов во флоте на последнем тике
+     */
+    public int getFleetSize() {
+        return mRuntime.fleetSize();
+    }
+
+    /**
+     * @param id идентификатор другого робота флота
+     * @return координата X робота или NaN, если такого робота нет
+     */
+    public double getRobotX(int id) {
+        return mRuntime.positionX(id);
+    }
+
+    /**
+     * @param id идентификатор другого робота флота
+     * @return координата Y робота или NaN, если такого робота нет
+     */
+    public double getRobotY(int id) {
+        return mRuntime.positionY(id);
+    }
+
+    /**
+     * Отправляет робота к точке. Не блокируется: цель попадет в модель при ближайшем проходе
+     * планировщика, то есть начнет действовать через один-два тика.
+     *
+     * @param x координата X цели
+     * @param y координата Y цели
+     */
+    public void moveTo(int x, int y) {
+        mGoalX = x;
+        mGoalY = y;
+        mGoalVersion++;
+    }
+
+    /**
+     * @return true, если сценарий уже задавал роботу цель
+     */
+    public boolean hasGoal() {
+        return mGoalVersion != 0;
+    }
+
+    public int getGoalX() {
+        return mGoalX;
+    }
+
+    public int getGoalY() {
+        return mGoalY;
+    }
+
+    /**
+     * @return true, если робот на последнем тике был у цели, заданной сценарием, или цели нет
+     */
+    public boolean isArrived() {
+        return !hasGoal() || mRuntime.distance(mId, mGoalX, mGoalY) < ARRIVAL_RADIUS;
+    }
+
+    /**
+     * Ждет следующего тика симуляции.
+     *
+     * @return номер тика, после которого сценарий разбужен
+     * @throws InterruptedException если сценарий остановлен
+     */
+    public long awaitTick() throws InterruptedException {
+        return await(mRuntime.getReleasedTick() + 1, false);
+    }
+
+    /**
+     * Ждет заданное количество тиков.
+     *
+     * @param ticks количество тиков
+     * @return номер тика, после которого сценарий разбужен
+     * @throws InterruptedException если сценарий остановлен
+     */
+    public long sleepTicks(long ticks) throws InterruptedException {
+        return await(mRuntime.getReleasedTick() + Math.max(ticks, 1), false);
+    }
+
+    /**
+     * Ждет, пока робот доедет до цели, заданной {@link #moveTo}.
+     *
+     * @throws InterruptedException если сценарий остановлен
+     */
+    public void waitUntilArrived() throws InterruptedException {
+        while (!isArrived()) {
+            await(Long.MAX_VALUE, true);
+        }
+    }
+
+    /**
+     * Ждет, пока робот доедет до цели, но не дольше заданного количества тиков.
+     *
+     * @param maxTicks наибольшее время ожидания в тиках
+     * @return true, если робот доехал
+     * @throws InterruptedException если сценарий остановлен
+     */
+    public boolean waitUntilArrived(long maxTicks) throws InterruptedException {
+        long deadline = mRuntime.getReleasedTick() + Math.max(maxTicks, 1);
+        while (!isArrived()) {
+            if (mRuntime.getReleasedTick() >= deadline) {
+                return false;
+            }
+            await(deadline, true);
+        }
+        return true;
+    }
+
+    /**
+     * Паркует поток сценария, пока планировщик не разбудит его после тика wakeTick
+     * или, если onArrival, после тика, на котором робот оказался у цели.
+     */
+    private long await(long wakeTick, boolean onArrival) throws InterruptedException {
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("Ждать тиков может только поток сценария робота " + mId);
+        }
+        mWakeOnArrival = onArrival;
+        mWakeTick = wakeTick;
+        // Если планировщик уже прошел нужный тик, пока сценарий готовился ждать, сценарий будит себя сам.
+        if (mRuntime.getReleasedTick() >= wakeTick) {
+            WAKE_TICK.compareAndSet(this, wakeTick, 0L);
+        }
+        while (mWakeTick != 0) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                mWakeTick = 0;
+                throw new InterruptedException();
+            }
+        }
+        return mRuntime.getReleasedTick();
+    }
+
+    /**
+     * Будит сценарий, если он ждет этого тика или прибытия, которое видно в снимке.
+     * Вызывается только планировщиком.
+     *
+     * @param tick     тик, после которого будятся сценарии
+     * @param snapshot снимок этого тика
+     * @return true, если сценарий разбужен
+     */
+    boolean release(long tick, WorldSnapshot snapshot) {
+        long wakeTick = mWakeTick;
+        if (wakeTick == 0) {
+            return false;
+        }
+        if (wakeTick > tick && !(mWakeOnArrival && isArrivedIn(snapshot))) {
+            return false;
+        }
+        if (!WAKE_TICK.compareAndSet(this, wakeTick, 0L)) {
+            return false;
+        }
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    private boolean isArrivedIn(WorldSnapshot snapshot) {
+        if (mId >= snapshot.getFleetSize()) {
+            return false;
+        }
+        double dx = snapshot.getFleetPositionX(mId) - mGoalX;
+        double dy = snapshot.getFleetPositionY(mId) - mGoalY;
+        return dx * dx + dy * dy < ARRIVAL_RADIUS * ARRIVAL_RADIUS;
+    }
+
+    /**
+     * @return номер цели, которую еще нужно отправить в модель, или 0
+     */
+    int pendingGoalVersion() {
+        int version = mGoalVersion;
+        return version != mSubmittedGoalVersion ? version : 0;
+    }
+
+    void markGoalSubmitted(int version) {
+        mSubmittedGoalVersion = version;
+    }
+
+    void interrupt() {
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,284 @@
+package behavior;
+
+import log.Logger;
+import metrics.Metrics;
+import model.GameModel;
+import model.WorldSnapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Среда сценариев поведения: каждый сценарий {@link Behavior} выполняется в своем виртуальном потоке
+ * и паркуется до следующего тика модели, поэтому десятки тысяч сценариев стоят только памяти их стеков.
+ * <p>
+ * Поток симуляции о сценариях не знает и никогда их не ждет: слушатель тиков модели лишь запоминает номер
+ * тика и будит поток планировщика. Планировщик после каждого тика копирует снимок мира, отправляет
+ * в модель одной командой все новые цели сценариев и будит те сценарии, которые ждут этого тика
+ * или прибытия робота. Если сценарии или планировщик не успевают, промежуточные тики пропускаются:
+ * сценарий просыпается после последнего тика, а не копит очередь.
+ */
+public class BehaviorRuntime implements AutoCloseable {
+    private final GameModel mModel;
+    private final ConcurrentHashMap<Integer, BehaviorContext> mScripts = new ConcurrentHashMap<>();
+    /**
+     * Снимок последнего тика, из которого сценарии читают позы. Пишет только планировщик под блокировкой записи.
+     */
+    private final WorldSnapshot mSnapshot = new WorldSnapshot();
+    private final StampedLock mSnapshotLock = new StampedLock();
+    private final LongConsumer mTickListener = this::onTick;
+    private final Thread mScheduler;
+
+    private volatile boolean mRunning = true;
+    /**
+     * Последний тик модели.
+     */
+    private volatile long mTick;
+    /**
+     * Последний тик, после которого планировщик будил сценарии.
+     */
+    private volatile long mReleasedTick;
+    private volatile long mWakeups;
+
+    private BehaviorContext[] mGoalScripts = new BehaviorContext[0];
+    private int[] mGoalVersions = new int[0];
+
+    /**
+     * Создает среду и подписывает ее на тики модели.
+     *
+     * @param model модель, тики которой ведут сценарии
+     */
+    public BehaviorRuntime(GameModel model) {
+        mModel = model;
+        mScheduler = new Thread(this::schedule, "behavior scheduler");
+        mScheduler.setDaemon(true);
+        mScheduler.start();
+        model.addTickListener(mTickListener);
+    }
+
+    /**
+     * Запускает сценарий для робота флота. Прежний сценарий этого робота прерывается.
+     * Сценарий начинает работу после ближайшего тика, когда позы роботов уже известны.
+     *
+     * @param id       идентификатор робота во флоте
+     * @param behavior сценарий
+     */
+    public void start(int id, Behavior behavior) {
+        if (!mRunning) {
+            throw new IllegalStateException("Среда сценариев закрыта");
+        }
+        BehaviorContext context = new BehaviorContext(this, id);
+        context.thread = Thread.ofVirtual().name("behavior " + id).unstarted(() -> runScript(context, behavior));
+        BehaviorContext previous = mScripts.put(id, context);
+        if (previous != null) {
+            previous.interrupt();
+        }
+        context.thread.start();
+        LockSupport.unpark(mScheduler);
+    }
+
+    /**
+     * Прерывает сценарий робота, если он есть.
+     *
+     * @param id идентификатор робота во флоте
+     */
+    public void stop(int id) {
+        BehaviorContext context = mScripts.remove(id);
+        if (context != null) {
+            context.interrupt();
+        }
+    }
+
+    /**
+     * @return количество выполняющихся сценариев
+     */
+    public int getScriptCount() {
+        return mScripts.size();
+    }
+
+    /**
+     * @return сколько раз планировщик будил сценарии
+     */
+    public long getWakeups() {
+        return mWakeups;
+    }
+
+    /**
+     * Прерывает все сценарии и отписывается от модели.
+     */
+    @Override
+    public void close() {
+        mRunning = false;
+        mModel.removeTickListener(mTickListener);
+        LockSupport.unpark(mScheduler);
+        for (Integer id : mScripts.keySet()) {
+            stop(id);
+        }
+        try {
+            mScheduler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runScript(BehaviorContext context, Behavior behavior) {
+        try {
+            context.awaitTick();
+            behavior.run(context);
+        } catch (InterruptedException e) {
+            // сценарий остановлен
+        } catch (RuntimeException e) {
+            Logger.error("Сценарий робота " + context.getId() + " завершился с ошибкой: " + e);
+        } finally {
+            mScripts.remove(context.getId(), context);
+        }
+    }
+
+    /**
+     * Слушатель тиков модели; выполняется в потоке симуляции и только будит планировщик.
+     */
+    private void onTick(long tick) {
+        mTick = tick;
+        if (!mScripts.isEmpty()) {
+            LockSupport.unpark(mScheduler);
+        }
+    }
+
+    private void schedule() {
+        long dispatched = 0;
+        while (mRunning) {
+            long tick = mTick;
+            if (tick == dispatched || mScripts.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+            dispatched = tick;
+            long start = System.nanoTime();
+            long stamp = mSnapshotLock.writeLock();
+            try {
+                mModel.readSnapshot(mSnapshot);
+            } finally {
+                mSnapshotLock.unlockWrite(stamp);
+            }
+            if (mSnapshot.getVersion() == 0) {
+                // модель еще не публиковала снимок: чтение его запросило, он появится после следующего тика
+                continue;
+            }
+            mReleasedTick = tick;
+            submitGoals();
+            long wakeups = 0;
+            for (BehaviorContext script : mScripts.values()) {
+                if (script.release(tick, mSnapshot)) {
+                    wakeups++;
+                }
+            }
+            mWakeups += wakeups;
+            Metrics.BEHAVIOR_DISPATCH.recordSince(start);
+        }
+    }
+
+    /**
+     * Собирает новые цели сценариев и отправляет их в модель одной командой.
+     * Если очередь команд заполнена, цели останутся новыми и уйдут при следующем проходе.
+     */
+    private void submitGoals() {
+        int count = 0;
+        for (BehaviorContext script : mScripts.values()) {
+            int version = script.pendingGoalVersion();
+            if (version == 0) {
+                continue;
+            }
+            if (count == mGoalScripts.length) {
+                int capacity = Math.max(16, count * 2);
+                mGoalScripts = Arrays.copyOf(mGoalScripts, capacity);
+                mGoalVersions = Arrays.copyOf(mGoalVersions, capacity);
+            }
+            mGoalScripts[count] = script;
+            mGoalVersions[count] = version;
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        int[] ids = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = mGoalScripts[i].getId();
+            xs[i] = mGoalScripts[i].getGoalX();
+            ys[i] = mGoalScripts[i].getGoalY();
+        }
+        boolean accepted = mModel.submit(model -> {
+            int size = model.getFleet().size();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] < size) {
+                    model.setFleetTarget(ids[i], xs[i], ys[i]);
+                }
+            }
+        });
+        if (accepted) {
+            for (int i = 0; i < count; i++) {
+                mGoalScripts[i].markGoalSubmitted(mGoalVersions[i]);
+            }
+        }
+        Arrays.fill(mGoalScripts, 0, count, null);
+    }
+
+    long getReleasedTick() {
+        return mReleasedTick;
+    }
+
+    int fleetSize() {
+        long stamp = mSnapshotLock.readLock();
+        try {
+            return mSnapshot.getFleetSize();
+        } finally {
+            mSnapshotLock.unlockRead(stamp);
+        }
+    }
+
+    double positionX(int id) {
+        long stamp = mSnapshotLock.readLock();
+        try {
+            return id >= 0 && id < mSnapshot.getFleetSize() ? mSnapshot.getFleetPositionX(id) : Double.NaN;
+        } finally {
+            mSnapshotLock.unlockRead(stamp);
+        }
+    }
+
+    double positionY(int id) {
+        long stamp = mSnapshotLock.readLock();
+        try {
+            return id >= 0 && id < mSnapshot.getFleetSize() ? mSnapshot.getFleetPositionY(id) : Double.NaN;
+        } finally {
+            mSnapshotLock.unlockRead(stamp);
+        }
+    }
+
+    double direction(int id) {
+        long stamp = mSnapshotLock.readLock();
+        try {
+            return id >= 0 && id < mSnapshot.getFleetSize() ? mSnapshot.getFleetDirection(id) : Double.NaN;
+        } finally {
+            mSnapshotLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return расстояние от робота до точки или бесконечность, если такого робота нет
+     */
+    double distance(int id, double x, double y) {
+        long stamp = mSnapshotLock.readLock();
+        try {
+            if (id < 0 || id >= mSnapshot.getFleetSize()) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return Math.hypot(mSnapshot.getFleetPositionX(id) - x, mSnapshot.getFleetPositionY(id) - y);
+        } finally {
+            mSnapshotLock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package behavior;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Готовые сценарии поведения.
+ */
+public final class Behaviors {
+    /**
+     * Через сколько тиков сценарий следования проверяет, не ушел ли ведущий.
+     */
+    private static final long FOLLOW_PERIOD = 10;
+
+    private Behaviors() {
+    }
+
+    /**
+     * Патрулирование: робот по кругу объезжает точки маршрута.
+     *
+     * @param waypoints точки маршрута
+     * @return сценарий
+     */
+    public static Behavior patrol(Point... waypoints) {
+        Point[] route = waypoints.clone();
+        return robot -> {
+            if (route.length == 0) {
+                return;
+            }
+            while (true) {
+                for (Point point : route) {
+                    robot.moveTo(point.x, point.y);
+                    robot.waitUntilArrived();
+                }
+            }
+        };
+    }
+
+    /**
+     * Следование: робот держится рядом с ведущим роботом флота.
+     * Новая цель задается, только если ведущий отъехал от прежней цели дальше заданного расстояния,
+     * чтобы не перестраивать путь каждый тик.
+     *
+     * @param leaderId идентификатор ведущего робота
+     * @param distance на каком расстоянии от ведущего робот перестает догонять
+     * @return сценарий
+     */
+    public static Behavior follow(int leaderId, double distance) {
+        return robot -> {
+            while (true) {
+                double leaderX = robot.getRobotX(leaderId);
+                double leaderY = robot.getRobotY(leaderId);
+                if (Double.isNaN(leaderX)) {
+                    return;
+                }
+                boolean far = Math.hypot(robot.getX() - leaderX, robot.getY() - leaderY) > distance;
+                boolean moved = !robot.hasGoal()
+                        || Math.hypot(robot.getGoalX() - leaderX, robot.getGoalY() - leaderY) > distance;
+                if (far && moved) {
+                    robot.moveTo((int) Math.round(leaderX), (int) Math.round(leaderY));
+                }
+                robot.sleepTicks(FOLLOW_PERIOD);
+            }
+        };
+    }
+
+    /**
+     * Поиск: робот объезжает случайные точки области. Точка, до которой не удалось доехать
+     * за заданное время, например из-за препятствий, пропускается.
+     *
+     * @param area     область поиска
+     * @param maxTicks наибольшее время пути к одной точке в тиках
+     * @param seed     зерно генератора точек
+     * @return сценарий
+     */
+    public static Behavior search(Rectangle area, long maxTicks, long seed) {
+        Rectangle bounds = new Rectangle(area);
+        return robot -> {
+            Random random = new Random(seed);
+            while (true) {
+                robot.moveTo(bounds.x + random.nextInt(Math.max(bounds.width, 1)),
+                        bounds.y + random.nextInt(Math.max(bounds.height, 1)));
+                robot.waitUntilArrived(maxTicks);
+            }
+        };
+    }
+}
@@ -1,26 +1,63 @@
 package controller;
 
+import log.Logger;
+import model.FleetTickEngine;
 import model.GameModel;
+import model.ModelCommand;
 
 import java.awt.*;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.BitSet;
 
 /**
  * Класс контролера для управления моделью
  */
 public class GameController {
+    /**
+     * Частота тиков симуляции по умолчанию в герцах.
+     */
+    public static final double DEFAULT_TICK_RATE = 1000 / GameModel.DEFAULT_DURATION;
+    /**
+     * Количество шагов, которое часы могут сделать за одно пробуждение, чтобы догнать расписание.
+     */
+    public static final int DEFAULT_MAX_CATCH_UP_STEPS = 5;
+
     private final GameModel mModel;
-    private final Timer mTimer = new Timer("events generator", true);
+    private final SimulationClock mClock;
 
     public GameController(GameModel model) {
+        this(model,
+                Double.parseDouble(System.getProperty("robots.tickRate", String.valueOf(DEFAULT_TICK_RATE))),
+                Integer.getInteger("robots.maxCatchUpSteps", DEFAULT_MAX_CATCH_UP_STEPS));
+    }
+
+    /**
+     * Создает контроллер с заданной частотой тиков.
+     *
+     * @param model           модель для управления
+     * @param tickRate        частота тиков в герцах
+     * @param maxCatchUpSteps максимальное количество шагов за одно пробуждение часов
+     */
+    public GameController(GameModel model, double tickRate, int maxCatchUpSteps) {
         mModel = model;
-        mTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                mModel.updateRobot();
-            }
-        }, 0, 10);
+        FleetTickEngine engine = FleetTickEngine.fromSystemProperties();
+        // модель могут уже шагать другие часы, поэтому движок меняется на границе тика
+        if (!mModel.submit(m -> m.setFleetEngine(engine))) {
+            engine.close();
+        }
+        if ("analytic".equalsIgnoreCase(System.getProperty("robots.engine"))) {
+            mModel.submit(m -> m.setAnalytic(true));
+        }
+        mClock = new SimulationClock("events generator", tickRate, maxCatchUpSteps, this::tick);
+        mClock.start();
+    }
+
+    /**
+     * Один шаг симуляции.
+     *
+     * @param duration длительность шага в миллисекундах
+     */
+    private void tick(double duration) {
+        mModel.update(duration);
     }
 
     /**
@@ -30,6 +67,76 @@ public class GameController {
      * @param point - новая позиция
      */
     public void setTargetPosition(Point point) {
-        mModel.setTargetPosition(point);
+        Point target = new Point(point);
+        submit(model -> model.setTargetPosition(target));
+    }
+
+    /**
+     * Отправляет робота флота к новой цели.
+     *
+     * @param id    идентификатор робота во флоте
+     * @param point новая цель
+     */
+    public void setFleetTarget(int id, Point point) {
+        int x = point.x;
+        int y = point.y;
+        submit(model -> model.setFleetTarget(id, x, y));
+    }
+
+    /**
+     * Отправляет группу роботов флота к новой цели одной командой.
+     *
+     * @param ids   идентификаторы роботов во флоте
+     * @param point новая цель
+     */
+    public void setFleetTargets(BitSet ids, Point point) {
+        BitSet robots = (BitSet) ids.clone();
+        int x = point.x;
+        int y = point.y;
+        submit(model -> {
+            int size = model.getFleet().size();
+            for (int id = robots.nextSetBit(0); id >= 0 && id < size; id = robots.nextSetBit(id + 1)) {
+                model.setFleetTarget(id, x, y);
+            }
+        });
+    }
+
+    /**
+     * Ставит или убирает препятствие в точке.
+     *
+     * @param point точка на поле
+     */
+    public void toggleObstacle(Point point) {
+        int x = point.x;
+        int y = point.y;
+        submit(model -> model.toggleObstacle(x, y));
+    }
+
+    /**
+     * Отправляет команду в очередь модели; она применится в начале ближайшего тика.
+     * Поток Swing не ждет поток симуляции и не трогает состояние модели посреди тика.
+     *
+     * @param command команда
+     */
+    public void submit(ModelCommand command) {
+        if (!mModel.submit(command)) {
+            Logger.error("Очередь команд модели заполнена, команда отброшена");
+        }
+    }
+
+    /**
+     * Возвращает статистику часов симуляции: дрожание тиков и перерасходы.
+     *
+     * @return статистика часов
+     */
+    public SimulationClock.Statistics getClockStatistics() {
+        return mClock.getStatistics();
+    }
+
+    /**
+     * Останавливает симуляцию.
+     */
+    public void stop() {
+        mClock.stop();
     }
 }
\ No newline at end of file
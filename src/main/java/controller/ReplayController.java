@@ -0,0 +1,133 @@
+package controller;
+
+import model.CoalescingNotifier;
+import model.ModelUpdateListener;
+import model.TrajectoryReplay;
+import model.WorldSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Контроллер воспроизведения записи траекторий.
+ * Свои часы продвигают текущий тик со скоростью воспроизведения: положительная скорость -
+ * вперед, отрицательная - назад, ноль - пауза. Представления подписываются на уведомления
+ * так же, как на модель, и читают снимок текущего тика через {@link #readSnapshot}.
+ */
+public class ReplayController {
+    private final TrajectoryReplay mReplay;
+    private final SimulationClock mClock;
+    private final CoalescingNotifier mNotifier = new CoalescingNotifier();
+
+    /**
+     * Текущая позиция воспроизведения в тиках записи; дробная часть копится при нецелой скорости.
+     */
+    private double mPosition;
+    private double mSpeed;
+
+    /**
+     * Создает контроллер на паузе на первом тике записи.
+     *
+     * @param replay открытая запись
+     */
+    public ReplayController(TrajectoryReplay replay) {
+        mReplay = replay;
+        mPosition = replay.getFirstTick();
+        mClock = new SimulationClock("replay", GameController.DEFAULT_TICK_RATE,
+                GameController.DEFAULT_MAX_CATCH_UP_STEPS, duration -> advance());
+        mClock.start();
+    }
+
+    private synchronized void advance() {
+        if (mSpeed == 0) {
+            return;
+        }
+        double position = Math.max(mReplay.getFirstTick(), Math.min(mPosition + mSpeed, mReplay.getLastTick()));
+        if ((long) position != (long) mPosition) {
+            mNotifier.publish();
+        }
+        mPosition = position;
+        if (position == mReplay.getFirstTick() || position == mReplay.getLastTick()) {
+            mSpeed = 0;
+        }
+    }
+
+    /**
+     * Запускает воспроизведение с указанной скоростью.
+     *
+     * @param speed сколько тиков записи проходит за тик часов; отрицательное значение - назад
+     */
+    public synchronized void play(double speed) {
+        mSpeed = speed;
+    }
+
+    public synchronized void pause() {
+        mSpeed = 0;
+    }
+
+    /**
+     * Переходит к указанному тику записи.
+     *
+     * @param tick номер тика
+     */
+    public synchronized void seek(long tick) {
+        mPosition = Math.max(mReplay.getFirstTick(), Math.min(tick, mReplay.getLastTick()));
+        mNotifier.publish();
+    }
+
+    public synchronized long getTick() {
+        return (long) mPosition;
+    }
+
+    public synchronized double getSpeed() {
+        return mSpeed;
+    }
+
+    public long getFirstTick() {
+        return mReplay.getFirstTick();
+    }
+
+    public long getLastTick() {
+        return mReplay.getLastTick();
+    }
+
+    /**
+     * Копирует позы текущего тика в буфер читателя.
+     *
+     * @param target буфер читателя
+     * @return тот же буфер
+     */
+    public WorldSnapshot readSnapshot(WorldSnapshot target) {
+        try {
+            return mReplay.readInto(getTick(), target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Регистрирует слушателя смены кадра воспроизведения.
+     *
+     * @param listener слушатель
+     * @param maxRate  максимальная частота уведомлений в герцах
+     * @param executor исполнитель, в котором вызывается слушатель
+     */
+    public void addUpdateListener(ModelUpdateListener listener, double maxRate, Executor executor) {
+        mNotifier.addListener(listener, maxRate, executor);
+    }
+
+    public void removeUpdateListener(ModelUpdateListener listener) {
+        mNotifier.removeListener(listener);
+    }
+
+    /**
+     * Останавливает часы и закрывает запись.
+     *
+     * @throws IOException если запись не удалось закрыть
+     */
+    public void close() throws IOException {
+        mClock.stop();
+        mReplay.close();
+    }
+}
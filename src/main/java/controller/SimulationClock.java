@@ -0,0 +1,209 @@
+package controller;
+
+import log.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Часы симуляции с фиксированным шагом.
+ * Тики планируются по абсолютному расписанию, поэтому задержки не накапливаются.
+ * Если поток проснулся поздно, часы догоняют расписание, делая не больше заданного
+ * количества шагов за одно пробуждение, а остальные тики пропускают и считают как перерасход.
+ * Ошибка шага записывается в лог и не останавливает часы.
+ */
+public class SimulationClock {
+    private final String mName;
+    private final long mPeriodNanos;
+    private final double mTimestep;
+    private final int mMaxCatchUpSteps;
+    private final DoubleConsumer mStep;
+
+    /**
+     * Текущий поток часов или null. Поток работает, пока он остается текущим, поэтому поток,
+     * остановленный перед повторным запуском, не шагает модель вместе с новым.
+     */
+    private volatile Thread mThread;
+
+    private volatile long mTicks;
+    private volatile long mCatchUpSteps;
+    private volatile long mOverruns;
+    private volatile long mDroppedTicks;
+    private volatile long mWakeups;
+    private volatile long mJitterSumNanos;
+    private volatile long mMaxJitterNanos;
+
+    /**
+     * Создает часы симуляции.
+     *
+     * @param name            имя потока часов
+     * @param tickRate        частота тиков в герцах
+     * @param maxCatchUpSteps максимальное количество шагов за одно пробуждение
+     * @param step            шаг симуляции, получает длительность шага в миллисекундах
+     */
+    public SimulationClock(String name, double tickRate, int maxCatchUpSteps, DoubleConsumer step) {
+        if (!(tickRate > 0) || Double.isInfinite(tickRate)) {
+            throw new IllegalArgumentException("Частота тиков должна быть положительной: " + tickRate);
+        }
+        if (maxCatchUpSteps < 1) {
+            throw new IllegalArgumentException("Количество шагов за пробуждение должно быть положительным: "
+                    + maxCatchUpSteps);
+        }
+        mName = name;
+        mPeriodNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / tickRate));
+        mTimestep = mPeriodNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        mMaxCatchUpSteps = maxCatchUpSteps;
+        mStep = step;
+    }
+
+    /**
+     * Запускает поток часов. Повторный запуск ничего не делает.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        Thread thread = new Thread(this::run, mName);
+        thread.setDaemon(true);
+        mThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Останавливает поток часов.
+     */
+    public synchronized void stop() {
+        Thread thread = mThread;
+        mThread = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        long next = System.nanoTime();
+        while (mThread == self) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(this, next - now);
+                continue;
+            }
+            recordJitter(now - next);
+            int steps = 0;
+            while (next <= now && steps < mMaxCatchUpSteps && mThread == self) {
+                try {
+                    mStep.accept(mTimestep);
+                } catch (RuntimeException e) {
+                    Logger.error("Шаг симуляции " + mName + " завершился с ошибкой: " + e);
+                }
+                next += mPeriodNanos;
+                steps++;
+            }
+            mTicks += steps;
+            if (steps > 1) {
+                mCatchUpSteps += steps - 1;
+            }
+            now = System.nanoTime();
+            if (next <= now) {
+                long dropped = (now - next) / mPeriodNanos + 1;
+                next += dropped * mPeriodNanos;
+                mDroppedTicks += dropped;
+                mOverruns++;
+            }
+        }
+    }
+
+    private void recordJitter(long jitterNanos) {
+        mWakeups++;
+        mJitterSumNanos += jitterNanos;
+        if (jitterNanos > mMaxJitterNanos) {
+            mMaxJitterNanos = jitterNanos;
+        }
+    }
+
+    /**
+     * Длительность одного шага симуляции в миллисекундах.
+     *
+     * @return длительность шага
+     */
+    public double getTimestep() {
+        return mTimestep;
+    }
+
+    /**
+     * Возвращает текущую статистику часов.
+     *
+     * @return снимок статистики
+     */
+    public Statistics getStatistics() {
+        long wakeups = mWakeups;
+        long meanJitter = wakeups == 0 ? 0 : mJitterSumNanos / wakeups;
+        return new Statistics(mTicks, mCatchUpSteps, mOverruns, mDroppedTicks, meanJitter, mMaxJitterNanos);
+    }
+
+    /**
+     * Статистика часов симуляции.
+     */
+    public static class Statistics {
+        private final long ticks;
+        private final long catchUpSteps;
+        private final long overruns;
+        private final long droppedTicks;
+        private final long meanJitterNanos;
+        private final long maxJitterNanos;
+
+        public Statistics(long ticks, long catchUpSteps, long overruns, long droppedTicks,
+                          long meanJitterNanos, long maxJitterNanos) {
+            this.ticks = ticks;
+            this.catchUpSteps = catchUpSteps;
+            this.overruns = overruns;
+            this.droppedTicks = droppedTicks;
+            this.meanJitterNanos = meanJitterNanos;
+            this.maxJitterNanos = maxJitterNanos;
+        }
+
+        /**
+         * @return количество выполненных шагов
+         */
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * @return количество дополнительных шагов, сделанных для догоняния расписания
+         */
+        public long getCatchUpSteps() {
+            return catchUpSteps;
+        }
+
+        /**
+         * @return количество пробуждений, после которых расписание не удалось догнать
+         */
+        public long getOverruns() {
+            return overruns;
+        }
+
+        /**
+         * @return количество пропущенных тиков
+         */
+        public long getDroppedTicks() {
+            return droppedTicks;
+        }
+
+        /**
+         * @return среднее опоздание пробуждения в наносекундах
+         */
+        public long getMeanJitterNanos() {
+            return meanJitterNanos;
+        }
+
+        /**
+         * @return максимальное опоздание пробуждения в наносекундах
+         */
+        public long getMaxJitterNanos() {
+            return maxJitterNanos;
+        }
+    }
+}
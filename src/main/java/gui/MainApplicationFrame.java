@@ -1,20 +1,30 @@
 package gui;
 
+import controller.GameController;
+import controller.ReplayController;
 import exceptions.state.LoadException;
 import exceptions.state.SaveException;
 import gui.components.ProgramMenuBar;
 import gui.windows.game.GameWindow;
 import gui.windows.game.CoordinateWindow;
+import gui.windows.game.OverlayMode;
 import gui.windows.log.LogWindow;
+import gui.windows.metrics.MetricsWindow;
+import gui.windows.replay.ReplayWindow;
 import log.Logger;
+import metrics.Metrics;
 import model.GameModel;
+import model.TrajectoryReplay;
 import state.WindowState;
+import telemetry.TelemetryServer;
 import state.WindowStateManager;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -25,6 +35,22 @@ public class MainApplicationFrame extends JFrame implements WindowState {
 
     private final JDesktopPane desktopPane = new JDesktopPane();
     private final ResourceBundle bundle = ResourceBundle.getBundle("messages", new Locale("ru", "RU"));
+    private final GameController gameController;
+    private final GameWindow gameWindow;
+    private final CoordinateWindow coordinateWindow;
+    /**
+     * Текущее воспроизведение записи и его окно или null, если окна показывают живую модель.
+     */
+    private ReplayController replay;
+    private ReplayWindow replayWindow;
+    /**
+     * Сервер телеметрии или null, если порт не задан свойством robots.telemetry.port.
+     */
+    private TelemetryServer telemetry;
+    /**
+     * Открытое окно метрик или null, если его закрыли.
+     */
+    private MetricsWindow metricsWindow;
 
     /**
      * Создает главное окно приложения.
@@ -37,12 +63,18 @@ public class MainApplicationFrame extends JFrame implements WindowState {
 
         addWindow(new LogWindow(Logger.getDefaultLogSource()));
         Logger.debug("Протокол работает");
+        Metrics.registerMBeans();
+        Metrics.startEdtProbe();
 
         GameModel gameModel = new GameModel();
-        addWindow(new GameWindow(gameModel));
+        gameController = new GameController(gameModel);
+        gameWindow = new GameWindow(gameModel, gameController);
+        addWindow(gameWindow);
 
-        CoordinateWindow coordinateWindow = new CoordinateWindow(gameModel);
+        coordinateWindow = new CoordinateWindow(gameModel);
         addWindow(coordinateWindow);
+        startTelemetry(gameModel);
+        showMetrics();
 
         WindowStateManager windowStateManager = new WindowStateManager(this);
         try {
@@ -52,7 +84,7 @@ public class MainApplicationFrame extends JFrame implements WindowState {
             e.printStackTrace();
         }
 
-        setJMenuBar(new ProgramMenuBar(this));
+        setJMenuBar(new ProgramMenuBar(this, gameModel));
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         addWindowListener(new WindowAdapter() {
             @Override
@@ -72,6 +104,87 @@ public class MainApplicationFrame extends JFrame implements WindowState {
         frame.setVisible(true);
     }
 
+    /**
+     * Показывает окно метрик, открывая новое, если прежнее закрыто.
+     */
+    public void showMetrics() {
+        if (metricsWindow == null || metricsWindow.isClosed()) {
+            metricsWindow = new MetricsWindow(gameController);
+            addWindow(metricsWindow);
+        }
+        metricsWindow.toFront();
+    }
+
+    /**
+     * Включает на игровом поле следы роботов, тепловую карту или выключает наложение.
+     *
+     * @param mode вид наложения
+     */
+    public void setOverlayMode(OverlayMode mode) {
+        gameWindow.setOverlayMode(mode);
+    }
+
+    /**
+     * Запускает сервер телеметрии, если задано свойство robots.telemetry.port.
+     *
+     * @param gameModel модель, которую сервер передает клиентам
+     */
+    private void startTelemetry(GameModel gameModel) {
+        Integer port = Integer.getInteger("robots.telemetry.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            telemetry = new TelemetryServer(gameModel, port);
+            Logger.debug("Телеметрия: 127.0.0.1:" + telemetry.getPort());
+        } catch (IOException e) {
+            Logger.error("Не удалось запустить сервер телеметрии на порту " + port + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Открывает запись траекторий и переключает игровое поле и окно координат на ее воспроизведение.
+     *
+     * @param path путь к файлу записи
+     */
+    public void openReplay(Path path) {
+        closeReplay();
+        try {
+            replay = new ReplayController(new TrajectoryReplay(path));
+        } catch (IOException e) {
+            Logger.error("Не удалось открыть запись " + path + ": " + e.getMessage());
+            return;
+        }
+        gameWindow.showReplay(replay);
+        coordinateWindow.showReplay(replay);
+        replayWindow = new ReplayWindow(replay, this::closeReplay);
+        addWindow(replayWindow);
+        Logger.debug("Воспроизведение записи " + path);
+    }
+
+    /**
+     * Завершает воспроизведение и возвращает окна к живой модели.
+     */
+    public void closeReplay() {
+        if (replay == null) {
+            return;
+        }
+        ReplayController closing = replay;
+        replay = null;
+        gameWindow.showReplay(null);
+        coordinateWindow.showReplay(null);
+        if (replayWindow != null) {
+            ReplayWindow window = replayWindow;
+            replayWindow = null;
+            window.dispose();
+        }
+        try {
+            closing.close();
+        } catch (IOException e) {
+            Logger.error("Не удалось закрыть запись: " + e.getMessage());
+        }
+    }
+
     /**
      * Подтверждает выход из приложения с помощью модульного окна.
      */
@@ -95,6 +208,9 @@ public class MainApplicationFrame extends JFrame implements WindowState {
                 System.err.println("Не удалось сохранить состояния окон");
                 e.printStackTrace();
             }
+            if (telemetry != null) {
+                telemetry.close();
+            }
             System.exit(0);
         }
     }
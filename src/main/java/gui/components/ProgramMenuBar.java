@@ -1,29 +1,144 @@
 package gui.components;
 
+import behavior.BehaviorRuntime;
+import behavior.Behaviors;
 import gui.MainApplicationFrame;
+import gui.windows.game.OverlayMode;
 import log.Logger;
+import model.GameModel;
+import model.RobotFleet;
+import model.TrajectoryRecorder;
+import model.WorldCheckpoint;
 
 import javax.swing.*;
+import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
 
 /**
  * Представляет собой панель меню приложения.
  * Он содержит методы для добавления различных меню на панель.
  */
 public class ProgramMenuBar extends JMenuBar {
+    /**
+     * Сколько тиков сценарий поиска едет к одной точке, прежде чем выбрать другую.
+     */
+    private static final long SEARCH_MAX_TICKS = 3000;
+
     private final MainApplicationFrame appFrame;
+    private final GameModel gameModel;
+    /**
+     * Среда сценариев поведения; создается при первом запуске сценариев.
+     */
+    private BehaviorRuntime behaviors;
 
     /**
      * Конструктор класса MenuBar.
      *
      * @param appFrame фрейм приложения
+     * @param gameModel модель игры
      */
-    public ProgramMenuBar(MainApplicationFrame appFrame) {
+    public ProgramMenuBar(MainApplicationFrame appFrame, GameModel gameModel) {
+        this.appFrame = appFrame;
+        this.gameModel = gameModel;
         attachProgramMenu();
         attachLookAndFeelMenu();
+        attachRecordingMenu();
         attachTestMenu();
-        this.appFrame = appFrame;
+    }
+
+    /**
+     * Добавляет меню "Запись" на панель меню.
+     */
+    private void attachRecordingMenu() {
+        JMenu recordingMenu = new JMenu("Запись");
+        recordingMenu.setMnemonic(KeyEvent.VK_R);
+        recordingMenu.getAccessibleContext().setAccessibleDescription("Запись и воспроизведение траекторий");
+
+        JMenuItem startItem = new JMenuItem("Начать запись...", KeyEvent.VK_S);
+        startItem.addActionListener((event) -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(appFrame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path path = chooser.getSelectedFile().toPath();
+            try {
+                gameModel.startRecording(new TrajectoryRecorder(path));
+                Logger.debug("Запись траекторий в " + path);
+            } catch (IOException e) {
+                Logger.error("Не удалось начать запись: " + e.getMessage());
+            }
+        });
+        recordingMenu.add(startItem);
+
+        JMenuItem stopItem = new JMenuItem("Остановить запись", KeyEvent.VK_T);
+        stopItem.addActionListener((event) -> {
+            try {
+                TrajectoryRecorder recorder = gameModel.stopRecording();
+                if (recorder != null) {
+                    Logger.debug("Записано тиков: " + recorder.getTickCount() + ", поз: " + recorder.getRecordCount());
+                }
+            } catch (IOException e) {
+                Logger.error("Не удалось завершить запись: " + e.getMessage());
+            }
+        });
+        recordingMenu.add(stopItem);
+
+        JMenuItem replayItem = new JMenuItem("Воспроизвести запись...", KeyEvent.VK_P);
+        replayItem.addActionListener((event) -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(appFrame) == JFileChooser.APPROVE_OPTION) {
+                appFrame.openReplay(chooser.getSelectedFile().toPath());
+            }
+        });
+        recordingMenu.add(replayItem);
+
+        JMenuItem liveItem = new JMenuItem("Вернуться к симуляции", KeyEvent.VK_L);
+        liveItem.addActionListener((event) -> appFrame.closeReplay());
+        recordingMenu.add(liveItem);
+        recordingMenu.addSeparator();
+
+        JMenuItem checkpointItem = new JMenuItem("Сохранить контрольную точку...", KeyEvent.VK_C);
+        checkpointItem.addActionListener((event) -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(appFrame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path path = chooser.getSelectedFile().toPath();
+            gameModel.checkpoint(path).whenComplete((checkpoint, error) -> {
+                if (error != null) {
+                    Logger.error("Не удалось сохранить контрольную точку: " + error.getMessage());
+                } else {
+                    Logger.debug("Контрольная точка тика " + checkpoint.getTick() + " сохранена в " + path);
+                }
+            });
+        });
+        recordingMenu.add(checkpointItem);
+
+        JMenuItem restoreItem = new JMenuItem("Восстановить контрольную точку...", KeyEvent.VK_O);
+        restoreItem.addActionListener((event) -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(appFrame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path path = chooser.getSelectedFile().toPath();
+            try {
+                WorldCheckpoint checkpoint = WorldCheckpoint.read(path);
+                if (gameModel.restore(checkpoint)) {
+                    Logger.debug("Восстановлена контрольная точка тика " + checkpoint.getTick());
+                } else {
+                    Logger.error("Очередь команд модели заполнена, контрольная точка не восстановлена");
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.error("Не удалось восстановить контрольную точку: " + e.getMessage());
+            }
+        });
+        recordingMenu.add(restoreItem);
+
+        this.add(recordingMenu);
     }
 
     /**
@@ -47,10 +162,33 @@ public class ProgramMenuBar extends JMenuBar {
             this.appFrame.invalidate();
         });
         lookAndFeelMenu.add(crossplatformLookAndFeel);
+        lookAndFeelMenu.addSeparator();
+
+        ButtonGroup overlayGroup = new ButtonGroup();
+        addOverlayItem(lookAndFeelMenu, overlayGroup, "Без наложения", KeyEvent.VK_N, OverlayMode.NONE);
+        addOverlayItem(lookAndFeelMenu, overlayGroup, "Следы роботов", KeyEvent.VK_T, OverlayMode.TRAILS);
+        addOverlayItem(lookAndFeelMenu, overlayGroup, "Тепловая карта", KeyEvent.VK_H, OverlayMode.HEATMAP);
 
         this.add(lookAndFeelMenu);
     }
 
+    /**
+     * Добавляет пункт выбора наложения на игровом поле.
+     *
+     * @param menu     меню, в которое добавляется пункт
+     * @param group    группа взаимоисключающих пунктов наложения
+     * @param text     название пункта
+     * @param mnemonic клавиша быстрого выбора
+     * @param mode     вид наложения
+     */
+    private void addOverlayItem(JMenu menu, ButtonGroup group, String text, int mnemonic, OverlayMode mode) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, mode == OverlayMode.NONE);
+        item.setMnemonic(mnemonic);
+        item.addActionListener((event) -> appFrame.setOverlayMode(mode));
+        group.add(item);
+        menu.add(item);
+    }
+
     /**
      * Добавляет меню "Тесты" на панель меню.
      */
@@ -65,9 +203,97 @@ public class ProgramMenuBar extends JMenuBar {
         });
         testMenu.add(addLogMessageItem);
 
+        JMenuItem addRobotsItem = new JMenuItem("Добавить 100 роботов", KeyEvent.VK_R);
+        addRobotsItem.addActionListener((event) -> {
+            addRandomRobots(100);
+            Logger.debug("Добавлено 100 роботов во флот");
+        });
+        testMenu.add(addRobotsItem);
+
+        JMenuItem searchItem = new JMenuItem("Поиск всем флотом", KeyEvent.VK_P);
+        searchItem.addActionListener((event) -> startSearch());
+        testMenu.add(searchItem);
+
+        JMenuItem stopBehaviorsItem = new JMenuItem("Остановить сценарии", KeyEvent.VK_O);
+        stopBehaviorsItem.addActionListener((event) -> {
+            if (behaviors != null) {
+                behaviors.close();
+                behaviors = null;
+                Logger.debug("Сценарии поведения остановлены");
+            }
+        });
+        testMenu.add(stopBehaviorsItem);
+
+        // контроллер включает режим из свойства robots.engine командой, которая могла еще не примениться
+        JCheckBoxMenuItem analyticItem = new JCheckBoxMenuItem("Аналитические траектории", gameModel.isAnalytic()
+                || "analytic".equalsIgnoreCase(System.getProperty("robots.engine")));
+        analyticItem.setMnemonic(KeyEvent.VK_A);
+        analyticItem.addActionListener((event) -> {
+            boolean analytic = analyticItem.isSelected();
+            if (gameModel.submit(model -> model.setAnalytic(analytic))) {
+                Logger.debug(analytic ? "Роботы движутся по аналитическим траекториям" : "Роботы шагают по тикам");
+            } else {
+                analyticItem.setSelected(!analytic);
+                Logger.error("Очередь команд модели заполнена, режим движения не изменен");
+            }
+        });
+        testMenu.add(analyticItem);
+
+        JMenuItem metricsItem = new JMenuItem("Окно метрик", KeyEvent.VK_M);
+        metricsItem.addActionListener((event) -> appFrame.showMetrics());
+        testMenu.add(metricsItem);
+
         this.add(testMenu);
     }
 
+    /**
+     * Добавляет во флот роботов со случайными позициями и целями в пределах видимой области.
+     *
+     * @param count количество роботов
+     */
+    private void addRandomRobots(int count) {
+        Random random = new Random();
+        int width = Math.max(appFrame.getWidth() / 2, 100);
+        int height = Math.max(appFrame.getHeight() / 2, 100);
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] direction = new double[count];
+        int[] targetX = new int[count];
+        int[] targetY = new int[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextInt(width);
+            y[i] = random.nextInt(height);
+            direction[i] = random.nextDouble() * 2 * Math.PI;
+            targetX[i] = random.nextInt(width);
+            targetY[i] = random.nextInt(height);
+        }
+        boolean accepted = gameModel.submit(model -> {
+            RobotFleet fleet = model.getFleet();
+            for (int i = 0; i < count; i++) {
+                fleet.addRobot(x[i], y[i], direction[i], targetX[i], targetY[i]);
+            }
+        });
+        if (!accepted) {
+            Logger.error("Очередь команд модели заполнена, роботы не добавлены");
+        }
+    }
+
+    /**
+     * Запускает для каждого робота флота сценарий поиска по видимой области.
+     */
+    private void startSearch() {
+        if (behaviors == null) {
+            behaviors = new BehaviorRuntime(gameModel);
+        }
+        Rectangle area = new Rectangle(Math.max(appFrame.getWidth() / 2, 100), Math.max(appFrame.getHeight() / 2, 100));
+        Random random = new Random();
+        int size = gameModel.getFleet().size();
+        for (int id = 0; id < size; id++) {
+            behaviors.start(id, Behaviors.search(area, SEARCH_MAX_TICKS, random.nextLong()));
+        }
+        Logger.debug("Запущено сценариев поиска: " + size);
+    }
+
     /**
      * Добавляет меню "Выход" на панель меню.
      */
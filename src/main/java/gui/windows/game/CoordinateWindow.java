@@ -1,37 +1,75 @@
 package gui.windows.game;
 
+import controller.ReplayController;
 import model.GameModel;
+import model.ModelUpdateListener;
+import model.WorldSnapshot;
 import state.WindowState;
 
 import javax.swing.*;
 import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 
 /**
  * Окно отображения координат
  */
-public class CoordinateWindow extends JInternalFrame implements PropertyChangeListener, WindowState {
+public class CoordinateWindow extends JInternalFrame implements ModelUpdateListener, WindowState {
+    /**
+     * Частота обновления текста координат в герцах. Чаще текст все равно не прочитать.
+     */
+    private static final double UPDATE_RATE = 20;
+
     private final TextArea text = new TextArea();
+    private final GameModel model;
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+    /**
+     * Воспроизводимая запись или null, если окно показывает живую модель.
+     */
+    private ReplayController replay;
 
     public CoordinateWindow(GameModel model) {
         super("Координаты", true, true, true, true);
+        this.model = model;
         JPanel panel = new JPanel(new BorderLayout());
         panel.add(text, BorderLayout.CENTER);
         panel.setSize(200, 400);
         getContentPane().add(panel);
         pack();
-        model.addNewListener(this);
+        model.addUpdateListener(this, UPDATE_RATE, EventQueue::invokeLater);
+    }
+
+    /**
+     * Переключает окно на воспроизведение записи или обратно на живую модель.
+     * Вызывается из потока Swing.
+     *
+     * @param replay воспроизведение или null, чтобы вернуться к модели
+     */
+    public void showReplay(ReplayController replay) {
+        if (replay == this.replay) {
+            return;
+        }
+        if (this.replay != null) {
+            this.replay.removeUpdateListener(this);
+        } else {
+            model.removeUpdateListener(this);
+        }
+        this.replay = replay;
+        if (replay != null) {
+            replay.addUpdateListener(this, UPDATE_RATE, EventQueue::invokeLater);
+        } else {
+            model.addUpdateListener(this, UPDATE_RATE, EventQueue::invokeLater);
+        }
+        onModelUpdated(0);
     }
 
     @Override
-    public void propertyChange(PropertyChangeEvent evt) {
-        GameModel model = (GameModel) evt.getSource();
-        String newLabelText = "Target PositionX = " + model.getTargetPositionX() + "\n" +
-                "Target PositionY = " + model.getTargetPositionY() + "\n" +
-                "Robot PositionX = " + model.getRobotPositionX() + "\n" +
-                "Robot PositionY = " + model.getRobotPositionY() + "\n" +
-                "Robot Direction = " + model.getRobotDirection();
+    public void onModelUpdated(long version) {
+        WorldSnapshot snapshot = replay != null ? replay.readSnapshot(this.snapshot) : model.readSnapshot(this.snapshot);
+        String tickText = replay != null ? "Replay Tick = " + snapshot.getTick() + "\n" : "";
+        String newLabelText = tickText + "Target PositionX = " + snapshot.getTargetPositionX() + "\n" +
+                "Target PositionY = " + snapshot.getTargetPositionY() + "\n" +
+                "Robot PositionX = " + snapshot.getRobotPositionX() + "\n" +
+                "Robot PositionY = " + snapshot.getRobotPositionY() + "\n" +
+                "Robot Direction = " + snapshot.getRobotDirection();
         text.setText(newLabelText);
     }
 
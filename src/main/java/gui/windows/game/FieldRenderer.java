@@ -0,0 +1,232 @@
+package gui.windows.game;
+
+import model.SpatialGrid;
+import model.WorldSnapshot;
+import model.navigation.ObstacleMap;
+import model.navigation.PathPlanner;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Рисование игрового поля: препятствий, роботов флота, основного робота и цели в координатах мира.
+ * Им пользуется {@link GameVisualizer} при отрисовке панели, а {@link #render} рисует то же поле
+ * в изображение вне экрана, например для экспорта кадров без дисплея.
+ * <p>
+ * Объект хранит атлас спрайтов и копию карты препятствий и не потокобезопасен: каждый поток,
+ * который рисует поле, создает свой экземпляр.
+ */
+public class FieldRenderer {
+    /**
+     * Индексы цветов корпуса в атласе спрайтов.
+     */
+    private static final int COLOR_NORMAL = 0;
+    private static final int COLOR_SELECTED = 1;
+
+    private final RobotSprites mSprites = new RobotSprites(Color.MAGENTA, Color.ORANGE);
+    /**
+     * Копия занятых ячеек карты препятствий и ее версия; копия обновляется только при изменении карты.
+     */
+    private final BitSet mObstacles = new BitSet();
+    private long mObstacleVersion = -1;
+    /**
+     * Идентификаторы роботов, которых нашел индекс при последней отрисовке флота.
+     */
+    private int[] mVisible = new int[0];
+    private int mVisibleCount;
+
+    /**
+     * Рисует поле в изображение: фон, препятствия, флот, основного робота и цель.
+     *
+     * @param image    изображение, которое рисуется целиком
+     * @param snapshot снимок мира
+     * @param planner  планировщик с картой препятствий
+     * @param cameraX  координата X мира в левом верхнем углу изображения
+     * @param cameraY  координата Y мира в левом верхнем углу изображения
+     * @param zoom     масштаб: сколько пикселей изображения приходится на единицу мира
+     */
+    public void render(BufferedImage image, WorldSnapshot snapshot, PathPlanner planner,
+                       double cameraX, double cameraY, double zoom) {
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.translate(-cameraX * zoom, -cameraY * zoom);
+            g.scale(zoom, zoom);
+            Rectangle view = new Rectangle((int) Math.floor(cameraX), (int) Math.floor(cameraY),
+                    (int) Math.ceil(image.getWidth() / zoom) + 1, (int) Math.ceil(image.getHeight() / zoom) + 1);
+            drawObstacles(g, planner, view);
+            drawFleet(g, snapshot, null, 0, view, null);
+            drawRobot(g, snapshot);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Сбрасывает атлас спрайтов; он будет нарисован заново при следующей отрисовке.
+     */
+    void invalidate() {
+        mSprites.invalidate();
+    }
+
+    /**
+     * @return версия карты препятствий, которую рисовал последний вызов {@link #drawObstacles}
+     */
+    long getObstacleVersion() {
+        return mObstacleVersion;
+    }
+
+    /**
+     * Рисует занятые ячейки карты препятствий, попадающие в видимую область.
+     * @param g объект Graphics2D для рисования в координатах мира
+     * @param planner планировщик с картой препятствий
+     * @param view видимая область в координатах мира
+     */
+    void drawObstacles(Graphics2D g, PathPlanner planner, Rectangle view) {
+        if (planner.getObstacleVersion() != mObstacleVersion) {
+            mObstacleVersion = planner.copyObstacles(mObstacles);
+        }
+        if (mObstacles.isEmpty()) {
+            return;
+        }
+        ObstacleMap map = planner.getMap();
+        int cellSize = (int) Math.ceil(map.getCellSize());
+        int columns = map.getColumns();
+        int fromColumn = Math.max(0, map.columnOf(view.x));
+        int toColumn = Math.min(columns - 1, map.columnOf(view.x + view.width));
+        int fromRow = Math.max(0, map.rowOf(view.y));
+        int toRow = Math.min(map.getRows() - 1, map.rowOf(view.y + view.height));
+        g.setColor(Color.GRAY);
+        for (int row = fromRow; row <= toRow; row++) {
+            int rowEnd = row * columns + toColumn + 1;
+            for (int cell = mObstacles.nextSetBit(row * columns + fromColumn); cell >= 0 && cell < rowEnd;
+                    cell = mObstacles.nextSetBit(cell + 1)) {
+                int x = (int) ((cell % columns) * map.getCellSize());
+                int y = (int) (row * map.getCellSize());
+                g.fillRect(x, y, cellSize, cellSize);
+            }
+        }
+    }
+
+    /**
+     * Рисует роботов флота, спрайт которых попадает в видимую область.
+     * Если передан индекс, рисуются только роботы, которых он находит рядом с видимой областью,
+     * а остальной флот не просматривается. Найденные роботы рисуются по порядку идентификаторов, как и при
+     * переборе всего флота, чтобы перекрывающиеся роботы не менялись местами, когда индекс переставляет их.
+     * @param g объект Graphics2D для рисования в координатах мира
+     * @param snapshot снимок мира с флотом роботов
+     * @param index индекс роботов снимка или null, чтобы перебрать весь флот
+     * @param slack насколько позиция робота в снимке может отличаться от позиции в индексе
+     * @param view видимая область в координатах мира
+     * @param selection выделенные роботы, которые рисуются другим цветом, или null
+     */
+    void drawFleet(Graphics2D g, WorldSnapshot snapshot, SpatialGrid index, double slack, Rectangle view,
+                   BitSet selection) {
+        mSprites.validate(g);
+        int left = view.x - RobotSprites.HALF_SIZE;
+        int top = view.y - RobotSprites.HALF_SIZE;
+        int right = view.x + view.width + RobotSprites.HALF_SIZE;
+        int bottom = view.y + view.height + RobotSprites.HALF_SIZE;
+        if (index != null) {
+            mVisibleCount = 0;
+            index.forEachInRect(left - slack, top - slack, right + slack, bottom + slack, this::addVisible);
+            Arrays.sort(mVisible, 0, mVisibleCount);
+            for (int i = 0; i < mVisibleCount; i++) {
+                drawFleetRobot(g, snapshot, mVisible[i], left, top, right, bottom, selection);
+            }
+            return;
+        }
+        int size = snapshot.getFleetSize();
+        for (int id = 0; id < size; id++) {
+            drawFleetRobot(g, snapshot, id, left, top, right, bottom, selection);
+        }
+    }
+
+    private void addVisible(int id) {
+        if (mVisibleCount == mVisible.length) {
+            mVisible = Arrays.copyOf(mVisible, Math.max(16, mVisibleCount * 2));
+        }
+        mVisible[mVisibleCount++] = id;
+    }
+
+    /**
+     * Рисует робота флота, если центр его спрайта лежит в прямоугольнике [left, right) x [top, bottom).
+     */
+    private void drawFleetRobot(Graphics2D g, WorldSnapshot snapshot, int id, int left, int top, int right,
+                                int bottom, BitSet selection) {
+        int x = round(snapshot.getFleetPositionX(id));
+        int y = round(snapshot.getFleetPositionY(id));
+        if (x < left || x >= right || y < top || y >= bottom) {
+            return;
+        }
+        boolean selected = selection != null && selection.get(id);
+        mSprites.draw(g, x, y, RobotSprites.heading(snapshot.getFleetDirection(id)),
+                selected ? COLOR_SELECTED : COLOR_NORMAL);
+    }
+
+    /**
+     * Рисует основного робота и его цель.
+     * @param g объект Graphics2D для рисования в координатах мира
+     * @param snapshot снимок мира
+     */
+    void drawRobot(Graphics2D g, WorldSnapshot snapshot) {
+        mSprites.validate(g);
+        mSprites.draw(
+            g,
+            round(snapshot.getRobotPositionX()),
+            round(snapshot.getRobotPositionY()),
+            RobotSprites.heading(snapshot.getRobotDirection()),
+            COLOR_NORMAL
+        );
+        drawTarget(g, snapshot.getTargetPositionX(), snapshot.getTargetPositionY());
+    }
+
+    /**
+     * Округляет значение до ближайшего целого.
+     * @param value значение для округления
+     * @return округленное значение
+     */
+    private static int round(double value) {
+        return (int) (value + 0.5);
+    }
+
+    /**
+     * Рисует цель в указанных координатах.
+     * @param g объект Graphics2D для рисования
+     * @param x координата X цели
+     * @param y координата Y цели
+     */
+    private static void drawTarget(Graphics2D g, int x, int y) {
+        g.setColor(Color.GREEN);
+        fillOval(g, x, y, 5, 5);
+        g.setColor(Color.BLACK);
+        drawOval(g, x, y, 5, 5);
+    }
+
+    /**
+     * Заполняет овал в указанных координатах и размерах.
+     * @param g объект Graphics для рисования
+     * @param centerX координата X центра овала
+     * @param centerY координата Y центра овала
+     * @param diam1 диаметр овала по оси X
+     * @param diam2 диаметр овала по оси Y
+     */
+    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
+        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    /**
+     * Рисует контур овала в указанных координатах и размерах.
+     * @param g объект Graphics для рисования
+     * @param centerX координата X центра овала
+     * @param centerY координата Y центра овала
+     * @param diam1 диаметр овала по оси X
+     * @param diam2 диаметр овала по оси Y
+     */
+    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
+        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+}
@@ -1,34 +1,470 @@
 package gui.windows.game;
 
 import controller.GameController;
+import controller.ReplayController;
+import metrics.Metrics;
+import model.CoalescingNotifier;
 import model.GameModel;
+import model.ModelUpdateListener;
+import model.SpatialGrid;
+import model.WorldSnapshot;
+import model.navigation.ObstacleMap;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.AffineTransform;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Панель для визуализации игрового процесса с роботом и целью.
+ * <p>
+ * Панель помнит габариты каждого нарисованного робота с учетом поворота и при обновлении модели
+ * перерисовывает только области, где роботы были или оказались. Пересекающиеся области сливаются;
+ * несколько далеких друг от друга областей рисуются по отдельности, чтобы не заливать пиксели между ними.
+ * Роботы рисуются копированием готовых спрайтов из атласа {@link RobotSprites}; само поле рисует
+ * {@link FieldRenderer}, которым пользуется и отрисовка кадров вне экрана.
+ * <p>
+ * Мир показывается через камеру: колесо мыши меняет масштаб вокруг курсора, перетаскивание средней кнопкой
+ * сдвигает вид. Габариты и области перерисовки хранятся в координатах мира и переводятся в пиксели панели
+ * только при запросе перерисовки. Роботы и препятствия вне видимой области не рисуются; видимых роботов
+ * выбирает индекс последнего снимка, поэтому отрисовка, области перерисовки и карта плотности не просматривают
+ * весь флот. При сильном отдалении,
+ * когда робот меньше нескольких пикселей, флот рисуется картой плотности: роботы подсчитываются по клеткам
+ * в несколько пикселей, и вся карта выводится одним изображением.
+ * <p>
+ * Кадры рисует собственный цикл на таймере Swing с частотой дисплея или {@code -Drobots.frameRate}, а не
+ * уведомления модели: уведомление только будит цикл. Каждый кадр показывает позы между двумя последними
+ * снимками мира, отставая от симуляции на один интервал между снимками, поэтому движение плавное и при
+ * частоте тиков ниже частоты кадров. Когда новых снимков нет и интерполяция дошла до последнего,
+ * цикл засыпает до следующего уведомления.
+ * <p>
+ * Под роботами можно показать следы или тепловую карту {@link OverlayMode}: новые отрезки пути из каждого
+ * снимка дописываются в накопительный растр {@link TrailOverlay}, который кадр выводит одним копированием.
+ * Растр сообщает габарит перекрашенных клеток, и кадр перерисовывает только его вместе с областями роботов.
  */
-public class GameVisualizer extends JPanel implements PropertyChangeListener {
+public class GameVisualizer extends JPanel implements ModelUpdateListener {
     private final GameModel model;
+    /**
+     * Контроллер, который шагает модель и принимает команды мыши, или null, если панель только показывает модель.
+     */
     private final GameController mController;
+    /**
+     * Момент первого запроса перерисовки после последней отрисовки или 0, если запросов нет.
+     */
+    private long mRepaintRequestedNanos;
+    /**
+     * Буфер снимка мира, который переиспользуется при каждой отрисовке: позы между двумя последними снимками.
+     */
+    private final WorldSnapshot mSnapshot = new WorldSnapshot();
+    /**
+     * Два последних прочитанных снимка и буфер для чтения следующего; буферы меняются местами без копирования.
+     */
+    private WorldSnapshot mPrevious = new WorldSnapshot();
+    private WorldSnapshot mLatest = new WorldSnapshot();
+    private WorldSnapshot mIncoming = new WorldSnapshot();
+    /**
+     * Момент прочтения последнего снимка или 0, если снимков еще нет, и сглаженный интервал между снимками.
+     */
+    private long mLatestArrivalNanos;
+    private double mSnapshotIntervalNanos;
+    /**
+     * Смещение робота между снимками, дальше которого робот не интерполируется, а переносится,
+     * например при перемотке записи.
+     */
+    private static final double MAX_INTERPOLATION_DISTANCE = 50;
+    /**
+     * Пауза между снимками, после которой новый снимок показывается сразу, а не интерполируется:
+     * так симуляция, продолженная после паузы, не тянется за долгим интервалом.
+     */
+    private static final long MAX_INTERPOLATION_INTERVAL_NANOS = 250_000_000L;
+    /**
+     * Таймер цикла отрисовки; работает, пока приходят новые снимки или идет интерполяция.
+     */
+    private final Timer mFrameTimer;
+    /**
+     * Растр следов или тепловой карты или null, если наложение выключено.
+     */
+    private TrailOverlay mOverlay;
+    /**
+     * Половины длины и ширины овала робота и запас на толщину контура в пикселях.
+     */
+    private static final double ROBOT_HALF_LENGTH = 15;
+    private static final double ROBOT_HALF_WIDTH = 5;
+    private static final int BOUNDS_PADDING = 2;
+    /**
+     * Половины габарита спрайта робота по осям X и Y для каждого направления атласа.
+     */
+    private static final int[] HALF_EXTENT_X = new int[RobotSprites.HEADINGS];
+    private static final int[] HALF_EXTENT_Y = new int[RobotSprites.HEADINGS];
+
+    static {
+        for (int heading = 0; heading < RobotSprites.HEADINGS; heading++) {
+            double angle = heading * 2 * Math.PI / RobotSprites.HEADINGS;
+            HALF_EXTENT_X[heading] = robotHalfExtent(Math.cos(angle), Math.sin(angle));
+            HALF_EXTENT_Y[heading] = robotHalfExtent(Math.sin(angle), Math.cos(angle));
+        }
+    }
+
+    private final FieldRenderer mRenderer = new FieldRenderer();
+    /**
+     * Сколько раздельных областей перерисовки имеет смысл рисовать по одной; при большем количестве
+     * перерисовывается их общий габарит.
+     */
+    private static final int MAX_DIRTY_REGIONS = 16;
+    /**
+     * Индекс роботов последнего снимка, по которому выбираются роботы рядом с видимой областью.
+     * Интерполированная поза робота отстоит от его позиции в последнем снимке не дальше
+     * {@link #MAX_INTERPOLATION_DISTANCE}, поэтому запросы расширяются на это расстояние.
+     */
+    private final SpatialGrid mVisibleIndex = new SpatialGrid(VISIBLE_INDEX_CELL_SIZE);
+    private static final double VISIBLE_INDEX_CELL_SIZE = 64;
+    /**
+     * Запас запроса к индексу: смещение интерполяции и половина наибольшего габарита робота.
+     */
+    private static final double VISIBLE_SLACK = MAX_INTERPOLATION_DISTANCE + ROBOT_HALF_LENGTH + BOUNDS_PADDING + 1;
+    /**
+     * Роботы, габариты которых запомнены в прошлом обновлении, и буфер для списка текущего обновления.
+     * Номер обновления, в котором робот последний раз попал в список, хранится в mTrackedFrame.
+     */
+    private int[] mTracked = new int[0];
+    private int[] mTrackedNext = new int[0];
+    private int mTrackedCount;
+    private int mTrackedNextCount;
+    private int[] mTrackedFrame = new int[0];
+    private int mFrame = 1;
+    /**
+     * Габариты роботов флота в том виде, в каком они нарисованы из mSnapshot: [left, right) x [top, bottom).
+     * Хранятся только для роботов из mTracked.
+     */
+    private int[] mBoundsLeft = new int[0];
+    private int[] mBoundsTop = new int[0];
+    private int[] mBoundsRight = new int[0];
+    private int[] mBoundsBottom = new int[0];
+    /**
+     * Номера спрайтов нарисованных роботов: поворот меняет пиксели и без изменения габарита.
+     */
+    private int[] mDrawnHeading = new int[0];
+    private final Rectangle mRobotBounds = new Rectangle();
+    private int mRobotDrawnHeading = -1;
+    private final Rectangle mTargetBounds = new Rectangle();
+    /**
+     * Слитые непересекающиеся области перерисовки текущего обновления и их общий габарит.
+     */
+    private final ArrayList<Rectangle> mDirtyRegions = new ArrayList<>();
+    private final Rectangle mDirtyUnion = new Rectangle();
+    private boolean mDirtyOverflow;
+    /**
+     * Видимая область мира текущего обновления: области вне нее не собираются, чтобы роботы
+     * за краем экрана не переполняли список областей.
+     */
+    private Rectangle mDirtyView = new Rectangle();
+    /**
+     * Шаг масштаба камеры на одно деление колеса мыши и границы уровня масштаба:
+     * масштаб равен ZOOM_STEP в степени уровня.
+     */
+    private static final double ZOOM_STEP = 1.25;
+    private static final int MIN_ZOOM_LEVEL = -14;
+    private static final int MAX_ZOOM_LEVEL = 8;
+    /**
+     * Масштаб, ниже которого роботы флота рисуются картой плотности, а не спрайтами.
+     */
+    private static final double SPRITE_MIN_ZOOM = 0.3;
+    /**
+     * Сторона клетки карты плотности в пикселях панели.
+     */
+    private static final int DENSITY_CELL = 2;
+    /**
+     * Уровень масштаба камеры и координаты мира в левом верхнем углу панели.
+     */
+    private int mZoomLevel;
+    private double mZoom = 1;
+    private double mCameraX;
+    private double mCameraY;
+    /**
+     * Точка нажатия средней кнопки и положение камеры в этот момент, пока вид сдвигается мышью.
+     */
+    private Point mPanStart;
+    private double mPanCameraX;
+    private double mPanCameraY;
+    /**
+     * Изображение карты плотности по клетке на пиксель и счетчики роботов в клетках.
+     */
+    private BufferedImage mDensityImage;
+    private int[] mDensityCounts = new int[0];
+    /**
+     * Радиус попадания курсором в робота в единицах мира.
+     */
+    private static final double HIT_RADIUS = 15;
+    /**
+     * Сдвиг мыши в пикселях, после которого нажатие считается выделением рамкой.
+     */
+    private static final double DRAG_THRESHOLD = 3;
+    /**
+     * Идентификаторы выделенных роботов флота.
+     */
+    private final BitSet mSelection = new BitSet();
+    private Point mDragStart;
+    private Point mDragEnd;
+    /**
+     * Воспроизводимая запись или null, если панель показывает живую модель.
+     */
+    private ReplayController mReplay;
 
+    /**
+     * Создает панель и контроллер, который запускает симуляцию модели.
+     *
+     * @param model модель для отображения и управления
+     */
     public GameVisualizer(GameModel model) {
+        this(model, new GameController(model));
+    }
+
+    /**
+     * Создает панель с заданным контроллером.
+     *
+     * @param model      модель для отображения
+     * @param controller контроллер модели или null: тогда панель не шагает модель и не отправляет ей команды,
+     *                   например при замерах отрисовки
+     */
+    public GameVisualizer(GameModel model, GameController controller) {
         this.model = model;
-        mController = new GameController(model);
-        addMouseListener(new MouseAdapter() {
+        mController = controller;
+        MouseAdapter mouseHandler = new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                mController.setTargetPosition(e.getPoint());
+                if (mReplay != null || mController == null || SwingUtilities.isMiddleMouseButton(e)) {
+                    return;
+                }
+                if (SwingUtilities.isRightMouseButton(e)) {
+                    mSelection.clear();
+                    repaint();
+                    return;
+                }
+                if (e.isControlDown()) {
+                    mController.toggleObstacle(toWorld(e.getPoint()));
+                    repaint();
+                    return;
+                }
+                onClick(toWorld(e.getPoint()), e.isShiftDown());
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) {
+                    mPanStart = e.getPoint();
+                    mPanCameraX = mCameraX;
+                    mPanCameraY = mCameraY;
+                    return;
+                }
+                if (mReplay != null) {
+                    return;
+                }
+                mDragStart = e.getPoint();
+                mDragEnd = null;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (mPanStart != null) {
+                    mCameraX = mPanCameraX - (e.getX() - mPanStart.x) / mZoom;
+                    mCameraY = mPanCameraY - (e.getY() - mPanStart.y) / mZoom;
+                    repaint();
+                    return;
+                }
+                if (mDragStart != null) {
+                    mDragEnd = e.getPoint();
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (mPanStart != null) {
+                    mPanStart = null;
+                    return;
+                }
+                if (mDragStart != null && mDragEnd != null && mDragStart.distance(mDragEnd) > DRAG_THRESHOLD) {
+                    selectRect(mDragStart, mDragEnd, e.isShiftDown());
+                }
+                mDragStart = null;
+                mDragEnd = null;
+                repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(e.getPoint(), -e.getWheelRotation());
             }
-        });
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+        addMouseWheelListener(mouseHandler);
         setDoubleBuffered(true);
-        model.addNewListener(this);
+        mFrameTimer = new Timer((int) Math.max(1, Math.round(1000 / frameRate())), e -> onFrame());
+        mFrameTimer.setCoalesce(true);
+        updateSnapshot();
+        model.addUpdateListener(this, displayRefreshRate(), EventQueue::invokeLater);
+    }
+
+    /**
+     * Сбрасывает атлас спрайтов при смене схемы оформления: она меняет подсказки отрисовки.
+     */
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        if (mRenderer != null) {
+            mRenderer.invalidate();
+        }
+    }
+
+    /**
+     * Переключает панель на воспроизведение записи или обратно на живую модель.
+     * Во время воспроизведения щелчки мышью не управляют моделью.
+     * Вызывается из потока Swing.
+     *
+     * @param replay воспроизведение или null, чтобы вернуться к модели
+     */
+    public void showReplay(ReplayController replay) {
+        if (replay == mReplay) {
+            return;
+        }
+        if (mReplay != null) {
+            mReplay.removeUpdateListener(this);
+        } else {
+            model.removeUpdateListener(this);
+        }
+        mReplay = replay;
+        mLatestArrivalNanos = 0;
+        if (mOverlay != null) {
+            mOverlay.clear(System.nanoTime());
+        }
+        mSelection.clear();
+        mDragStart = null;
+        mDragEnd = null;
+        if (replay != null) {
+            replay.addUpdateListener(this, displayRefreshRate(), EventQueue::invokeLater);
+        } else {
+            model.addUpdateListener(this, displayRefreshRate(), EventQueue::invokeLater);
+        }
+        updateSnapshot();
+        repaint();
+    }
+
+    /**
+     * Включает следы роботов, тепловую карту или выключает наложение. История начинается с момента включения.
+     * Вызывается из потока Swing.
+     *
+     * @param mode вид наложения
+     */
+    public void setOverlayMode(OverlayMode mode) {
+        if (mode == OverlayMode.NONE) {
+            mOverlay = null;
+        } else {
+            ObstacleMap map = model.getPathPlanner().getMap();
+            Rectangle world = new Rectangle((int) Math.ceil(map.getColumns() * map.getCellSize()),
+                    (int) Math.ceil(map.getRows() * map.getCellSize()));
+            mOverlay = new TrailOverlay(mode, world, System.nanoTime());
+        }
+        repaint();
+    }
+
+    /**
+     * Меняет масштаб камеры так, чтобы точка мира под курсором осталась на месте.
+     * @param anchor точка панели под курсором
+     * @param steps на сколько уровней приблизить; отрицательное значение отдаляет
+     */
+    private void zoom(Point anchor, int steps) {
+        int level = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, mZoomLevel + steps));
+        if (level == mZoomLevel) {
+            return;
+        }
+        double anchorX = anchor.x / mZoom + mCameraX;
+        double anchorY = anchor.y / mZoom + mCameraY;
+        mZoomLevel = level;
+        mZoom = Math.pow(ZOOM_STEP, level);
+        mCameraX = anchorX - anchor.x / mZoom;
+        mCameraY = anchorY - anchor.y / mZoom;
+        repaint();
+    }
+
+    /**
+     * Переводит точку панели в координаты мира.
+     * @param point точка панели
+     * @return ближайшая точка мира
+     */
+    private Point toWorld(Point point) {
+        return new Point((int) Math.floor(point.x / mZoom + mCameraX), (int) Math.floor(point.y / mZoom + mCameraY));
+    }
+
+    /**
+     * Переводит прямоугольник мира в охватывающий его прямоугольник панели с запасом в пиксель
+     * на округление при масштабировании.
+     * @param world прямоугольник в координатах мира
+     * @return прямоугольник в пикселях панели
+     */
+    private Rectangle toScreen(Rectangle world) {
+        int left = (int) Math.floor((world.x - mCameraX) * mZoom) - 1;
+        int top = (int) Math.floor((world.y - mCameraY) * mZoom) - 1;
+        int right = (int) Math.ceil((world.x + world.width - mCameraX) * mZoom) + 1;
+        int bottom = (int) Math.ceil((world.y + world.height - mCameraY) * mZoom) + 1;
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Переводит прямоугольник панели, например область отсечения, в охватывающий его прямоугольник мира.
+     * @param screen прямоугольник в пикселях панели
+     * @return прямоугольник в координатах мира
+     */
+    private Rectangle toWorld(Rectangle screen) {
+        int left = (int) Math.floor(screen.x / mZoom + mCameraX);
+        int top = (int) Math.floor(screen.y / mZoom + mCameraY);
+        int right = (int) Math.ceil((screen.x + screen.width) / mZoom + mCameraX);
+        int bottom = (int) Math.ceil((screen.y + screen.height) / mZoom + mCameraY);
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Обрабатывает щелчок: выделяет робота под курсором или отправляет выделенных роботов к точке.
+     * Если никто не выделен, цель получает основной робот.
+     * @param point точка щелчка
+     * @param addToSelection добавить робота к выделению, а не заменить его
+     */
+    private void onClick(Point point, boolean addToSelection) {
+        int robot = model.getFleetIndex().findAt(point.x, point.y, HIT_RADIUS);
+        if (robot >= 0) {
+            if (!addToSelection) {
+                mSelection.clear();
+            }
+            mSelection.flip(robot);
+            repaint();
+            return;
+        }
+        if (mSelection.isEmpty()) {
+            mController.setTargetPosition(point);
+            return;
+        }
+        mController.setFleetTargets(mSelection, point);
+    }
+
+    /**
+     * Выделяет роботов флота внутри рамки.
+     * @param from первый угол рамки в пикселях панели
+     * @param to противоположный угол рамки в пикселях панели
+     * @param addToSelection добавить роботов к выделению, а не заменить его
+     */
+    private void selectRect(Point from, Point to, boolean addToSelection) {
+        if (!addToSelection) {
+            mSelection.clear();
+        }
+        model.getFleetIndex().forEachInRect(from.x / mZoom + mCameraX, from.y / mZoom + mCameraY,
+                to.x / mZoom + mCameraX, to.y / mZoom + mCameraY, mSelection::set);
     }
 
     /**
@@ -40,84 +476,376 @@ public class GameVisualizer extends JPanel implements PropertyChangeListener {
         return (int) (value + 0.5);
     }
 
+    /**
+     * Читает свежий снимок мира и, если он новый, делает его последним, а прежний последний - предыдущим.
+     * Первый снимок после запуска, переключения записи или долгой паузы становится обоими,
+     * чтобы не интерполировать от чужого или давнего состояния.
+     * @param now текущий момент
+     * @return true, если прочитан новый снимок
+     */
+    private boolean readLatestSnapshot(long now) {
+        ReplayController replay = mReplay;
+        WorldSnapshot incoming = replay != null ? replay.readSnapshot(mIncoming) : model.readSnapshot(mIncoming);
+        if (mLatestArrivalNanos != 0 && incoming.getVersion() == mLatest.getVersion()) {
+            return false;
+        }
+        mIncoming = mPrevious;
+        mPrevious = mLatest;
+        mLatest = incoming;
+        long interval = now - mLatestArrivalNanos;
+        if (mLatestArrivalNanos == 0 || interval > MAX_INTERPOLATION_INTERVAL_NANOS) {
+            mPrevious.interpolate(mLatest, mLatest, 1, 0);
+        } else {
+            mSnapshotIntervalNanos = mSnapshotIntervalNanos == 0
+                    ? interval : mSnapshotIntervalNanos + (interval - mSnapshotIntervalNanos) / 4;
+            if (mOverlay != null) {
+                mOverlay.add(mPrevious, mLatest, MAX_INTERPOLATION_DISTANCE, now);
+            }
+        }
+        mLatestArrivalNanos = now;
+        return true;
+    }
+
+    /**
+     * Обновляет показываемые позы, габариты роботов и собирает области, которые нужно перерисовать:
+     * прежний и новый габарит каждого робота, позиция которого на экране изменилась.
+     * Вызывается из потока Swing.
+     * @return true, если позы еще будут меняться без новых снимков
+     */
+    private boolean updateSnapshot() {
+        long now = System.nanoTime();
+        boolean fresh = readLatestSnapshot(now);
+        double alpha = mSnapshotIntervalNanos > 0 ? (now - mLatestArrivalNanos) / mSnapshotIntervalNanos : 1;
+        WorldSnapshot snapshot = mSnapshot.interpolate(mPrevious, mLatest, Math.min(alpha, 1),
+                MAX_INTERPOLATION_DISTANCE);
+        mDirtyRegions.clear();
+        mDirtyUnion.setBounds(0, 0, 0, 0);
+        mDirtyOverflow = false;
+        mDirtyView = toWorld(new Rectangle(0, 0, getWidth(), getHeight()));
+
+        if (fresh) {
+            mVisibleIndex.update(mLatest);
+        }
+        int size = snapshot.getFleetSize();
+        if (mBoundsLeft.length < size) {
+            int capacity = Math.max(size, mBoundsLeft.length * 2);
+            mBoundsLeft = Arrays.copyOf(mBoundsLeft, capacity);
+            mBoundsTop = Arrays.copyOf(mBoundsTop, capacity);
+            mBoundsRight = Arrays.copyOf(mBoundsRight, capacity);
+            mBoundsBottom = Arrays.copyOf(mBoundsBottom, capacity);
+            mDrawnHeading = Arrays.copyOf(mDrawnHeading, capacity);
+            mTrackedFrame = Arrays.copyOf(mTrackedFrame, capacity);
+            mTracked = Arrays.copyOf(mTracked, capacity);
+            mTrackedNext = new int[capacity];
+        }
+        mFrame++;
+        mTrackedNextCount = 0;
+        mVisibleIndex.forEachInRect(mDirtyView.x - VISIBLE_SLACK, mDirtyView.y - VISIBLE_SLACK,
+                mDirtyView.x + mDirtyView.width + VISIBLE_SLACK, mDirtyView.y + mDirtyView.height + VISIBLE_SLACK,
+                id -> trackRobot(snapshot, id));
+        for (int i = 0; i < mTrackedCount; i++) {
+            int id = mTracked[i];
+            if (mTrackedFrame[id] != mFrame) {
+                addDirtyRegion(mBoundsLeft[id], mBoundsTop[id], mBoundsRight[id], mBoundsBottom[id]);
+            }
+        }
+        int[] tracked = mTracked;
+        mTracked = mTrackedNext;
+        mTrackedNext = tracked;
+        mTrackedCount = mTrackedNextCount;
+
+        int robotX = round(snapshot.getRobotPositionX());
+        int robotY = round(snapshot.getRobotPositionY());
+        int heading = RobotSprites.heading(snapshot.getRobotDirection());
+        int halfX = HALF_EXTENT_X[heading];
+        int halfY = HALF_EXTENT_Y[heading];
+        boolean turned = heading != mRobotDrawnHeading;
+        mRobotDrawnHeading = heading;
+        updateBounds(mRobotBounds, robotX - halfX, robotY - halfY, 2 * halfX + 1, 2 * halfY + 1, turned);
+        int targetHalf = 3 + BOUNDS_PADDING;
+        updateBounds(mTargetBounds, snapshot.getTargetPositionX() - targetHalf,
+                snapshot.getTargetPositionY() - targetHalf, 2 * targetHalf + 1, 2 * targetHalf + 1, false);
+        return fresh || alpha < 1;
+    }
+
+    /**
+     * Запоминает габарит робота рядом с видимой областью. Если робот был в списке и в прошлом обновлении,
+     * а его габарит или спрайт изменились, отмечает прежний и новый габарит как области перерисовки.
+     * Роботы, выпавшие из списка, отмечает вызывающий по запомненным габаритам.
+     * @param snapshot показываемые позы
+     * @param id идентификатор робота
+     */
+    private void trackRobot(WorldSnapshot snapshot, int id) {
+        int centerX = round(snapshot.getFleetPositionX(id));
+        int centerY = round(snapshot.getFleetPositionY(id));
+        int heading = RobotSprites.heading(snapshot.getFleetDirection(id));
+        int halfX = HALF_EXTENT_X[heading];
+        int halfY = HALF_EXTENT_Y[heading];
+        int left = centerX - halfX;
+        int top = centerY - halfY;
+        int right = centerX + halfX + 1;
+        int bottom = centerY + halfY + 1;
+        boolean wasTracked = mTrackedFrame[id] == mFrame - 1;
+        mTrackedFrame[id] = mFrame;
+        mTrackedNext[mTrackedNextCount++] = id;
+        if (wasTracked) {
+            if (left == mBoundsLeft[id] && top == mBoundsTop[id] && right == mBoundsRight[id]
+                    && bottom == mBoundsBottom[id] && heading == mDrawnHeading[id]) {
+                return;
+            }
+            addDirtyRegion(mBoundsLeft[id], mBoundsTop[id], mBoundsRight[id], mBoundsBottom[id]);
+        }
+        addDirtyRegion(left, top, right, bottom);
+        mBoundsLeft[id] = left;
+        mBoundsTop[id] = top;
+        mBoundsRight[id] = right;
+        mBoundsBottom[id] = bottom;
+        mDrawnHeading[id] = heading;
+    }
+
+    /**
+     * Половина габарита повернутого овала робота по одной оси вместе с запасом на контур.
+     * @param along косинус угла между осью робота и осью габарита
+     * @param across синус этого угла
+     * @return половина габарита в пикселях
+     */
+    private static int robotHalfExtent(double along, double across) {
+        return (int) Math.ceil(Math.sqrt(ROBOT_HALF_LENGTH * ROBOT_HALF_LENGTH * along * along
+                + ROBOT_HALF_WIDTH * ROBOT_HALF_WIDTH * across * across)) + BOUNDS_PADDING;
+    }
+
+    /**
+     * Запоминает новый габарит фигуры и, если он или сама фигура изменились, отмечает прежний и новый
+     * габарит как области перерисовки.
+     */
+    private void updateBounds(Rectangle bounds, int x, int y, int width, int height, boolean changed) {
+        if (!changed && bounds.x == x && bounds.y == y && bounds.width == width && bounds.height == height) {
+            return;
+        }
+        if (!bounds.isEmpty()) {
+            addDirtyRegion(bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height);
+        }
+        bounds.setBounds(x, y, width, height);
+        addDirtyRegion(x, y, x + width, y + height);
+    }
+
+    /**
+     * Добавляет область перерисовки и сливает ее с пересекающимися. Когда раздельных областей становится
+     * слишком много, дальше копится только общий габарит. Области вне видимой части мира пропускаются:
+     * смена камеры и так перерисовывает панель целиком.
+     */
+    private void addDirtyRegion(int left, int top, int right, int bottom) {
+        if (right <= mDirtyView.x || bottom <= mDirtyView.y
+                || left >= mDirtyView.x + mDirtyView.width || top >= mDirtyView.y + mDirtyView.height) {
+            return;
+        }
+        if (mDirtyUnion.isEmpty()) {
+            mDirtyUnion.setBounds(left, top, right - left, bottom - top);
+        } else {
+            mDirtyUnion.add(left, top);
+            mDirtyUnion.add(right, bottom);
+        }
+        if (mDirtyOverflow) {
+            return;
+        }
+        Rectangle region = new Rectangle(left, top, right - left, bottom - top);
+        int i = 0;
+        while (i < mDirtyRegions.size()) {
+            Rectangle other = mDirtyRegions.get(i);
+            if (other.intersects(region)) {
+                region.add(other);
+                mDirtyRegions.set(i, mDirtyRegions.get(mDirtyRegions.size() - 1));
+                mDirtyRegions.remove(mDirtyRegions.size() - 1);
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+        mDirtyRegions.add(region);
+        if (mDirtyRegions.size() > MAX_DIRTY_REGIONS) {
+            mDirtyOverflow = true;
+            mDirtyRegions.clear();
+        }
+    }
+
+    /**
+     * Сразу рисует собранные области. Одна область или области, занимающие больше половины
+     * своего общего габарита, рисуются одним проходом по общему габариту, остальные - каждая отдельно.
+     */
+    private void repaintDirtyRegions() {
+        if (mDirtyUnion.isEmpty()) {
+            return;
+        }
+        if (mRepaintRequestedNanos == 0) {
+            mRepaintRequestedNanos = System.nanoTime();
+        }
+        if (mZoom < SPRITE_MIN_ZOOM) {
+            paintImmediately(0, 0, getWidth(), getHeight());
+            return;
+        }
+        if (mDirtyOverflow || mDirtyRegions.size() == 1) {
+            paintImmediately(toScreen(mDirtyUnion));
+            return;
+        }
+        long area = 0;
+        for (Rectangle region : mDirtyRegions) {
+            area += (long) region.width * region.height;
+        }
+        if (2 * area >= (long) mDirtyUnion.width * mDirtyUnion.height) {
+            paintImmediately(toScreen(mDirtyUnion));
+            return;
+        }
+        for (Rectangle region : mDirtyRegions) {
+            paintImmediately(toScreen(region));
+        }
+    }
+
     /**
      * Переопределяет метод отрисовки компонента, чтобы нарисовать робота и цель.
+     * Рисует последний снимок, прочитанный при обновлении модели, через камеру
+     * и пропускает роботов и препятствия вне области отсечения.
      * @param g объект Graphics для рисования
      */
     @Override
     public void paint(Graphics g) {
         super.paint(g);
         Graphics2D g2d = (Graphics2D) g;
-        drawRobot(
-            g2d,
-            round(model.getRobotPositionX()),
-            round(model.getRobotPositionY()),
-            model.getRobotDirection()
-        );
-        drawTarget(g2d, model.getTargetPositionX(), model.getTargetPositionY());
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(getWidth(), getHeight());
+        }
+        Rectangle view = toWorld(clip);
+        WorldSnapshot snapshot = mSnapshot;
+        AffineTransform screen = g2d.getTransform();
+        if (mZoom < SPRITE_MIN_ZOOM) {
+            drawDensity(g2d, snapshot, clip);
+        }
+        g2d.translate(-mCameraX * mZoom, -mCameraY * mZoom);
+        g2d.scale(mZoom, mZoom);
+        if (mReplay == null) {
+            mRenderer.drawObstacles(g2d, model.getPathPlanner(), view);
+        }
+        if (mOverlay != null) {
+            mOverlay.draw(g2d);
+        }
+        if (mZoom >= SPRITE_MIN_ZOOM) {
+            mRenderer.drawFleet(g2d, snapshot, mVisibleIndex, MAX_INTERPOLATION_DISTANCE, view, mSelection);
+        }
+        mRenderer.drawRobot(g2d, snapshot);
+        g2d.setTransform(screen);
+        drawSelectionFrame(g2d);
+        if (mRepaintRequestedNanos != 0) {
+            Metrics.REPAINT.recordSince(mRepaintRequestedNanos);
+            mRepaintRequestedNanos = 0;
+        }
     }
 
     /**
-     * Заполняет овал в указанных координатах и размерах.
-     * @param g объект Graphics для рисования
-     * @param centerX координата X центра овала
-     * @param centerY координата Y центра овала
-     * @param diam1 диаметр овала по оси X
-     * @param diam2 диаметр овала по оси Y
+     * Рисует флот картой плотности: считает роботов в клетках панели и выводит счетчики одним изображением,
+     * в котором клетка тем непрозрачнее, чем больше в ней роботов. Считаются только роботы, которых индекс
+     * находит рядом с панелью.
+     * @param g объект Graphics2D для рисования в пикселях панели
+     * @param snapshot снимок мира с флотом роботов
+     * @param clip область отсечения в пикселях панели
      */
-    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
-        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    private void drawDensity(Graphics2D g, WorldSnapshot snapshot, Rectangle clip) {
+        int columns = (getWidth() + DENSITY_CELL - 1) / DENSITY_CELL;
+        int rows = (getHeight() + DENSITY_CELL - 1) / DENSITY_CELL;
+        if (columns <= 0 || rows <= 0) {
+            return;
+        }
+        if (mDensityImage == null || mDensityImage.getWidth() != columns || mDensityImage.getHeight() != rows) {
+            mDensityImage = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            mDensityCounts = new int[columns * rows];
+        }
+        int[] counts = mDensityCounts;
+        Arrays.fill(counts, 0);
+        double scale = mZoom / DENSITY_CELL;
+        double right = mCameraX + columns * DENSITY_CELL / mZoom;
+        double bottom = mCameraY + rows * DENSITY_CELL / mZoom;
+        mVisibleIndex.forEachInRect(mCameraX - MAX_INTERPOLATION_DISTANCE, mCameraY - MAX_INTERPOLATION_DISTANCE,
+                right + MAX_INTERPOLATION_DISTANCE, bottom + MAX_INTERPOLATION_DISTANCE, id -> {
+                    double column = (snapshot.getFleetPositionX(id) - mCameraX) * scale;
+                    double row = (snapshot.getFleetPositionY(id) - mCameraY) * scale;
+                    if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                        counts[(int) row * columns + (int) column]++;
+                    }
+                });
+        int[] pixels = ((DataBufferInt) mDensityImage.getRaster().getDataBuffer()).getData();
+        int rgb = Color.MAGENTA.getRGB() & 0xFFFFFF;
+        for (int cell = 0; cell < counts.length; cell++) {
+            int count = counts[cell];
+            pixels[cell] = count == 0 ? 0 : Math.min(255, 64 + 48 * count) << 24 | rgb;
+        }
+        g.drawImage(mDensityImage, 0, 0, columns * DENSITY_CELL, rows * DENSITY_CELL, 0, 0, columns, rows, null);
     }
 
     /**
-     * Рисует контур овала в указанных координатах и размерах.
-     * @param g объект Graphics для рисования
-     * @param centerX координата X центра овала
-     * @param centerY координата Y центра овала
-     * @param diam1 диаметр овала по оси X
-     * @param diam2 диаметр овала по оси Y
+     * Рисует рамку выделения, пока пользователь тянет мышь.
+     * @param g объект Graphics2D для рисования
      */
-    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
-        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    private void drawSelectionFrame(Graphics2D g) {
+        if (mDragStart == null || mDragEnd == null) {
+            return;
+        }
+        g.setColor(Color.BLUE);
+        g.drawRect(Math.min(mDragStart.x, mDragEnd.x), Math.min(mDragStart.y, mDragEnd.y),
+                Math.abs(mDragEnd.x - mDragStart.x), Math.abs(mDragEnd.y - mDragStart.y));
     }
 
     /**
-     * Рисует изображение робота в указанных координатах и направлении.
-     * @param g объект Graphics2D для рисования
-     * @param robotCenterX координата X позиции робота
-     * @param robotCenterY координата Y позиции робота
-     * @param direction направление робота в радианах
+     * Определяет частоту обновления дисплея, чтобы перерисовывать панель не чаще одного раза за кадр.
+     * @return частота обновления в герцах
      */
-    private void drawRobot(Graphics2D g, int robotCenterX, int robotCenterY, double direction) {
-        AffineTransform t = AffineTransform.getRotateInstance(direction, robotCenterX, robotCenterY);
-        g.setTransform(t);
-        g.setColor(Color.MAGENTA);
-        fillOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.WHITE);
-        fillOval(g, robotCenterX + 10, robotCenterY, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX + 10, robotCenterY, 5, 5);
+    private static double displayRefreshRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return CoalescingNotifier.DEFAULT_FRAME_RATE;
+        }
+        int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? CoalescingNotifier.DEFAULT_FRAME_RATE : refreshRate;
+    }
+
+    @Override
+    public void onModelUpdated(long version) {
+        if (!mFrameTimer.isRunning()) {
+            onFrame();
+            mFrameTimer.start();
+        }
     }
 
     /**
-     * Рисует цель в указанных координатах.
-     * @param g объект Graphics2D для рисования
-     * @param x координата X цели
-     * @param y координата Y цели
+     * Кадр цикла отрисовки: обновляет позы и сразу рисует изменившиеся области, к которым добавляется
+     * габарит перекрашенных клеток наложения. Останавливает цикл, если без новых снимков кадры больше
+     * не меняются; пока на поле есть гаснущие следы, цикл продолжается.
      */
-    private void drawTarget(Graphics2D g, int x, int y) {
-        AffineTransform t = AffineTransform.getRotateInstance(0, 0, 0);
-        g.setTransform(t);
-        g.setColor(Color.GREEN);
-        fillOval(g, x, y, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, x, y, 5, 5);
+    private void onFrame() {
+        boolean animating = updateSnapshot();
+        boolean obstaclesChanged = mReplay == null
+                && model.getPathPlanner().getObstacleVersion() != mRenderer.getObstacleVersion();
+        if (obstaclesChanged) {
+            if (mRepaintRequestedNanos == 0) {
+                mRepaintRequestedNanos = System.nanoTime();
+            }
+            paintImmediately(0, 0, getWidth(), getHeight());
+        } else {
+            Rectangle overlay = mOverlay != null ? mOverlay.update(System.nanoTime()) : null;
+            if (overlay != null) {
+                addDirtyRegion(overlay.x, overlay.y, overlay.x + overlay.width, overlay.y + overlay.height);
+            }
+            repaintDirtyRegions();
+        }
+        if (!animating && (mOverlay == null || !mOverlay.isDecaying())) {
+            mFrameTimer.stop();
+        }
     }
 
-    @Override
-    public void propertyChange(PropertyChangeEvent evt) {
-        EventQueue.invokeLater(this::repaint);
+    /**
+     * Частота кадров цикла отрисовки: {@code -Drobots.frameRate} или частота дисплея.
+     * @return частота кадров в герцах
+     */
+    private static double frameRate() {
+        String frameRate = System.getProperty("robots.frameRate");
+        return frameRate != null ? Double.parseDouble(frameRate) : displayRefreshRate();
     }
 }
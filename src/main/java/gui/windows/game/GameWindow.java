@@ -1,5 +1,7 @@
 package gui.windows.game;
 
+import controller.GameController;
+import controller.ReplayController;
 import model.GameModel;
 import state.WindowState;
 
@@ -14,10 +16,13 @@ public class GameWindow extends JInternalFrame implements WindowState {
 
     /**
      * Создает новое игровое окно.
+     *
+     * @param model      модель для отображения
+     * @param controller контроллер, который шагает модель и принимает команды поля
      */
-    public GameWindow(GameModel model) {
+    public GameWindow(GameModel model, GameController controller) {
         super("Игровое поле", true, true, true, true);
-        mVisualizer = new GameVisualizer(model);
+        mVisualizer = new GameVisualizer(model, controller);
         JPanel panel = new JPanel(new BorderLayout());
         panel.add(mVisualizer, BorderLayout.CENTER);
         panel.setSize(400, 400);
@@ -25,6 +30,24 @@ public class GameWindow extends JInternalFrame implements WindowState {
         pack();
     }
 
+    /**
+     * Переключает игровое поле на воспроизведение записи или обратно на живую модель.
+     *
+     * @param replay воспроизведение или null, чтобы вернуться к модели
+     */
+    public void showReplay(ReplayController replay) {
+        mVisualizer.showReplay(replay);
+    }
+
+    /**
+     * Включает на игровом поле следы роботов, тепловую карту или выключает наложение.
+     *
+     * @param mode вид наложения
+     */
+    public void setOverlayMode(OverlayMode mode) {
+        mVisualizer.setOverlayMode(mode);
+    }
+
     @Override
     public String getPrefix() {
         return "game";
@@ -0,0 +1,19 @@
+package gui.windows.game;
+
+/**
+ * Наложение поверх игрового поля, показывающее, где бывали роботы.
+ */
+public enum OverlayMode {
+    /**
+     * Без наложения.
+     */
+    NONE,
+    /**
+     * Следы роботов, которые постепенно гаснут.
+     */
+    TRAILS,
+    /**
+     * Тепловая карта: сколько времени роботы провели в каждой точке за все время показа.
+     */
+    HEATMAP
+}
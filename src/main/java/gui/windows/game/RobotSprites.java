@@ -0,0 +1,181 @@
+package gui.windows.game;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Атлас заранее нарисованных спрайтов робота: для каждого цвета корпуса робот рисуется
+ * под {@link #HEADINGS} направлениями в одно изображение, и отрисовка робота сводится к копированию
+ * ячейки атласа без поворота графики и растеризации овалов.
+ * <p>
+ * Атлас создается совместимым с устройством вывода, поэтому Java2D держит его копию в видеопамяти,
+ * и рисуется в масштабе графики, то есть с учетом плотности пикселей экрана и масштаба камеры,
+ * чтобы спрайт не растягивался. Масштаб атласа ограничен {@link #MAX_OVERSAMPLE} масштабами устройства:
+ * при сильном приближении атлас в масштабе камеры занимал бы сотни мегабайт, поэтому дальше
+ * ячейка растягивается при копировании с билинейной интерполяцией. Атлас перестраивается при смене
+ * масштаба в этих пределах или устройства и после {@link #invalidate()}.
+ * Используется только из потока Swing.
+ */
+class RobotSprites {
+    /**
+     * Количество направлений робота в атласе; степень двойки.
+     */
+    static final int HEADINGS = 256;
+    /**
+     * Половина стороны ячейки спрайта: половина длины робота и запас на контур.
+     */
+    static final int HALF_SIZE = 17;
+    private static final int CELL_SIZE = 2 * HALF_SIZE + 1;
+    private static final int COLUMNS = 16;
+    private static final int ROWS_PER_COLOR = HEADINGS / COLUMNS;
+    /**
+     * Во сколько раз масштаб атласа может превышать масштаб устройства вывода.
+     */
+    private static final double MAX_OVERSAMPLE = 2;
+
+    private final Color[] mColors;
+    private BufferedImage mAtlas;
+    private GraphicsConfiguration mConfiguration;
+    private double mScaleX;
+    private double mScaleY;
+    /**
+     * Сторона ячейки атласа в пикселях устройства.
+     */
+    private int mCellWidth;
+    private int mCellHeight;
+
+    /**
+     * @param colors цвета корпуса; робот рисуется цветом по его индексу в этом списке
+     */
+    RobotSprites(Color... colors) {
+        mColors = colors.clone();
+    }
+
+    /**
+     * Номер ближайшего к направлению спрайта.
+     *
+     * @param direction направление робота в радианах
+     * @return номер направления от 0 до {@link #HEADINGS} - 1
+     */
+    static int heading(double direction) {
+        return (int) (Math.round(direction * HEADINGS / (2 * Math.PI)) & (HEADINGS - 1));
+    }
+
+    /**
+     * Сбрасывает атлас; он будет нарисован заново при следующей отрисовке.
+     */
+    void invalidate() {
+        mAtlas = null;
+    }
+
+    /**
+     * Рисует робота копией ячейки атласа.
+     *
+     * @param g       объект Graphics2D для рисования
+     * @param centerX координата X центра робота
+     * @param centerY координата Y центра робота
+     * @param heading номер направления из {@link #heading}
+     * @param color   индекс цвета корпуса
+     */
+    void draw(Graphics2D g, int centerX, int centerY, int heading, int color) {
+        int row = color * ROWS_PER_COLOR + heading / COLUMNS;
+        int column = heading % COLUMNS;
+        int sourceX = column * mCellWidth;
+        int sourceY = row * mCellHeight;
+        int x = centerX - HALF_SIZE;
+        int y = centerY - HALF_SIZE;
+        g.drawImage(mAtlas, x, y, x + CELL_SIZE, y + CELL_SIZE,
+                sourceX, sourceY, sourceX + mCellWidth, sourceY + mCellHeight, null);
+    }
+
+    /**
+     * Проверяет, что атлас нарисован для устройства и масштаба графики, и перестраивает его при необходимости.
+     * Вызывается перед серией {@link #draw}. Если масштаб графики больше предела атласа,
+     * включает на g билинейную интерполяцию изображений.
+     *
+     * @param g объект Graphics2D, в который будут рисоваться роботы
+     */
+    void validate(Graphics2D g) {
+        GraphicsConfiguration configuration = g.getDeviceConfiguration();
+        AffineTransform transform = g.getTransform();
+        AffineTransform device = configuration.getDefaultTransform();
+        double scaleX = Math.min(transform.getScaleX(), device.getScaleX() * MAX_OVERSAMPLE);
+        double scaleY = Math.min(transform.getScaleY(), device.getScaleY() * MAX_OVERSAMPLE);
+        if (scaleX < transform.getScaleX() || scaleY < transform.getScaleY()) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        if (mAtlas != null && configuration == mConfiguration && scaleX == mScaleX && scaleY == mScaleY) {
+            return;
+        }
+        mConfiguration = configuration;
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mCellWidth = (int) Math.ceil(CELL_SIZE * mScaleX);
+        mCellHeight = (int) Math.ceil(CELL_SIZE * mScaleY);
+        mAtlas = configuration.createCompatibleImage(COLUMNS * mCellWidth,
+                mColors.length * ROWS_PER_COLOR * mCellHeight, Transparency.TRANSLUCENT);
+        Graphics2D atlas = mAtlas.createGraphics();
+        try {
+            atlas.setRenderingHints(g.getRenderingHints());
+            for (int color = 0; color < mColors.length; color++) {
+                for (int heading = 0; heading < HEADINGS; heading++) {
+                    int row = color * ROWS_PER_COLOR + heading / COLUMNS;
+                    int column = heading % COLUMNS;
+                    atlas.setTransform(new AffineTransform());
+                    atlas.translate(column * mCellWidth, row * mCellHeight);
+                    atlas.scale(mScaleX, mScaleY);
+                    drawRobot(atlas, HALF_SIZE, HALF_SIZE, heading * 2 * Math.PI / HEADINGS, mColors[color]);
+                }
+            }
+        } finally {
+            atlas.dispose();
+        }
+    }
+
+    /**
+     * Рисует изображение робота в указанных координатах и направлении.
+     * @param g объект Graphics2D для рисования
+     * @param robotCenterX координата X позиции робота
+     * @param robotCenterY координата Y позиции робота
+     * @param direction направление робота в радианах
+     * @param color цвет корпуса робота
+     */
+    private static void drawRobot(Graphics2D g, int robotCenterX, int robotCenterY, double direction, Color color) {
+        AffineTransform saved = g.getTransform();
+        g.rotate(direction, robotCenterX, robotCenterY);
+        g.setColor(color);
+        fillOval(g, robotCenterX, robotCenterY, 30, 10);
+        g.setColor(Color.BLACK);
+        drawOval(g, robotCenterX, robotCenterY, 30, 10);
+        g.setColor(Color.WHITE);
+        fillOval(g, robotCenterX + 10, robotCenterY, 5, 5);
+        g.setColor(Color.BLACK);
+        drawOval(g, robotCenterX + 10, robotCenterY, 5, 5);
+        g.setTransform(saved);
+    }
+
+    /**
+     * Заполняет овал в указанных координатах и размерах.
+     * @param g объект Graphics для рисования
+     * @param centerX координата X центра овала
+     * @param centerY координата Y центра овала
+     * @param diam1 диаметр овала по оси X
+     * @param diam2 диаметр овала по оси Y
+     */
+    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
+        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    /**
+     * Рисует контур овала в указанных координатах и размерах.
+     * @param g объект Graphics для рисования
+     * @param centerX координата X центра овала
+     * @param centerY координата Y центра овала
+     * @param diam1 диаметр овала по оси X
+     * @param diam2 диаметр овала по оси Y
+     */
+    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
+        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+}
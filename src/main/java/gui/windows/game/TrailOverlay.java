@@ -0,0 +1,289 @@
+package gui.windows.game;
+
+import model.WorldSnapshot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Накопительный растр следов роботов в координатах мира. Каждый новый снимок добавляет в растр отрезки
+ * пути роботов от предыдущего снимка, и перекрашиваются только задетые клетки, поэтому стоимость обновления
+ * зависит от количества новых отрезков, а не от длины истории. Кадр выводит растр одним копированием, а растр
+ * запоминает габарит перекрашенных клеток, чтобы панель перерисовывала только его.
+ * <p>
+ * Значение клетки - сколько тиков роботы провели в ней. Затухание устроено без обхода растра каждый кадр:
+ * значения хранятся в масштабе начала эпохи, а новые вклады умножаются на множитель роста с ее начала.
+ * Цвет клетки берется по уровню значения, поделенного на этот множитель, то есть уже затухшего. Не чаще
+ * раза в {@link #DECAY_INTERVAL_NANOS} проходятся живые клетки: значения приводятся к текущему моменту,
+ * клетки перекрашиваются, и начинается новая эпоха. Живые клетки с ненулевым значением хранятся списком,
+ * поэтому проход не касается пустой части растра, а погасшие клетки из списка убираются. Палитра логарифмическая, поэтому затухание нельзя
+ * заменить общей прозрачностью: цвет каждой клетки пересчитывается из ее значения.
+ * Используется только из потока Swing.
+ */
+class TrailOverlay {
+    /**
+     * Сторона клетки растра в единицах мира.
+     */
+    private static final double CELL_SIZE = 2;
+    /**
+     * Наименьший промежуток между проходами затухания в наносекундах: за него уровень клетки
+     * меняется не больше чем на пару делений палитры.
+     */
+    private static final long DECAY_INTERVAL_NANOS = 50_000_000;
+    /**
+     * Период полураспада следов в наносекундах.
+     */
+    private static final double TRAIL_HALF_LIFE_NANOS = 3e9;
+    /**
+     * Сколько тиков в клетке дают полный цвет: для следов и для тепловой карты.
+     */
+    private static final double TRAIL_SATURATION = 6;
+    private static final double HEATMAP_SATURATION = 3000;
+    /**
+     * Цвета уровней от слабого синего к насыщенному красному.
+     */
+    private static final int[] PALETTE = new int[256];
+
+    static {
+        for (int level = 0; level < PALETTE.length; level++) {
+            double t = level / 255.0;
+            int red = (int) Math.round(255 * Math.min(1, 2 * t));
+            int green = (int) Math.round(255 * (t < 0.5 ? 0.4 + 1.2 * t : 2 - 2 * t));
+            int blue = (int) Math.round(255 * Math.max(0, 1 - 2 * t));
+            int alpha = level == 0 ? 0 : (int) Math.round(60 + 170 * t);
+            PALETTE[level] = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+    }
+
+    private final double mOriginX;
+    private final double mOriginY;
+    private final int mColumns;
+    private final int mRows;
+    /**
+     * Скорость затухания на наносекунду; 0 - значения не затухают.
+     */
+    private final double mDecayRate;
+    private final double mLevelScale;
+    private final float[] mValues;
+    private final BufferedImage mImage;
+    private final int[] mPixels;
+    /**
+     * Клетки с ненулевым значением, которые проходит затухание; ведется только для гаснущих следов.
+     */
+    private int[] mLive = new int[0];
+    private int mLiveCount;
+    /**
+     * Габарит клеток, перекрашенных после последнего {@link #update}: столбцы [left, right) и строки [top, bottom).
+     */
+    private int mChangedLeft;
+    private int mChangedTop;
+    private int mChangedRight;
+    private int mChangedBottom;
+    /**
+     * Начало текущей эпохи: значения растра хранятся в масштабе этого момента.
+     */
+    private long mEpochNanos;
+
+    /**
+     * Создает пустой растр над областью мира.
+     *
+     * @param mode   следы или тепловая карта
+     * @param bounds область мира, которую покрывает растр
+     * @param now    текущий момент
+     */
+    TrailOverlay(OverlayMode mode, Rectangle bounds, long now) {
+        mOriginX = bounds.x;
+        mOriginY = bounds.y;
+        mColumns = (int) Math.ceil(bounds.width / CELL_SIZE);
+        mRows = (int) Math.ceil(bounds.height / CELL_SIZE);
+        boolean trails = mode == OverlayMode.TRAILS;
+        mDecayRate = trails ? Math.log(2) / TRAIL_HALF_LIFE_NANOS : 0;
+        mLevelScale = (PALETTE.length - 1) / Math.log1p(trails ? TRAIL_SATURATION : HEATMAP_SATURATION);
+        mValues = new float[mColumns * mRows];
+        mImage = new BufferedImage(mColumns, mRows, BufferedImage.TYPE_INT_ARGB);
+        mPixels = ((DataBufferInt) mImage.getRaster().getDataBuffer()).getData();
+        mEpochNanos = now;
+        resetChanged();
+    }
+
+    /**
+     * Добавляет путь каждого робота между двумя снимками. Время между снимками в тиках распределяется
+     * поровну по клеткам отрезка; роботы, сместившиеся дальше maxDistance, отмечаются только в новой позиции.
+     *
+     * @param from        предыдущий снимок
+     * @param to          новый снимок
+     * @param maxDistance наибольшее смещение, которое считается движением
+     * @param now         текущий момент
+     */
+    void add(WorldSnapshot from, WorldSnapshot to, double maxDistance, long now) {
+        long ticks = to.getTick() - from.getTick();
+        if (ticks <= 0) {
+            return;
+        }
+        double growth = Math.exp(mDecayRate * (now - mEpochNanos));
+        double weight = ticks * growth;
+        float fade = (float) (1 / growth);
+        addPath(from.getRobotPositionX(), from.getRobotPositionY(),
+                to.getRobotPositionX(), to.getRobotPositionY(), maxDistance, weight, fade);
+        int common = Math.min(from.getFleetSize(), to.getFleetSize());
+        for (int id = 0; id < common; id++) {
+            addPath(from.getFleetPositionX(id), from.getFleetPositionY(id),
+                    to.getFleetPositionX(id), to.getFleetPositionY(id), maxDistance, weight, fade);
+        }
+        for (int id = common; id < to.getFleetSize(); id++) {
+            addPath(to.getFleetPositionX(id), to.getFleetPositionY(id),
+                    to.getFleetPositionX(id), to.getFleetPositionY(id), maxDistance, weight, fade);
+        }
+    }
+
+    /**
+     * @return true, если на растре есть гаснущие следы и он меняется даже без новых снимков
+     */
+    boolean isDecaying() {
+        return mLiveCount > 0;
+    }
+
+    /**
+     * Применяет затухание, если с начала эпохи прошло не меньше {@link #DECAY_INTERVAL_NANOS}, и отдает
+     * область мира, пиксели которой изменились после прошлого вызова.
+     *
+     * @param now текущий момент
+     * @return измененная область в координатах мира или null, если растр не менялся
+     */
+    Rectangle update(long now) {
+        if (mLiveCount > 0 && now - mEpochNanos >= DECAY_INTERVAL_NANOS) {
+            decay(now);
+        }
+        if (mChangedLeft >= mChangedRight) {
+            return null;
+        }
+        int x = (int) Math.floor(mOriginX);
+        int y = (int) Math.floor(mOriginY);
+        int left = x + (int) Math.floor(mChangedLeft * CELL_SIZE) - 1;
+        int top = y + (int) Math.floor(mChangedTop * CELL_SIZE) - 1;
+        int right = x + (int) Math.ceil(mChangedRight * CELL_SIZE) + 1;
+        int bottom = y + (int) Math.ceil(mChangedBottom * CELL_SIZE) + 1;
+        resetChanged();
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Рисует растр одним копированием.
+     *
+     * @param g объект Graphics2D для рисования в координатах мира
+     */
+    void draw(Graphics2D g) {
+        int x = (int) Math.floor(mOriginX);
+        int y = (int) Math.floor(mOriginY);
+        g.drawImage(mImage, x, y, x + (int) Math.round(mColumns * CELL_SIZE), y + (int) Math.round(mRows * CELL_SIZE),
+                0, 0, mColumns, mRows, null);
+    }
+
+    /**
+     * Раскладывает вес по клеткам отрезка с шагом не больше клетки.
+     */
+    private void addPath(double fromX, double fromY, double toX, double toY, double maxDistance, double weight,
+                         float fade) {
+        double dx = toX - fromX;
+        double dy = toY - fromY;
+        if (dx * dx + dy * dy > maxDistance * maxDistance) {
+            fromX = toX;
+            fromY = toY;
+            dx = 0;
+            dy = 0;
+        }
+        double startColumn = (fromX - mOriginX) / CELL_SIZE;
+        double startRow = (fromY - mOriginY) / CELL_SIZE;
+        double stepColumn = dx / CELL_SIZE;
+        double stepRow = dy / CELL_SIZE;
+        int steps = Math.max(1, (int) Math.ceil(Math.max(Math.abs(stepColumn), Math.abs(stepRow))));
+        float share = (float) (weight / steps);
+        for (int step = 1; step <= steps; step++) {
+            double t = step / (double) steps;
+            double column = startColumn + stepColumn * t;
+            double row = startRow + stepRow * t;
+            if (column >= 0 && column < mColumns && row >= 0 && row < mRows) {
+                int cell = (int) row * mColumns + (int) column;
+                float previous = mValues[cell];
+                float value = previous + share;
+                mValues[cell] = value;
+                if (previous == 0 && mDecayRate > 0) {
+                    addLive(cell);
+                }
+                setPixel(cell, PALETTE[level(value * fade)]);
+            }
+        }
+    }
+
+    /**
+     * Приводит значения живых клеток к моменту now, перекрашивает их и начинает с этого момента новую эпоху.
+     * Клетки, погасшие до прозрачного уровня, обнуляются и убираются из списка живых.
+     */
+    private void decay(long now) {
+        float factor = (float) Math.exp(-mDecayRate * (now - mEpochNanos));
+        int live = 0;
+        for (int i = 0; i < mLiveCount; i++) {
+            int cell = mLive[i];
+            float value = mValues[cell] * factor;
+            int level = level(value);
+            if (level == 0) {
+                mValues[cell] = 0;
+            } else {
+                mValues[cell] = value;
+                mLive[live++] = cell;
+            }
+            setPixel(cell, PALETTE[level]);
+        }
+        mLiveCount = live;
+        mEpochNanos = now;
+    }
+
+    private void addLive(int cell) {
+        if (mLiveCount == mLive.length) {
+            mLive = Arrays.copyOf(mLive, Math.max(64, mLiveCount * 2));
+        }
+        mLive[mLiveCount++] = cell;
+    }
+
+    /**
+     * Перекрашивает клетку и, если цвет изменился, добавляет ее к габариту измененных клеток.
+     */
+    private void setPixel(int cell, int pixel) {
+        if (mPixels[cell] == pixel) {
+            return;
+        }
+        mPixels[cell] = pixel;
+        int column = cell % mColumns;
+        int row = cell / mColumns;
+        mChangedLeft = Math.min(mChangedLeft, column);
+        mChangedTop = Math.min(mChangedTop, row);
+        mChangedRight = Math.max(mChangedRight, column + 1);
+        mChangedBottom = Math.max(mChangedBottom, row + 1);
+    }
+
+    private void resetChanged() {
+        mChangedLeft = Integer.MAX_VALUE;
+        mChangedTop = Integer.MAX_VALUE;
+        mChangedRight = Integer.MIN_VALUE;
+        mChangedBottom = Integer.MIN_VALUE;
+    }
+
+    private int level(float value) {
+        return (int) Math.min(PALETTE.length - 1, Math.log1p(value) * mLevelScale);
+    }
+
+    /**
+     * Очищает растр.
+     *
+     * @param now текущий момент
+     */
+    void clear(long now) {
+        Arrays.fill(mValues, 0);
+        Arrays.fill(mPixels, 0);
+        mLiveCount = 0;
+        mEpochNanos = now;
+        resetChanged();
+    }
+}
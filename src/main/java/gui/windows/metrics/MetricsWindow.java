@@ -0,0 +1,138 @@
+package gui.windows.metrics;
+
+import controller.GameController;
+import controller.SimulationClock;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import state.WindowState;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Окно встроенных метрик: частота и задержки за последнюю секунду по каждой гистограмме {@link Metrics}
+ * и статистика часов симуляции с момента запуска.
+ */
+public class MetricsWindow extends JInternalFrame implements WindowState {
+    /**
+     * Период обновления таблицы в миллисекундах; задержки показываются за этот интервал.
+     */
+    private static final int REFRESH_PERIOD = 1000;
+    private static final String[] COLUMNS = {"Метрика", "В секунду", "Среднее, мс", "p50, мс", "p99, мс", "p99.9, мс", "Макс, мс"};
+
+    private final LatencyHistogram[] histograms = Metrics.all();
+    private final LatencyHistogram.Snapshot[] previous = new LatencyHistogram.Snapshot[histograms.length];
+    private final LatencyHistogram.Snapshot[] interval = new LatencyHistogram.Snapshot[histograms.length];
+    private final MetricsTableModel tableModel = new MetricsTableModel();
+    private final Timer timer = new Timer(REFRESH_PERIOD, event -> refresh());
+    private final GameController controller;
+    private final JLabel clockLabel = new JLabel();
+    private long previousNanos;
+
+    /**
+     * @param controller контроллер, часы которого показываются под таблицей
+     */
+    public MetricsWindow(GameController controller) {
+        super("Метрики", true, true, true, true);
+        this.controller = controller;
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        clockLabel.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        panel.add(clockLabel, BorderLayout.SOUTH);
+        panel.setPreferredSize(new Dimension(560, 170));
+        getContentPane().add(panel);
+        pack();
+
+        previousNanos = System.nanoTime();
+        for (int i = 0; i < histograms.length; i++) {
+            previous[i] = histograms[i].snapshot();
+            interval[i] = previous[i].since(previous[i]);
+        }
+        refreshClock();
+        timer.start();
+    }
+
+    /**
+     * Снимает гистограммы и показывает разность с прошлым снимком.
+     */
+    private void refresh() {
+        long now = System.nanoTime();
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram.Snapshot current = histograms[i].snapshot();
+            interval[i] = current.since(previous[i]);
+            previous[i] = current;
+        }
+        tableModel.seconds = (now - previousNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        previousNanos = now;
+        tableModel.fireTableRowsUpdated(0, histograms.length - 1);
+        refreshClock();
+    }
+
+    /**
+     * Показывает статистику часов симуляции: тики, догоняющие шаги, перерасходы, пропуски и опоздания.
+     */
+    private void refreshClock() {
+        SimulationClock.Statistics clock = controller.getClockStatistics();
+        clockLabel.setText(String.format("Часы: тиков %d, догоняющих шагов %d, перерасходов %d, пропущено %d; "
+                        + "опоздание пробуждения %s мс в среднем, %s мс макс",
+                clock.getTicks(), clock.getCatchUpSteps(), clock.getOverruns(), clock.getDroppedTicks(),
+                millis(clock.getMeanJitterNanos()), millis(clock.getMaxJitterNanos())));
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        super.dispose();
+    }
+
+    @Override
+    public String getPrefix() {
+        return "metrics";
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private class MetricsTableModel extends AbstractTableModel {
+        private double seconds = REFRESH_PERIOD / 1000.0;
+
+        @Override
+        public int getRowCount() {
+            return histograms.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LatencyHistogram.Snapshot snapshot = interval[row];
+            if (column == 0) {
+                return histograms[row].getDescription();
+            } else if (column == 1) {
+                return String.format("%.1f", snapshot.getCount() / seconds);
+            } else if (column == 2) {
+                return millis(snapshot.getMeanNanos());
+            } else if (column == 3) {
+                return millis(snapshot.getPercentileNanos(50));
+            } else if (column == 4) {
+                return millis(snapshot.getPercentileNanos(99));
+            } else if (column == 5) {
+                return millis(snapshot.getPercentileNanos(99.9));
+            }
+            return millis(snapshot.getMaxNanos());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package gui.windows.replay;
+
+import controller.ReplayController;
+import model.ModelUpdateListener;
+import state.WindowState;
+
+import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+import java.awt.*;
+
+/**
+ * Внутреннее окно управления воспроизведением записи траекторий:
+ * ползунок перехода к тику, перемотка назад и вперед, пауза.
+ */
+public class ReplayWindow extends JInternalFrame implements ModelUpdateListener, WindowState {
+    /**
+     * Частота обновления ползунка и номера тика в герцах.
+     */
+    private static final double UPDATE_RATE = 20;
+    /**
+     * Скорость перемотки в тиках записи за тик часов воспроизведения.
+     */
+    private static final double FAST_SPEED = 8;
+
+    private final ReplayController mReplay;
+    private final JSlider mSlider;
+    private final JLabel mTickLabel = new JLabel();
+    /**
+     * Ползунок двигается программно, и его события не должны переходить к тику.
+     */
+    private boolean mUpdating;
+
+    /**
+     * Создает окно управления воспроизведением.
+     *
+     * @param replay  воспроизведение
+     * @param onClose действие при закрытии окна, например возврат представлений к живой модели
+     */
+    public ReplayWindow(ReplayController replay, Runnable onClose) {
+        super("Воспроизведение", true, true, false, true);
+        mReplay = replay;
+        int length = (int) Math.max(0, replay.getLastTick() - replay.getFirstTick());
+        mSlider = new JSlider(0, length, 0);
+        mSlider.addChangeListener(e -> {
+            if (!mUpdating) {
+                mReplay.seek(mReplay.getFirstTick() + mSlider.getValue());
+            }
+        });
+
+        JPanel buttons = new JPanel(new FlowLayout());
+        buttons.add(speedButton("<<", -FAST_SPEED));
+        buttons.add(speedButton("<", -1));
+        buttons.add(speedButton("||", 0));
+        buttons.add(speedButton(">", 1));
+        buttons.add(speedButton(">>", FAST_SPEED));
+        buttons.add(mTickLabel);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(mSlider, BorderLayout.CENTER);
+        panel.add(buttons, BorderLayout.SOUTH);
+        getContentPane().add(panel);
+        pack();
+
+        addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                mReplay.removeUpdateListener(ReplayWindow.this);
+                onClose.run();
+            }
+        });
+        replay.addUpdateListener(this, UPDATE_RATE, EventQueue::invokeLater);
+        onModelUpdated(0);
+    }
+
+    private JButton speedButton(String text, double speed) {
+        JButton button = new JButton(text);
+        button.addActionListener(e -> mReplay.play(speed));
+        return button;
+    }
+
+    @Override
+    public void onModelUpdated(long version) {
+        long tick = mReplay.getTick();
+        if (!mSlider.getValueIsAdjusting()) {
+            mUpdating = true;
+            mSlider.setValue((int) (tick - mReplay.getFirstTick()));
+            mUpdating = false;
+        }
+        mTickLabel.setText("Тик " + tick + " из " + mReplay.getLastTick());
+    }
+
+    @Override
+    public String getPrefix() {
+        return "replay";
+    }
+}
@@ -0,0 +1,273 @@
+package headless;
+
+import gui.windows.game.FieldRenderer;
+import model.FleetTickEngine;
+import model.GameModel;
+import model.MathKernel;
+import model.RobotFleet;
+import model.WorldSnapshot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Экспорт прогона симуляции в последовательность PNG-кадров без дисплея.
+ * <p>
+ * Экспорт - конвейер из трех стадий. Поток симуляции шагает модель и каждые {@link Scenario#getFrameEvery()}
+ * тиков копирует снимок мира; пул потоков рисует снимки в изображения через {@link FieldRenderer}, тот же код,
+ * которым рисуется панель игрового поля, и кодирует их в PNG; поток записи пишет готовые кадры в файлы строго
+ * по порядку номеров. Кодирование дороже рисования, поэтому оно выполняется параллельно, а не в потоке записи.
+ * <p>
+ * Стадии связаны ограниченными очередями, а снимки берутся из пула фиксированного размера и возвращаются в него
+ * только после записи кадра. Пул ограничивает число кадров в пути, поэтому память экспорта не растет,
+ * если какая-то стадия не успевает: симуляция просто ждет свободного снимка.
+ * <p>
+ * Пример: {@code java -cp target/classes headless.FrameExport robots=1000 ticks=3000 frameEvery=10 frameDir=frames}
+ */
+public class FrameExport {
+    /**
+     * Задание, после которого поток рисования завершается.
+     */
+    private static final Frame END = new Frame(-1, null);
+
+    private final Scenario scenario;
+    private final GameModel model;
+    private final Path directory;
+    private final int width;
+    private final int height;
+    private final ArrayBlockingQueue<WorldSnapshot> freeSnapshots;
+    private final ArrayBlockingQueue<Frame> renderQueue;
+    private final ArrayBlockingQueue<Frame> writeQueue;
+    private final List<Thread> stages = new ArrayList<>();
+    private Thread producer;
+    /**
+     * Первая ошибка стадии; после нее все стадии прерываются.
+     */
+    private volatile Throwable failure;
+
+    private long simulationNanos;
+    private long stallNanos;
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private long writeNanos;
+
+    public FrameExport(Scenario scenario) {
+        if (Scenario.ENGINE_ANALYTIC.equals(scenario.getEngine())) {
+            throw new IllegalArgumentException("Экспорт кадров поддерживается только пошаговым движком");
+        }
+        this.scenario = scenario;
+        this.model = new GameModel(scenario.isOffHeap()
+                ? RobotFleet.offHeap(scenario.getRobots()) : new RobotFleet(16));
+        this.directory = Path.of(scenario.getFrameDir());
+        this.width = (int) Math.ceil(scenario.getWidth() * scenario.getFrameScale());
+        this.height = (int) Math.ceil(scenario.getHeight() * scenario.getFrameScale());
+        int threads = scenario.getRenderThreads();
+        int queue = scenario.getFrameQueue();
+        // Кадров в пути не больше, чем снимков в пуле, поэтому очередь записи никогда не бывает полна.
+        int inFlight = queue + threads;
+        freeSnapshots = new ArrayBlockingQueue<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            freeSnapshots.add(new WorldSnapshot());
+        }
+        renderQueue = new ArrayBlockingQueue<>(queue);
+        writeQueue = new ArrayBlockingQueue<>(inFlight);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Scenario scenario = Scenario.fromArgs(args);
+        new FrameExport(scenario).run();
+    }
+
+    /**
+     * Заполняет флот роботами со случайными позициями, направлениями и целями.
+     */
+    private void populate() {
+        Random random = new Random(scenario.getSeed());
+        RobotFleet fleet = model.getFleet();
+        for (int i = 0; i < scenario.getRobots(); i++) {
+            fleet.addRobot(random.nextDouble() * scenario.getWidth(), random.nextDouble() * scenario.getHeight(),
+                    random.nextDouble() * 2 * Math.PI,
+                    random.nextInt(scenario.getWidth()), random.nextInt(scenario.getHeight()));
+        }
+    }
+
+    /**
+     * Прогоняет симуляцию, записывает кадры и печатает отчет.
+     *
+     * @throws IOException          если каталог кадров не удалось создать или кадр не удалось записать
+     * @throws InterruptedException если поток экспорта прерван
+     */
+    public void run() throws IOException, InterruptedException {
+        producer = Thread.currentThread();
+        Files.createDirectories(directory);
+        populate();
+        model.setFleetEngine(new FleetTickEngine(scenario.getParallelism(), scenario.getSequentialCutoff()));
+        model.setMathKernel("fast".equals(scenario.getMath()) ? MathKernel.FAST : MathKernel.STRICT);
+        model.getFleet().setVectorized(scenario.isVector() && !scenario.isOffHeap());
+        double duration = scenario.getDuration();
+        for (long tick = 1; tick <= scenario.getWarmupTicks(); tick++) {
+            model.update(duration);
+        }
+
+        long frames = scenario.getTicks() / scenario.getFrameEvery();
+        for (int i = 0; i < scenario.getRenderThreads(); i++) {
+            stages.add(new Thread(this::render, "frame render " + i));
+        }
+        stages.add(new Thread(() -> write(frames), "frame writer"));
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+        long startNanos = System.nanoTime();
+        try {
+            for (long frame = 0; frame < frames; frame++) {
+                long waitStart = System.nanoTime();
+                WorldSnapshot snapshot = freeSnapshots.take();
+                long tickStart = System.nanoTime();
+                stallNanos += tickStart - waitStart;
+                for (long tick = 1; tick <= scenario.getFrameEvery(); tick++) {
+                    model.update(duration);
+                }
+                // модель шагает в этом же потоке, поэтому кадр копируется прямо из нее, без публикации снимка
+                model.copyWorld(snapshot);
+                simulationNanos += System.nanoTime() - tickStart;
+                renderQueue.put(new Frame(frame, snapshot));
+            }
+            for (int i = 0; i < scenario.getRenderThreads(); i++) {
+                renderQueue.put(END);
+            }
+            for (Thread stage : stages) {
+                stage.join();
+            }
+        } catch (InterruptedException e) {
+            if (failure == null) {
+                throw e;
+            }
+        } finally {
+            for (Thread stage : stages) {
+                stage.interrupt();
+            }
+            model.setFleetEngine(FleetTickEngine.sequential());
+            model.getFleet().close();
+        }
+        if (failure != null) {
+            Thread.interrupted();
+            throw new IOException("Экспорт кадров не удался", failure);
+        }
+        report(frames, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Поток рисования: берет снимки из очереди, рисует и кодирует их и передает кадры записи.
+     */
+    private void render() {
+        FieldRenderer renderer = new FieldRenderer();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            while (true) {
+                Frame frame = renderQueue.take();
+                if (frame == END) {
+                    return;
+                }
+                long start = System.nanoTime();
+                renderer.render(image, frame.snapshot, model.getPathPlanner(), 0, 0, scenario.getFrameScale());
+                long encodeStart = System.nanoTime();
+                png.reset();
+                if (!ImageIO.write(image, "png", png)) {
+                    throw new IOException("Нет кодировщика PNG");
+                }
+                frame.png = png.toByteArray();
+                renderNanos.add(encodeStart - start);
+                encodeNanos.add(System.nanoTime() - encodeStart);
+                writeQueue.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // экспорт прерван
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Поток записи: пишет кадры в файлы по порядку номеров, придерживая кадры, готовые раньше предыдущих,
+     * и возвращает снимки записанных кадров в пул.
+     *
+     * @param frames количество кадров
+     */
+    private void write(long frames) {
+        PriorityQueue<Frame> pending = new PriorityQueue<>(Comparator.comparingLong((Frame frame) -> frame.index));
+        long next = 0;
+        try {
+            while (next < frames) {
+                pending.add(writeQueue.take());
+                while (!pending.isEmpty() && pending.peek().index == next) {
+                    Frame frame = pending.poll();
+                    long start = System.nanoTime();
+                    Files.write(directory.resolve(String.format("frame-%06d.png", frame.index)), frame.png);
+                    writeNanos += System.nanoTime() - start;
+                    freeSnapshots.put(frame.snapshot);
+                    next++;
+                }
+            }
+        } catch (InterruptedException e) {
+            // экспорт прерван
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Запоминает первую ошибку стадии и прерывает остальные стадии и поток симуляции.
+     */
+    private synchronized void fail(Throwable e) {
+        if (failure != null) {
+            return;
+        }
+        failure = e;
+        producer.interrupt();
+        for (Thread stage : stages) {
+            if (stage != Thread.currentThread()) {
+                stage.interrupt();
+            }
+        }
+    }
+
+    private void report(long frames, long wallNanos) {
+        System.out.println("Сценарий: " + scenario);
+        System.out.println("Кадров: " + frames + ", " + width + "x" + height + " в " + directory.toAbsolutePath());
+        double wallSeconds = wallNanos / 1e9;
+        System.out.printf("Время: %.3f с, кадров в секунду: %.1f%n", wallSeconds,
+                wallSeconds > 0 ? frames / wallSeconds : 0);
+        System.out.printf("Симуляция %.3f с, ожидание свободного снимка %.3f с; в %d потоках рисование %.3f с, "
+                        + "кодирование PNG %.3f с; запись %.3f с%n",
+                simulationNanos / 1e9, stallNanos / 1e9, scenario.getRenderThreads(), renderNanos.sum() / 1e9,
+                encodeNanos.sum() / 1e9, writeNanos / 1e9);
+    }
+
+    /**
+     * Кадр на пути через конвейер: номер, снимок, из которого он рисуется, и PNG после кодирования.
+     */
+    private static final class Frame {
+        final long index;
+        final WorldSnapshot snapshot;
+        byte[] png;
+
+        Frame(long index, WorldSnapshot snapshot) {
+            this.index = index;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package headless;
+
+import behavior.BehaviorRuntime;
+import behavior.Behaviors;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.FleetTickEngine;
+import model.GameModel;
+import model.MathKernel;
+import model.RobotFleet;
+import model.TrajectoryEngine;
+import model.TrajectoryRecorder;
+import telemetry.TelemetryServer;
+
+import java.awt.*;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Безголовый запуск симуляции без Swing.
+ * Строит модель по сценарию, шагает ее с максимальной скоростью и печатает
+ * пропускную способность, время достижения цели и аллокации на тик.
+ * <p>
+ * Пример: {@code java -cp target/classes headless.HeadlessSimulation robots=100000 ticks=1000}
+ */
+public class HeadlessSimulation {
+    /**
+     * Сколько тиков сценарий поиска едет к одной точке, прежде чем выбрать другую.
+     */
+    private static final long SEARCH_MAX_TICKS = 5000;
+
+    private final Scenario scenario;
+    private final GameModel model;
+    private final TrajectoryEngine trajectories = new TrajectoryEngine(16);
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * Индексы роботов, которые еще не достигли цели. Первые pendingCount элементов актуальны.
+     */
+    private int[] pending;
+    private int pendingCount;
+    /**
+     * Номер тика, на котором робот достиг цели, или -1.
+     */
+    private long[] arrivedAt;
+    /**
+     * Текущий измеряемый тик и обработчик прибытий событийного движка.
+     */
+    private long currentTick;
+    private final IntConsumer onArrival = id -> arrivedAt[id] = currentTick;
+
+    public HeadlessSimulation(Scenario scenario) {
+        this.scenario = scenario;
+        this.model = new GameModel(scenario.isOffHeap()
+                ? RobotFleet.offHeap(scenario.getRobots()) : new RobotFleet(16));
+        this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Scenario scenario = Scenario.fromArgs(args);
+        Metrics.registerMBeans();
+        new HeadlessSimulation(scenario).run();
+    }
+
+    /**
+     * Заполняет флот роботами со случайными позициями, направлениями и целями.
+     */
+    private void populate() {
+        Random random = new Random(scenario.getSeed());
+        RobotFleet fleet = model.getFleet();
+        int width = scenario.getWidth();
+        int height = scenario.getHeight();
+        boolean analytic = isAnalytic();
+        for (int i = 0; i < scenario.getRobots(); i++) {
+            double x = random.nextDouble() * width;
+            double y = random.nextDouble() * height;
+            double direction = random.nextDouble() * 2 * Math.PI;
+            int targetX = random.nextInt(width);
+            int targetY = random.nextInt(height);
+            if (analytic) {
+                trajectories.addRobot(x, y, direction, targetX, targetY, 0);
+            } else {
+                fleet.addRobot(x, y, direction, targetX, targetY);
+            }
+        }
+        int size = scenario.getRobots();
+        pending = new int[size];
+        arrivedAt = new long[size];
+        Arrays.fill(arrivedAt, -1);
+        for (int i = 0; i < size; i++) {
+            pending[i] = i;
+        }
+        pendingCount = size;
+    }
+
+    /**
+     * Запускает сценарий и печатает отчет.
+     *
+     * @throws IOException если запись траекторий или сервер телеметрии не удалось создать
+     */
+    public void run() throws IOException {
+        populate();
+        model.setFleetEngine(new FleetTickEngine(scenario.getParallelism(), scenario.getSequentialCutoff()));
+        model.setMathKernel("fast".equals(scenario.getMath()) ? MathKernel.FAST : MathKernel.STRICT);
+        model.getFleet().setVectorized(scenario.isVector() && !scenario.isOffHeap());
+        if (scenario.isOffHeap()) {
+            model.setFleetIndexEnabled(false);
+        }
+        BehaviorRuntime behaviors = startBehaviors();
+        double duration = scenario.getDuration();
+        boolean analytic = isAnalytic();
+        long warmupTicks = scenario.getWarmupTicks();
+        for (long tick = 1; tick <= warmupTicks; tick++) {
+            if (analytic) {
+                trajectories.advanceTo(tick * duration, id -> arrivedAt[id] = 0);
+            } else {
+                model.update(duration);
+            }
+        }
+        if (!analytic) {
+            collectArrivals(0);
+        }
+
+        TelemetryServer telemetry = null;
+        if (scenario.getTelemetry() >= 0) {
+            telemetry = new TelemetryServer(model, scenario.getTelemetry());
+            System.out.println("Телеметрия: 127.0.0.1:" + telemetry.getPort());
+        }
+        if (!scenario.getRecord().isEmpty()) {
+            model.startRecording(new TrajectoryRecorder(Path.of(scenario.getRecord())));
+        }
+        long steppingNanos = 0;
+        LatencyHistogram.Snapshot ticksBefore = Metrics.TICK.snapshot();
+        LatencyHistogram.Snapshot dispatchBefore = Metrics.BEHAVIOR_DISPATCH.snapshot();
+        long wakeupsBefore = behaviors != null ? behaviors.getWakeups() : 0;
+        long[] gcBefore = collections();
+        long allocatedBefore = allocatedBytes();
+        long startNanos = System.nanoTime();
+        for (long tick = 1; tick <= scenario.getTicks(); tick++) {
+            long tickStart = System.nanoTime();
+            if (analytic) {
+                currentTick = tick;
+                trajectories.advanceTo((warmupTicks + tick) * duration, onArrival);
+                steppingNanos += System.nanoTime() - tickStart;
+            } else {
+                model.update(duration);
+                steppingNanos += System.nanoTime() - tickStart;
+                collectArrivals(tick);
+            }
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long[] gcAfter = collections();
+        LatencyHistogram.Snapshot tickLatency = Metrics.TICK.snapshot().since(ticksBefore);
+        LatencyHistogram.Snapshot dispatchLatency = Metrics.BEHAVIOR_DISPATCH.snapshot().since(dispatchBefore);
+        model.setFleetEngine(FleetTickEngine.sequential());
+        TrajectoryRecorder recorder = model.stopRecording();
+        if (recorder != null) {
+            System.out.println("Записано тиков: " + recorder.getTickCount() + ", поз: " + recorder.getRecordCount()
+                    + " в " + recorder.getPath());
+        }
+
+        report(steppingNanos, wallNanos, allocated, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+        if (tickLatency.getCount() > 0) {
+            System.out.printf("Длительность тика, мс: p50 %.3f, p99 %.3f, p99.9 %.3f, макс %.3f%n",
+                    tickLatency.getPercentileNanos(50) / 1e6, tickLatency.getPercentileNanos(99) / 1e6,
+                    tickLatency.getPercentileNanos(99.9) / 1e6, tickLatency.getMaxNanos() / 1e6);
+        }
+        if (behaviors != null) {
+            System.out.printf("Сценарии: %d работают, пробуждений за замер %d, проходов планировщика %d, "
+                            + "проход p50 %.3f мс, p99 %.3f мс%n",
+                    behaviors.getScriptCount(), behaviors.getWakeups() - wakeupsBefore, dispatchLatency.getCount(),
+                    dispatchLatency.getPercentileNanos(50) / 1e6, dispatchLatency.getPercentileNanos(99) / 1e6);
+            behaviors.close();
+        }
+        if (telemetry != null) {
+            System.out.println("Телеметрия: кадров отправлено " + telemetry.getSentFrames()
+                    + ", отброшено " + telemetry.getDroppedFrames() + ", клиентов " + telemetry.getClientCount());
+            telemetry.close();
+        }
+        model.getFleet().close();
+    }
+
+    /**
+     * Запускает сценарий поведения для каждого робота флота, если сценарий задан.
+     * Патруль ездит между начальной точкой и целью робота, в следовании каждый 16-й робот ищет,
+     * а остальные следуют за ним.
+     *
+     * @return среда сценариев или null
+     */
+    private BehaviorRuntime startBehaviors() {
+        String behavior = scenario.getBehavior();
+        if ("none".equals(behavior)) {
+            return null;
+        }
+        BehaviorRuntime runtime = new BehaviorRuntime(model);
+        RobotFleet fleet = model.getFleet();
+        Rectangle world = new Rectangle(scenario.getWidth(), scenario.getHeight());
+        for (int id = 0; id < fleet.size(); id++) {
+            if ("patrol".equals(behavior)) {
+                runtime.start(id, Behaviors.patrol(
+                        new Point((int) fleet.getPositionX(id), (int) fleet.getPositionY(id)),
+                        new Point(fleet.getTargetX(id), fleet.getTargetY(id))));
+            } else if ("follow".equals(behavior) && id % 16 != 0) {
+                runtime.start(id, Behaviors.follow(id - id % 16, 20));
+            } else {
+                runtime.start(id, Behaviors.search(world, SEARCH_MAX_TICKS, scenario.getSeed() + id));
+            }
+        }
+        return runtime;
+    }
+
+    private boolean isAnalytic() {
+        return Scenario.ENGINE_ANALYTIC.equals(scenario.getEngine());
+    }
+
+    /**
+     * Отмечает роботов, которые достигли цели на этом тике.
+     * Считается вне измеряемого шага.
+     *
+     * @param tick номер тика
+     */
+    private void collectArrivals(long tick) {
+        RobotFleet fleet = model.getFleet();
+        int i = 0;
+        while (i < pendingCount) {
+            int id = pending[i];
+            if (fleet.isArrived(id)) {
+                arrivedAt[id] = tick;
+                pending[i] = pending[--pendingCount];
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Суммарный объем памяти, выделенной всеми живыми потоками.
+     *
+     * @return количество байт или -1, если JVM не поддерживает измерение
+     */
+    private long allocatedBytes() {
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Количество сборок мусора и их суммарное время с запуска JVM.
+     *
+     * @return пара: количество сборок и время в миллисекундах
+     */
+    private static long[] collections() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return new long[]{count, millis};
+    }
+
+    private void report(long steppingNanos, long wallNanos, long allocated, long gcCount, long gcMillis) {
+        long ticks = scenario.getTicks();
+        long robots = scenario.getRobots() + (isAnalytic() ? 0L : 1L);
+        double steppingSeconds = steppingNanos / 1e9;
+        System.out.println("Сценарий: " + scenario);
+        System.out.printf("Время шагов: %.3f с (всего %.3f с)%n", steppingSeconds, wallNanos / 1e9);
+        if (steppingNanos > 0) {
+            System.out.printf("Тиков в секунду: %.1f%n", ticks / steppingSeconds);
+            System.out.printf("Робото-тиков в секунду: %.0f%n", ticks * robots / steppingSeconds);
+        }
+        if (allocated >= 0 && ticks > 0) {
+            System.out.printf("Аллокации на тик: %.1f байт%n", allocated / (double) ticks);
+        } else {
+            System.out.println("Аллокации на тик: недоступно");
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("Сборки мусора за замер: %d, %d мс; куча: занято %.1f МБ из %.1f МБ%n",
+                gcCount, gcMillis, heap.getUsed() / 1048576.0, heap.getCommitted() / 1048576.0);
+
+        int fleetSize = scenario.getRobots();
+        // Тики прибытия сжимаются в начало того же массива: отчет - последнее его использование,
+        // а копия удвоила бы память сценария из десятков миллионов роботов.
+        long[] arrived = arrivedAt;
+        int arrivedCount = 0;
+        int initiallyArrived = 0;
+        for (int i = 0; i < fleetSize; i++) {
+            if (arrivedAt[i] > 0) {
+                arrived[arrivedCount++] = arrivedAt[i];
+            } else if (arrivedAt[i] == 0) {
+                initiallyArrived++;
+            }
+        }
+        System.out.println("Достигли цели: " + arrivedCount + ", были у цели до замера: " + initiallyArrived +
+                ", не достигли: " + (fleetSize - arrivedCount - initiallyArrived));
+        if (arrivedCount > 0) {
+            Arrays.sort(arrived, 0, arrivedCount);
+            double duration = scenario.getDuration();
+            double warmup = scenario.getWarmupTicks() * duration;
+            System.out.printf("Время до цели, мс модели: мин %.0f, медиана %.0f, p95 %.0f, макс %.0f%n",
+                    warmup + arrived[0] * duration,
+                    warmup + arrived[arrivedCount / 2] * duration,
+                    warmup + arrived[(int) Math.min(arrivedCount - 1, (long) arrivedCount * 95 / 100)] * duration,
+                    warmup + arrived[arrivedCount - 1] * duration);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package headless;
+
+import model.RobotFleet;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Описание сценария для безголовой симуляции.
+ * Читается из properties-файла и/или аргументов вида ключ=значение.
+ */
+public class Scenario {
+    /**
+     * Пошаговый движок: флот модели шагает каждый тик.
+     */
+    public static final String ENGINE_STEP = "step";
+    /**
+     * Событийный движок: траектории решаются в замкнутой форме, тик обрабатывает только прибытия.
+     */
+    public static final String ENGINE_ANALYTIC = "analytic";
+
+    private final int robots;
+    private final long ticks;
+    private final long warmupTicks;
+    private final double duration;
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final int parallelism;
+    private final int sequentialCutoff;
+    private final String engine;
+    private final String math;
+    private final boolean vector;
+    private final String storage;
+    private final String record;
+    private final int telemetry;
+    private final String behavior;
+    private final long frameEvery;
+    private final double frameScale;
+    private final int renderThreads;
+    private final int frameQueue;
+    private final String frameDir;
+
+    private Scenario(Properties props) {
+        robots = Integer.parseInt(props.getProperty("robots", "10000"));
+        ticks = Long.parseLong(props.getProperty("ticks", "1000"));
+        warmupTicks = Long.parseLong(props.getProperty("warmupTicks", "100"));
+        duration = Double.parseDouble(props.getProperty("duration", "10"));
+        seed = Long.parseLong(props.getProperty("seed", "42"));
+        width = Integer.parseInt(props.getProperty("width", "1000"));
+        height = Integer.parseInt(props.getProperty("height", "1000"));
+        parallelism = Integer.parseInt(props.getProperty("parallelism", "1"));
+        sequentialCutoff = Integer.parseInt(props.getProperty("sequentialCutoff", "8192"));
+        engine = props.getProperty("engine", ENGINE_STEP);
+        if (!ENGINE_STEP.equals(engine) && !ENGINE_ANALYTIC.equals(engine)) {
+            throw new IllegalArgumentException("Неизвестный движок: " + engine);
+        }
+        math = props.getProperty("math", System.getProperty("robots.math", "strict"));
+        if (!"strict".equals(math) && !"fast".equals(math)) {
+            throw new IllegalArgumentException("Неизвестное ядро тригонометрии: " + math);
+        }
+        vector = Boolean.parseBoolean(props.getProperty("vector", String.valueOf(
+                RobotFleet.isVectorSupported() && !"false".equals(System.getProperty("robots.vector")))));
+        if (vector && !RobotFleet.isVectorSupported()) {
+            throw new IllegalArgumentException(
+                    "Векторный шаг недоступен: запустите JVM с --add-modules jdk.incubator.vector");
+        }
+        storage = props.getProperty("storage", System.getProperty("robots.storage", "heap"));
+        if (!"heap".equals(storage) && !"offheap".equals(storage)) {
+            throw new IllegalArgumentException("Неизвестное хранилище флота: " + storage);
+        }
+        if ("offheap".equals(storage) && !RobotFleet.isOffHeapSupported()) {
+            throw new IllegalArgumentException("Хранение флота вне кучи недоступно: запустите JVM с --enable-preview");
+        }
+        record = props.getProperty("record", "");
+        if (!record.isEmpty() && ENGINE_ANALYTIC.equals(engine)) {
+            throw new IllegalArgumentException("Запись траекторий поддерживается только пошаговым движком");
+        }
+        telemetry = Integer.parseInt(props.getProperty("telemetry", "-1"));
+        if (telemetry >= 0 && ENGINE_ANALYTIC.equals(engine)) {
+            throw new IllegalArgumentException("Телеметрия поддерживается только пошаговым движком");
+        }
+        behavior = props.getProperty("behavior", "none");
+        if (!"none".equals(behavior) && !"patrol".equals(behavior) && !"follow".equals(behavior)
+                && !"search".equals(behavior)) {
+            throw new IllegalArgumentException("Неизвестное поведение: " + behavior);
+        }
+        if (!"none".equals(behavior) && ENGINE_ANALYTIC.equals(engine)) {
+            throw new IllegalArgumentException("Сценарии поведения поддерживаются только пошаговым движком");
+        }
+        frameEvery = Long.parseLong(props.getProperty("frameEvery", "10"));
+        frameScale = Double.parseDouble(props.getProperty("frameScale", "1"));
+        renderThreads = Integer.parseInt(props.getProperty("renderThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        frameQueue = Integer.parseInt(props.getProperty("frameQueue", "4"));
+        frameDir = props.getProperty("frameDir", "frames");
+        if (frameEvery <= 0 || !(frameScale > 0) || renderThreads <= 0 || frameQueue <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры экспорта кадров: " + props);
+        }
+        if (robots < 0 || ticks < 0 || warmupTicks < 0 || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Некорректный сценарий: " + props);
+        }
+    }
+
+    /**
+     * Собирает сценарий из аргументов командной строки.
+     * Аргумент без знака '=' считается путем к properties-файлу,
+     * аргументы ключ=значение переопределяют значения из файла.
+     *
+     * @param args аргументы командной строки
+     * @return сценарий
+     * @throws IOException если файл сценария не удалось прочитать
+     */
+    public static Scenario fromArgs(String[] args) throws IOException {
+        Properties props = new Properties();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                try (InputStream is = new FileInputStream(arg)) {
+                    props.load(is);
+                }
+            } else {
+                props.setProperty(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+            }
+        }
+        return new Scenario(props);
+    }
+
+    /**
+     * @return количество роботов во флоте
+     */
+    public int getRobots() {
+        return robots;
+    }
+
+    /**
+     * @return количество измеряемых тиков
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return количество тиков прогрева, которые не попадают в измерения
+     */
+    public long getWarmupTicks() {
+        return warmupTicks;
+    }
+
+    /**
+     * @return длительность шага в миллисекундах модели
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return зерно генератора начальных позиций
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return ширина мира
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return высота мира
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return уровень параллелизма движка шага флота
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return порог последовательного шага флота
+     */
+    public int getSequentialCutoff() {
+        return sequentialCutoff;
+    }
+
+    /**
+     * @return движок симуляции: {@link #ENGINE_STEP} или {@link #ENGINE_ANALYTIC}
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return ядро тригонометрии пошагового движка: strict или fast
+     */
+    public String getMath() {
+        return math;
+    }
+
+    /**
+     * @return true, если флот шагает векторным кодом, см. {@link RobotFleet#setVectorized}
+     */
+    public boolean isVector() {
+        return vector;
+    }
+
+    /**
+     * @return true, если столбцы флота лежат вне кучи, см. {@link RobotFleet#offHeap}
+     */
+    public boolean isOffHeap() {
+        return "offheap".equals(storage);
+    }
+
+    /**
+     * @return путь к файлу записи траекторий измеряемых тиков или пустая строка, если запись не нужна
+     */
+    public String getRecord() {
+        return record;
+    }
+
+    /**
+     * @return порт сервера телеметрии, 0 - любой свободный, или -1, если телеметрия не нужна
+     */
+    public int getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * @return сценарий поведения каждого робота: none, patrol, follow или search
+     */
+    public String getBehavior() {
+        return behavior;
+    }
+
+    /**
+     * @return через сколько тиков экспорт кадров снимает очередной кадр
+     */
+    public long getFrameEvery() {
+        return frameEvery;
+    }
+
+    /**
+     * @return сколько пикселей кадра приходится на единицу мира
+     */
+    public double getFrameScale() {
+        return frameScale;
+    }
+
+    /**
+     * @return количество потоков, которые рисуют кадры
+     */
+    public int getRenderThreads() {
+        return renderThreads;
+    }
+
+    /**
+     * @return емкость очередей между стадиями экспорта кадров
+     */
+    public int getFrameQueue() {
+        return frameQueue;
+    }
+
+    /**
+     * @return каталог, в который экспорт записывает кадры
+     */
+    public String getFrameDir() {
+        return frameDir;
+    }
+
+    @Override
+    public String toString() {
+        return "robots=" + robots + " ticks=" + ticks + " warmupTicks=" + warmupTicks +
+                " duration=" + duration + " seed=" + seed + " world=" + width + "x" + height +
+                " parallelism=" + parallelism + " sequentialCutoff=" + sequentialCutoff + " engine=" + engine +
+                " math=" + math + " vector=" + vector + " storage=" + storage + (record.isEmpty() ? "" : " record=" + record) +
+                (telemetry < 0 ? "" : " telemetry=" + telemetry) +
+                ("none".equals(behavior) ? "" : " behavior=" + behavior);
+    }
+}
@@ -1,14 +1,18 @@
 package log;
 
+import metrics.Metrics;
+
 import java.util.ArrayList;
 import java.util.Collections;
 
 /**
  * Источник данных для лога, который хранит и управляет сообщениями лога.
+ * Хранит не больше заданного количества последних сообщений; писать можно из любых потоков.
+ * Время записи вместе с уведомлением слушателей пишется в {@link Metrics#LOG_APPEND}.
  */
 public class LogWindowSource {
     private int mIQueueLength;
-    private ArrayList<LogEntry> mMessages;
+    private final ArrayList<LogEntry> mMessages;
     private final ArrayList<LogChangeListener> mListeners;
     private volatile LogChangeListener[] mActiveListeners;
 
@@ -50,8 +54,14 @@ public class LogWindowSource {
      * @param strMessage текст сообщения
      */
     public void append(LogLevel logLevel, String strMessage) {
+        long start = System.nanoTime();
         LogEntry entry = new LogEntry(logLevel, strMessage);
-        mMessages.add(entry);
+        synchronized (mMessages) {
+            if (mMessages.size() >= mIQueueLength && !mMessages.isEmpty()) {
+                mMessages.remove(0);
+            }
+            mMessages.add(entry);
+        }
         LogChangeListener[] activeListeners = mActiveListeners;
         if (activeListeners == null) {
             synchronized (mListeners) {
@@ -64,6 +74,7 @@ public class LogWindowSource {
         for (LogChangeListener listener : activeListeners) {
             listener.onLogChanged();
         }
+        Metrics.LOG_APPEND.recordSince(start);
     }
 
     /**
@@ -71,7 +82,9 @@ public class LogWindowSource {
      * @return количество сообщений в логе
      */
     public int size() {
-        return mMessages.size();
+        synchronized (mMessages) {
+            return mMessages.size();
+        }
     }
 
     /**
@@ -81,18 +94,22 @@ public class LogWindowSource {
      * @return диапазон сообщений из лога
      */
     public Iterable<LogEntry> range(int startFrom, int count) {
-        if (startFrom < 0 || startFrom >= mMessages.size()) {
-            return Collections.emptyList();
+        synchronized (mMessages) {
+            if (startFrom < 0 || startFrom >= mMessages.size()) {
+                return Collections.emptyList();
+            }
+            int indexTo = Math.min(startFrom + count, mMessages.size());
+            return new ArrayList<LogEntry>(mMessages.subList(startFrom, indexTo));
         }
-        int indexTo = Math.min(startFrom + count, mMessages.size());
-        return mMessages.subList(startFrom, indexTo);
     }
 
     /**
-     * Возвращает все сообщения из лога.
+     * Возвращает копию всех сообщений из лога.
      * @return все сообщения из лога
      */
     public Iterable<LogEntry> all() {
-        return mMessages;
+        synchronized (mMessages) {
+            return new ArrayList<LogEntry>(mMessages);
+        }
     }
 }
\ No newline at end of file
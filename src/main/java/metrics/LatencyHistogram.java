@@ -0,0 +1,220 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек без блокировок.
+ * Корзины логарифмически-линейные: каждая степень двойки наносекунд делится на
+ * {@link #SUB_BUCKETS} равных корзин, поэтому относительная погрешность перцентилей не больше 12.5%,
+ * а вся гистограмма - это {@link #BUCKETS} счетчиков от наносекунд до получаса.
+ * <p>
+ * Запись - два атомарных сложения без выделения памяти, ее можно вызывать из любых потоков
+ * и оставлять включенной постоянно. Чтение копирует счетчики в {@link Snapshot}; копия не атомарна
+ * относительно одновременных записей, но каждая запись попадает либо в нее, либо в следующую.
+ */
+public final class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Старший двоичный разряд самой большой различимой задержки; задержки больше 2^41 нс
+     * попадают в последнюю корзину.
+     */
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final String mName;
+    private final String mDescription;
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mTotalNanos = new AtomicLong();
+
+    /**
+     * @param name        короткое имя, под которым гистограмма видна в JMX
+     * @param description описание измеряемой величины
+     */
+    public LatencyHistogram(String name, String description) {
+        mName = name;
+        mDescription = description;
+    }
+
+    /**
+     * Записывает одну задержку.
+     *
+     * @param nanos задержка в наносекундах; отрицательные значения считаются нулевыми
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        mCounts.incrementAndGet(bucketOf(value));
+        mTotalNanos.addAndGet(value);
+    }
+
+    /**
+     * Записывает время, прошедшее с момента startNanos по {@link System#nanoTime()}.
+     *
+     * @param startNanos начало измеряемого интервала
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Копирует текущие счетчики.
+     *
+     * @return снимок гистограммы
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mCounts.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, mTotalNanos.get());
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public String getDescription() {
+        return mDescription;
+    }
+
+    @Override
+    public long getCount() {
+        return snapshot().getCount();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        return snapshot().getMeanNanos();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return snapshot().getPercentileNanos(50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return snapshot().getPercentileNanos(90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return snapshot().getPercentileNanos(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return snapshot().getPercentileNanos(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return snapshot().getMaxNanos();
+    }
+
+    /**
+     * Обнуляет гистограмму. Записи, идущие одновременно со сбросом, могут сохраниться частично.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalNanos.set(0);
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        if (nanos >= 1L << (MAX_EXPONENT + 1)) {
+            return BUCKETS - 1;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return наибольшая задержка, которая попадает в корзину
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Неизменяемая копия счетчиков гистограммы.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+        }
+
+        /**
+         * Разность двух снимков одной гистограммы: задержки, записанные между ними.
+         *
+         * @param earlier более ранний снимок
+         * @return снимок интервала
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[BUCKETS];
+            long deltaCount = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                delta[i] = Math.max(counts[i] - earlier.counts[i], 0);
+                deltaCount += delta[i];
+            }
+            return new Snapshot(delta, deltaCount, Math.max(totalNanos - earlier.totalNanos, 0));
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * @param percentile перцентиль от 0 до 100
+         * @return верхняя граница корзины, в которую попадает перцентиль, или 0 для пустой гистограммы
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(BUCKETS - 1);
+        }
+
+        public long getMaxNanos() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return upperBoundOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
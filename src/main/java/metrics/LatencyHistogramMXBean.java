@@ -0,0 +1,30 @@
+package metrics;
+
+/**
+ * Представление гистограммы задержек в JMX. Значения накоплены с запуска или последнего сброса,
+ * перцентили округлены вверх до границы корзины гистограммы.
+ */
+public interface LatencyHistogramMXBean {
+    String getName();
+
+    String getDescription();
+
+    long getCount();
+
+    long getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    long getMaxNanos();
+
+    /**
+     * Обнуляет гистограмму.
+     */
+    void reset();
+}
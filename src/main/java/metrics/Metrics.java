@@ -0,0 +1,113 @@
+package metrics;
+
+import log.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Встроенные метрики приложения: гистограммы задержек, которые пишутся всегда.
+ * Каждая гистограмма публикуется в JMX как {@code robots:type=Latency,name=<имя>}
+ * после {@link #registerMBeans()} и показывается в окне метрик.
+ */
+public final class Metrics {
+    /**
+     * Длительность тика симуляции {@link model.GameModel#update}.
+     */
+    public static final LatencyHistogram TICK = new LatencyHistogram("tick", "Тик симуляции");
+    /**
+     * Время одного вызова слушателя модели: объединенного уведомления или propertyChange.
+     */
+    public static final LatencyHistogram DISPATCH = new LatencyHistogram("dispatch", "Вызов слушателя модели");
+    /**
+     * Время от запроса перерисовки игрового поля до конца отрисовки.
+     */
+    public static final LatencyHistogram REPAINT = new LatencyHistogram("repaint", "Перерисовка игрового поля");
+    /**
+     * Время от постановки пробного события в очередь Swing до его выполнения.
+     */
+    public static final LatencyHistogram EDT_LAG = new LatencyHistogram("edtLag", "Отставание потока Swing");
+    /**
+     * Время добавления записи в лог вместе с уведомлением его слушателей.
+     */
+    public static final LatencyHistogram LOG_APPEND = new LatencyHistogram("logAppend", "Запись в лог");
+    /**
+     * Проход планировщика поведений после тика: снимок мира, отправка целей и пробуждение сценариев.
+     */
+    public static final LatencyHistogram BEHAVIOR_DISPATCH =
+            new LatencyHistogram("behaviorDispatch", "Пробуждение сценариев");
+
+    private static final LatencyHistogram[] sAll = {TICK, DISPATCH, REPAINT, EDT_LAG, LOG_APPEND, BEHAVIOR_DISPATCH};
+    /**
+     * Период пробных событий в очереди Swing в миллисекундах.
+     */
+    private static final long EDT_PROBE_PERIOD = 100;
+
+    private static boolean sRegistered;
+    private static ScheduledExecutorService sEdtProbe;
+    /**
+     * Момент постановки пробного события в очередь или 0, если событие уже выполнено.
+     */
+    private static volatile long sEdtProbePostedNanos;
+    private static final Runnable sEdtProbeReceived = () -> {
+        EDT_LAG.recordSince(sEdtProbePostedNanos);
+        sEdtProbePostedNanos = 0;
+    };
+
+    private Metrics() {
+    }
+
+    /**
+     * @return все гистограммы в порядке отображения
+     */
+    public static LatencyHistogram[] all() {
+        return sAll.clone();
+    }
+
+    /**
+     * Регистрирует гистограммы в платформенном MBean-сервере. Повторный вызов ничего не делает.
+     */
+    public static synchronized void registerMBeans() {
+        if (sRegistered) {
+            return;
+        }
+        sRegistered = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (LatencyHistogram histogram : sAll) {
+            try {
+                server.registerMBean(histogram, new ObjectName("robots:type=Latency,name=" + histogram.getName()));
+            } catch (JMException e) {
+                Logger.error("Не удалось зарегистрировать метрику " + histogram.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Запускает измерение отставания потока Swing: фоновый поток периодически ставит в очередь
+     * событие и записывает, через сколько оно выполнилось. Пока событие не выполнено, новое не ставится,
+     * поэтому зависший поток Swing дает одну большую задержку, а не растущую очередь.
+     * Повторный вызов ничего не делает.
+     */
+    public static synchronized void startEdtProbe() {
+        if (sEdtProbe != null) {
+            return;
+        }
+        sEdtProbe = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt lag probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sEdtProbe.scheduleAtFixedRate(() -> {
+            if (sEdtProbePostedNanos == 0) {
+                sEdtProbePostedNanos = System.nanoTime();
+                EventQueue.invokeLater(sEdtProbeReceived);
+            }
+        }, EDT_PROBE_PERIOD, EDT_PROBE_PERIOD, TimeUnit.MILLISECONDS);
+    }
+}
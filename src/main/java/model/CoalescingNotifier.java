@@ -0,0 +1,138 @@
+package model;
+
+import metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Объединяет частые изменения модели в редкие уведомления.
+ * Каждое изменение увеличивает номер версии, а каждому слушателю доставляется
+ * не больше одного уведомления за свой минимальный интервал, с последней версией на момент доставки.
+ * Пока уведомление слушателю ожидает доставки, новые изменения ничего не планируют.
+ * Время работы слушателей пишется в {@link Metrics#DISPATCH}.
+ */
+public class CoalescingNotifier {
+    /**
+     * Частота уведомлений по умолчанию - частота кадров обычного дисплея.
+     */
+    public static final double DEFAULT_FRAME_RATE = 60;
+
+    private static final ScheduledExecutorService sDelayScheduler = createScheduler();
+
+    private final AtomicLong mVersion = new AtomicLong();
+    private final ArrayList<Subscription> mSubscriptions = new ArrayList<>();
+    private volatile Subscription[] mActiveSubscriptions = new Subscription[0];
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "notification throttler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Регистрирует слушателя.
+     *
+     * @param listener слушатель
+     * @param maxRate  максимальная частота уведомлений в герцах
+     * @param executor исполнитель, в котором вызывается слушатель, например EventQueue::invokeLater
+     */
+    public void addListener(ModelUpdateListener listener, double maxRate, Executor executor) {
+        if (!(maxRate > 0)) {
+            throw new IllegalArgumentException("Частота уведомлений должна быть положительной: " + maxRate);
+        }
+        synchronized (mSubscriptions) {
+            mSubscriptions.add(new Subscription(listener, maxRate, executor));
+            mActiveSubscriptions = mSubscriptions.toArray(new Subscription[0]);
+        }
+    }
+
+    /**
+     * Отменяет регистрацию слушателя.
+     *
+     * @param listener слушатель
+     */
+    public void removeListener(ModelUpdateListener listener) {
+        synchronized (mSubscriptions) {
+            mSubscriptions.removeIf(subscription -> subscription.listener == listener);
+            mActiveSubscriptions = mSubscriptions.toArray(new Subscription[0]);
+        }
+    }
+
+    /**
+     * Сообщает об изменении модели. Не создает объектов, если уведомления уже запланированы.
+     */
+    public void publish() {
+        mVersion.incrementAndGet();
+        for (Subscription subscription : mActiveSubscriptions) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Возвращает текущую версию модели.
+     *
+     * @return номер версии
+     */
+    public long getVersion() {
+        return mVersion.get();
+    }
+
+    /**
+     * Регистрация одного слушателя с его ограничением частоты.
+     */
+    private final class Subscription {
+        private final ModelUpdateListener listener;
+        private final long minIntervalNanos;
+        private final Executor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable dispatch = this::dispatch;
+        private final Runnable submit = this::submit;
+        private volatile long lastDispatchNanos;
+        private long lastDeliveredVersion = -1;
+
+        Subscription(ModelUpdateListener listener, double maxRate, Executor executor) {
+            this.listener = listener;
+            this.minIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / maxRate);
+            this.executor = executor;
+            this.lastDispatchNanos = System.nanoTime() - minIntervalNanos;
+        }
+
+        void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            long delay = lastDispatchNanos + minIntervalNanos - System.nanoTime();
+            if (delay <= 0) {
+                submit();
+            } else {
+                sDelayScheduler.schedule(submit, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void submit() {
+            executor.execute(dispatch);
+        }
+
+        private void dispatch() {
+            lastDispatchNanos = System.nanoTime();
+            scheduled.set(false);
+            long version = mVersion.get();
+            if (version == lastDeliveredVersion) {
+                return;
+            }
+            lastDeliveredVersion = version;
+            listener.onModelUpdated(version);
+            Metrics.DISPATCH.recordSince(lastDispatchNanos);
+        }
+    }
+}
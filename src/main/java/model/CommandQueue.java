@@ -0,0 +1,116 @@
+package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченная неблокирующая очередь с многими писателями и одним читателем.
+ * <p>
+ * Кольцевой буфер с номером последовательности в каждой ячейке: писатель захватывает
+ * позицию сравнением с обменом хвоста, кладет элемент и публикует ячейку номером позиция + 1;
+ * читатель забирает опубликованные ячейки по порядку и освобождает их номером позиция + емкость.
+ * Писатели не ждут ни друг друга, ни читателя: при заполненной очереди {@link #offer} сразу
+ * возвращает false. Читатель - только поток симуляции, поэтому голова очереди не синхронизируется.
+ *
+ * @param <T> тип элементов
+ */
+public class CommandQueue<T> {
+    private static final VarHandle SLOT_SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(CommandQueue.class, "mTail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] mItems;
+    private final long[] mSequences;
+    private final int mMask;
+    @SuppressWarnings("unused")
+    private volatile long mTail;
+    private long mHead;
+
+    /**
+     * Создает очередь.
+     *
+     * @param capacity емкость, округляется вверх до степени двойки
+     */
+    public CommandQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Некорректная емкость очереди: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mItems = new Object[size];
+        mSequences = new long[size];
+        mMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            mSequences[i] = i;
+        }
+    }
+
+    /**
+     * Добавляет элемент в очередь. Может вызываться из любого потока.
+     *
+     * @param item элемент
+     * @return false, если очередь заполнена и элемент не добавлен
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException("Элемент очереди не может быть null");
+        }
+        while (true) {
+            long tail = (long) TAIL.getVolatile(this);
+            int index = (int) tail & mMask;
+            long sequence = (long) SLOT_SEQUENCE.getAcquire(mSequences, index);
+            if (sequence == tail) {
+                if (TAIL.compareAndSet(this, tail, tail + 1)) {
+                    mItems[index] = item;
+                    SLOT_SEQUENCE.setRelease(mSequences, index, tail + 1);
+                    return true;
+                }
+            } else if (sequence < tail) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Забирает опубликованные элементы по порядку. Вызывается только потоком-читателем.
+     *
+     * @param consumer обработчик элементов
+     * @param maxItems максимальное количество элементов за вызов
+     * @return количество обработанных элементов
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super T> consumer, int maxItems) {
+        int drained = 0;
+        while (drained < maxItems) {
+            long head = mHead;
+            int index = (int) head & mMask;
+            if ((long) SLOT_SEQUENCE.getAcquire(mSequences, index) != head + 1) {
+                break;
+            }
+            T item = (T) mItems[index];
+            mItems[index] = null;
+            SLOT_SEQUENCE.setRelease(mSequences, index, head + mItems.length);
+            mHead = head + 1;
+            drained++;
+            consumer.accept(item);
+        }
+        return drained;
+    }
+
+    /**
+     * @return емкость очереди
+     */
+    public int capacity() {
+        return mItems.length;
+    }
+}
@@ -0,0 +1,68 @@
+package model;
+
+/**
+ * Хранилище столбцов флота: позиции, направления и цели роботов по идентификатору.
+ * {@link RobotFleet} ведет размер флота и шаг симуляции, а хранилище отвечает только
+ * за память: массивы в куче ({@link HeapFleetStorage}) или память вне кучи ({@link OffHeapFleetStorage}).
+ * <p>
+ * Чтение и запись разных роботов из разных потоков безопасны, рост и закрытие выполняет только
+ * поток симуляции, когда шаг флота не идет.
+ */
+interface FleetStorage extends AutoCloseable {
+    /**
+     * @return количество роботов, которое помещается без роста
+     */
+    int capacity();
+
+    /**
+     * Увеличивает вместимость, сохраняя первых роботов.
+     *
+     * @param capacity новая вместимость
+     * @param size     количество роботов, которых нужно сохранить
+     */
+    void grow(int capacity, int size);
+
+    double positionX(int id);
+
+    double positionY(int id);
+
+    double direction(int id);
+
+    int targetX(int id);
+
+    int targetY(int id);
+
+    /**
+     * Записывает позу робота.
+     */
+    void setPose(int id, double x, double y, double direction);
+
+    void setTarget(int id, int x, int y);
+
+    /**
+     * Копирует первых роботов в столбцы снимка, вместимость которых уже достаточна.
+     *
+     * @param snapshot снимок
+     * @param size     количество роботов
+     */
+    void copyTo(WorldSnapshot snapshot, int size);
+
+    /**
+     * Заменяет первых роботов роботами из столбцов снимка; вместимость уже достаточна.
+     *
+     * @param snapshot снимок
+     * @param size     количество роботов
+     */
+    void copyFrom(WorldSnapshot snapshot, int size);
+
+    /**
+     * @return true, если столбцы лежат вне кучи
+     */
+    boolean isOffHeap();
+
+    /**
+     * Освобождает память хранилища. После закрытия хранилище использовать нельзя.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,124 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Движок шага флота, который делит тик на части и считает их в пуле ForkJoin.
+ * Роботы флота не зависят друг от друга, а каждая часть считается тем же кодом
+ * {@link RobotFleet#stepRange}, поэтому результат побитово совпадает с последовательным шагом.
+ * Метод {@link #step} возвращается только после завершения всех частей - это барьер между тиками.
+ */
+public class FleetTickEngine implements AutoCloseable {
+    /**
+     * Порог по умолчанию, ниже которого флот считается в вызывающем потоке.
+     */
+    public static final int DEFAULT_SEQUENTIAL_CUTOFF = 8192;
+
+    private final ForkJoinPool mPool;
+    private final int mParallelism;
+    private final int mSequentialCutoff;
+
+    /**
+     * Создает движок.
+     *
+     * @param parallelism      уровень параллелизма, 1 - всегда последовательный шаг
+     * @param sequentialCutoff количество роботов, начиная с которого шаг делится на части
+     */
+    public FleetTickEngine(int parallelism, int sequentialCutoff) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Уровень параллелизма должен быть положительным: " + parallelism);
+        }
+        if (sequentialCutoff < 1) {
+            throw new IllegalArgumentException("Порог последовательного шага должен быть положительным: "
+                    + sequentialCutoff);
+        }
+        mParallelism = parallelism;
+        mSequentialCutoff = sequentialCutoff;
+        mPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Создает движок, который всегда считает флот в вызывающем потоке.
+     *
+     * @return последовательный движок
+     */
+    public static FleetTickEngine sequential() {
+        return new FleetTickEngine(1, DEFAULT_SEQUENTIAL_CUTOFF);
+    }
+
+    /**
+     * Создает движок по системным свойствам robots.parallelism и robots.sequentialCutoff.
+     * По умолчанию используется количество доступных процессоров.
+     *
+     * @return настроенный движок
+     */
+    public static FleetTickEngine fromSystemProperties() {
+        int parallelism = Integer.getInteger("robots.parallelism", Runtime.getRuntime().availableProcessors());
+        int cutoff = Integer.getInteger("robots.sequentialCutoff", DEFAULT_SEQUENTIAL_CUTOFF);
+        return new FleetTickEngine(Math.max(parallelism, 1), Math.max(cutoff, 1));
+    }
+
+    /**
+     * Делает шаг всего флота и ждет, пока все части будут посчитаны.
+     *
+     * @param fleet    флот роботов
+     * @param duration длительность шага
+     * @return количество роботов, которые сдвинулись
+     */
+    public int step(RobotFleet fleet, double duration) {
+        int size = fleet.size();
+        if (mPool == null || size <= mSequentialCutoff) {
+            return fleet.stepRange(0, size, duration);
+        }
+        int chunk = Math.max(mSequentialCutoff, size / (mParallelism * 4));
+        return mPool.invoke(new StepTask(fleet, 0, size, chunk, duration));
+    }
+
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    public int getSequentialCutoff() {
+        return mSequentialCutoff;
+    }
+
+    @Override
+    public void close() {
+        if (mPool != null) {
+            mPool.shutdown();
+        }
+    }
+
+    /**
+     * Задача, которая делит диапазон роботов пополам, пока он больше размера части.
+     */
+    private static class StepTask extends RecursiveTask<Integer> {
+        private final RobotFleet fleet;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final double duration;
+
+        StepTask(RobotFleet fleet, int from, int to, int chunk, double duration) {
+            this.fleet = fleet;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.duration = duration;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= chunk) {
+                return fleet.stepRange(from, to, duration);
+            }
+            int middle = (from + to) >>> 1;
+            StepTask left = new StepTask(fleet, from, middle, chunk, duration);
+            StepTask right = new StepTask(fleet, middle, to, chunk, duration);
+            left.fork();
+            int movedRight = right.compute();
+            return left.join() + movedRight;
+        }
+    }
+}
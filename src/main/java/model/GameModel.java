@@ -1,151 +1,839 @@
 package model;
 
+import log.Logger;
+import metrics.Metrics;
+import model.navigation.FleetNavigator;
+import model.navigation.NavigationPath;
+import model.navigation.ObstacleMap;
+import model.navigation.PathPlanner;
+
 import java.awt.*;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Модель для работы робота
  * Считает все движения и координаты робота
  */
 public class GameModel {
-    private volatile double mRobotPositionX = 100;
-    private volatile double mRobotPositionY = 100;
-    private volatile double mRobotDirection = 0;
-
+    /**
+     * Основной робот - флот из одного робота: он шагает тем же пакетным шагом, что и флот,
+     * а в столбце цели хранится текущая точка пути, к которой он рулит.
+     * Конечная цель хранится отдельно в {@link #mTargetPositionX} и {@link #mTargetPositionY}.
+     */
+    private final RobotFleet mRobot = new RobotFleet(1);
 
     private volatile int mTargetPositionX = 150;
     private volatile int mTargetPositionY = 100;
 
-    private static final double maxVelocity = 0.1;
-    private static final double maxAngularVelocity = 0.001;
+    /**
+     * Длительность шага по умолчанию в миллисекундах.
+     */
+    public static final double DEFAULT_DURATION = 10;
+
+    private final RobotFleet mFleet;
+    private volatile FleetTickEngine mFleetEngine = FleetTickEngine.sequential();
+    /**
+     * Аналитические траектории флота и основного робота или null, если роботы шагают по тикам.
+     * Время траекторий - {@link #mTime}.
+     */
+    private volatile TrajectoryEngine mTrajectories;
+    private TrajectoryEngine mRobotTrajectory;
+    /**
+     * Время симуляции в миллисекундах: сумма длительностей тиков. Используется только потоком симуляции.
+     */
+    private double mTime;
+    /**
+     * Размер ячейки пространственного индекса флота - порядка размера робота.
+     */
+    private static final double FLEET_INDEX_CELL_SIZE = 32;
+    private final SpatialGrid mFleetIndex = new SpatialGrid(FLEET_INDEX_CELL_SIZE);
+    private volatile boolean mFleetIndexEnabled = true;
+
+    /**
+     * Размер ячейки карты препятствий в пикселях и размеры карты в ячейках.
+     */
+    private static final double OBSTACLE_CELL_SIZE = 10;
+    private static final int OBSTACLE_MAP_COLUMNS = 256;
+    private static final int OBSTACLE_MAP_ROWS = 256;
+    /**
+     * Расстояние, на котором промежуточная точка пути считается пройденной.
+     */
+    private static final double WAYPOINT_REACH = 5;
+    private final PathPlanner mPlanner = new PathPlanner(
+            new ObstacleMap(OBSTACLE_CELL_SIZE, OBSTACLE_MAP_COLUMNS, OBSTACLE_MAP_ROWS));
+    private final FleetNavigator mNavigator = new FleetNavigator(mPlanner);
+    /**
+     * Путь основного робота к цели в обход препятствий или null, если цель видна напрямую.
+     */
+    private volatile NavigationPath mPath;
+    /**
+     * Версия карты препятствий, по которой строился {@link #mPath}: путь напрямую никто не сбрасывает,
+     * поэтому после изменения карты он проверяется заново.
+     */
+    private volatile long mPathObstacleVersion;
+    /**
+     * Путь, по которому сейчас едет робот, и номер текущей точки. Используются только потоком симуляции.
+     */
+    private NavigationPath mFollowedPath;
+    private int mWaypoint;
 
     private final PropertyChangeSupport support = new PropertyChangeSupport(this);
+    private final CoalescingNotifier mNotifier = new CoalescingNotifier();
+    private final SnapshotPublisher mSnapshots = new SnapshotPublisher();
+    private volatile long mTick;
+    /**
+     * Текущая запись траекторий или null, если запись не ведется.
+     */
+    private volatile TrajectoryRecorder mRecorder;
+
+    /**
+     * Фоновый поток, который пишет контрольные точки на диск, чтобы не задерживать тик.
+     */
+    private static final ExecutorService sCheckpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Емкость очереди внешних команд. Команды применяются пачкой в начале каждого тика,
+     * поэтому очередь заполняется, только если тики остановились или отстают.
+     */
+    public static final int COMMAND_QUEUE_CAPACITY = 4096;
+    private final CommandQueue<ModelCommand> mCommands = new CommandQueue<>(COMMAND_QUEUE_CAPACITY);
+    private final Consumer<ModelCommand> mApplyCommand = this::applyCommand;
+    private final ArrayList<LongConsumer> mTickListeners = new ArrayList<>();
+    private volatile LongConsumer[] mActiveTickListeners = new LongConsumer[0];
+
+    /**
+     * Создает модель с флотом, хранилище которого выбирается системным свойством robots.storage.
+     */
+    public GameModel() {
+        this(RobotFleet.fromSystemProperties(16));
+    }
+
+    /**
+     * Создает модель с заданным флотом, например флотом вне кучи из {@link RobotFleet#offHeap}.
+     *
+     * @param fleet пустой флот, которым модель владеет дальше
+     */
+    public GameModel(RobotFleet fleet) {
+        mFleet = fleet;
+        // для одного робота векторный шаг все равно считается скалярным хвостом
+        mRobot.setVectorized(false);
+        mRobot.addRobot(100, 100, 0, mTargetPositionX, mTargetPositionY);
+    }
 
     public void addNewListener(PropertyChangeListener listener) {
         support.addPropertyChangeListener(listener);
     }
 
+    /**
+     * Регистрирует слушателя объединенных уведомлений об изменении модели.
+     * В отличие от {@link #addNewListener} слушатель получает не больше maxRate уведомлений в секунду,
+     * сколько бы тиков ни прошло между ними.
+     *
+     * @param listener слушатель
+     * @param maxRate  максимальная частота уведомлений в герцах
+     * @param executor исполнитель, в котором вызывается слушатель
+     */
+    public void addUpdateListener(ModelUpdateListener listener, double maxRate, Executor executor) {
+        mNotifier.addListener(listener, maxRate, executor);
+    }
+
+    /**
+     * Регистрирует слушателя тиков. Слушатель вызывается в потоке симуляции в конце каждого тика
+     * с его номером, поэтому не должен блокироваться и должен работать за доли микросекунды,
+     * например только будить свой поток.
+     *
+     * @param listener слушатель
+     */
+    public void addTickListener(LongConsumer listener) {
+        synchronized (mTickListeners) {
+            mTickListeners.add(listener);
+            mActiveTickListeners = mTickListeners.toArray(new LongConsumer[0]);
+        }
+    }
+
+    /**
+     * Отменяет регистрацию слушателя тиков.
+     *
+     * @param listener слушатель
+     */
+    public void removeTickListener(LongConsumer listener) {
+        synchronized (mTickListeners) {
+            mTickListeners.remove(listener);
+            mActiveTickListeners = mTickListeners.toArray(new LongConsumer[0]);
+        }
+    }
+
+    /**
+     * Отменяет регистрацию слушателя объединенных уведомлений.
+     *
+     * @param listener слушатель
+     */
+    public void removeUpdateListener(ModelUpdateListener listener) {
+        mNotifier.removeListener(listener);
+    }
+
+    /**
+     * Возвращает номер версии модели, который увеличивается при каждом изменении.
+     *
+     * @return номер версии
+     */
+    public long getVersion() {
+        return mNotifier.getVersion();
+    }
+
     /**
      * Устанавливает целевую позицию для объекта.
+     * Меняет состояние напрямую, поэтому вызывается из потока симуляции, например из команды,
+     * или до запуска часов; остальные потоки отправляют изменение через {@link #submit}.
      *
      * @param p точка, представляющая новую целевую позицию
      */
     public void setTargetPosition(Point p) {
+        Point oldTarget = new Point(mTargetPositionX, mTargetPositionY);
         mTargetPositionX = p.x;
         mTargetPositionY = p.y;
-        support.firePropertyChange("targetPosition", new Point(mTargetPositionX, mTargetPositionY), p);
+        mPath = planPath(p.x, p.y);
+        if (support.hasListeners("targetPosition")) {
+            firePropertyChange("targetPosition", oldTarget, new Point(p));
+        }
+        mNotifier.publish();
+    }
+
+    /**
+     * Один тик симуляции: шаг основного робота и флота, затем публикация снимка,
+     * если его кто-то запрашивал. Длительность тика пишется в {@link Metrics#TICK}.
+     * Вызывается только из потока симуляции.
+     *
+     * @param duration длительность шага в миллисекундах
+     */
+    public void update(double duration) {
+        long start = System.nanoTime();
+        mCommands.drain(mApplyCommand, mCommands.capacity());
+        TrajectoryEngine trajectories = mTrajectories;
+        if (trajectories == null) {
+            mNavigator.steer(mFleet);
+            updateRobot(duration);
+            updateFleet(duration);
+            mTime += duration;
+            if (mFleetIndexEnabled && (mFleet.size() > 0 || mFleetIndex.size() > 0)) {
+                mFleetIndex.update(mFleet);
+            }
+        } else {
+            advanceTrajectories(trajectories, duration);
+        }
+        mTick++;
+        TrajectoryRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.record(mTick, mRobot.getPositionX(0), mRobot.getPositionY(0), mRobot.getDirection(0),
+                    mTargetPositionX, mTargetPositionY, mFleet);
+        }
+        if (mSnapshots.isRequested()) {
+            publishSnapshot();
+        }
+        for (LongConsumer listener : mActiveTickListeners) {
+            listener.accept(mTick);
+        }
+        Metrics.TICK.recordSince(start);
+    }
+
+    /**
+     * Оповещает слушателей {@link #addNewListener} и записывает время их работы в {@link Metrics#DISPATCH}.
+     */
+    private void firePropertyChange(String property, Object oldValue, Object newValue) {
+        long start = System.nanoTime();
+        support.firePropertyChange(property, oldValue, newValue);
+        Metrics.DISPATCH.recordSince(start);
+    }
+
+    /**
+     * Отправляет внешнюю команду модели. Может вызываться из любого потока и не блокируется:
+     * команда попадает в очередь и применяется потоком симуляции в начале ближайшего тика.
+     *
+     * @param command команда
+     * @return false, если очередь команд заполнена и команда отброшена
+     */
+    public boolean submit(ModelCommand command) {
+        return mCommands.offer(command);
+    }
+
+    private void applyCommand(ModelCommand command) {
+        try {
+            command.apply(this);
+        } catch (RuntimeException e) {
+            Logger.error("Команда модели завершилась с ошибкой: " + e);
+        }
+    }
+
+    /**
+     * Сохраняет контрольную точку мира в файл.
+     * Поток симуляции в начале ближайшего тика только копирует состояние, а запись на диск
+     * идет в фоновом потоке.
+     *
+     * @param path путь к файлу контрольной точки
+     * @return будущее, которое завершится записанной контрольной точкой или ошибкой записи
+     */
+    public CompletableFuture<WorldCheckpoint> checkpoint(Path path) {
+        CompletableFuture<WorldCheckpoint> result = new CompletableFuture<>();
+        boolean accepted = submit(model -> {
+            WorldCheckpoint checkpoint = model.captureCheckpoint();
+            sCheckpointWriter.execute(() -> {
+                try {
+                    checkpoint.write(path);
+                    result.complete(checkpoint);
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+        if (!accepted) {
+            result.completeExceptionally(new IllegalStateException("Очередь команд модели заполнена"));
+        }
+        return result;
+    }
+
+    /**
+     * Копирует полное состояние мира: позы и цели всех роботов, номер тика, карту препятствий
+     * и цели навигации флота. Вызывается только из потока симуляции между тиками.
+     *
+     * @return контрольная точка, независимая от дальнейших изменений модели
+     */
+    public WorldCheckpoint captureCheckpoint() {
+        TrajectoryEngine trajectories = mTrajectories;
+        if (trajectories != null) {
+            writeTrajectories(trajectories);
+        }
+        WorldSnapshot world = new WorldSnapshot();
+        writeWorld(world);
+        BitSet obstacles = new BitSet();
+        mPlanner.copyObstacles(obstacles);
+        ObstacleMap map = mPlanner.getMap();
+        return new WorldCheckpoint(world, obstacles.toLongArray(), map.getColumns(), map.getRows(),
+                mNavigator.copyGoals());
+    }
+
+    /**
+     * Восстанавливает мир из контрольной точки в начале ближайшего тика.
+     * Позы, цели, номер тика, препятствия и навигация флота восстанавливаются точно;
+     * путь основного робота строится заново от восстановленной позы.
+     * Идущая запись траекторий перед восстановлением завершается: ее индекс рассчитан на тики подряд,
+     * а восстановление переводит номер тика назад или вперед.
+     *
+     * @param checkpoint контрольная точка
+     * @return false, если очередь команд заполнена и восстановление не запланировано
+     */
+    public boolean restore(WorldCheckpoint checkpoint) {
+        ObstacleMap map = mPlanner.getMap();
+        if (checkpoint.obstacleColumns != map.getColumns() || checkpoint.obstacleRows != map.getRows()) {
+            throw new IllegalArgumentException("Размеры карты препятствий контрольной точки " +
+                    checkpoint.obstacleColumns + "x" + checkpoint.obstacleRows + " не совпадают с картой модели");
+        }
+        return submit(model -> model.applyCheckpoint(checkpoint));
+    }
+
+    private void applyCheckpoint(WorldCheckpoint checkpoint) {
+        if (mRecorder != null) {
+            try {
+                TrajectoryRecorder recorder = stopRecording();
+                Logger.debug("Запись траекторий завершена перед восстановлением контрольной точки, тиков: "
+                        + recorder.getTickCount());
+            } catch (IOException e) {
+                Logger.error("Не удалось завершить запись траекторий: " + e.getMessage());
+            }
+        }
+        WorldSnapshot world = checkpoint.world;
+        mTick = world.tick;
+        mRobot.setPose(0, world.robotPositionX, world.robotPositionY, world.robotDirection);
+        mRobot.setTarget(0, world.targetPositionX, world.targetPositionY);
+        mTargetPositionX = world.targetPositionX;
+        mTargetPositionY = world.targetPositionY;
+        mFleet.readFrom(world);
+        mPlanner.setObstacles(BitSet.valueOf(checkpoint.obstacles));
+        mNavigator.restoreGoals(mFleet, checkpoint.navigation);
+        mPath = planPath(world.targetPositionX, world.targetPositionY);
+        if (mTrajectories != null) {
+            startTrajectories();
+        }
+        if (mFleetIndexEnabled) {
+            mFleetIndex.update(mFleet);
+        }
+        mNotifier.publish();
+    }
+
+    /**
+     * Начинает записывать траектории всех роботов каждый тик.
+     * Предыдущая запись, если она велась, завершается.
+     *
+     * @param recorder запись, в которую пишутся тики
+     * @throws IOException если предыдущую запись не удалось завершить
+     */
+    public void startRecording(TrajectoryRecorder recorder) throws IOException {
+        TrajectoryRecorder previous = mRecorder;
+        mRecorder = recorder;
+        if (previous != null && previous != recorder) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Завершает запись траекторий.
+     *
+     * @return завершенная запись или null, если запись не велась
+     * @throws IOException если запись прервалась с ошибкой или ее не удалось завершить
+     */
+    public TrajectoryRecorder stopRecording() throws IOException {
+        TrajectoryRecorder recorder = mRecorder;
+        mRecorder = null;
+        if (recorder != null) {
+            recorder.close();
+        }
+        return recorder;
+    }
+
+    /**
+     * @return true, если идет запись траекторий
+     */
+    public boolean isRecording() {
+        return mRecorder != null;
+    }
+
+    /**
+     * Копирует текущее состояние мира в общий буфер снимков.
+     */
+    private void publishSnapshot() {
+        writeWorld(mSnapshots.beginWrite());
+        mSnapshots.endWrite();
+    }
+
+    /**
+     * Копирует состояние мира в снимок.
+     */
+    private void writeWorld(WorldSnapshot snapshot) {
+        snapshot.tick = mTick;
+        snapshot.robotPositionX = mRobot.getPositionX(0);
+        snapshot.robotPositionY = mRobot.getPositionY(0);
+        snapshot.robotDirection = mRobot.getDirection(0);
+        snapshot.targetPositionX = mTargetPositionX;
+        snapshot.targetPositionY = mTargetPositionY;
+        mFleet.writeTo(snapshot);
+    }
+
+    /**
+     * Копирует текущее состояние мира в буфер вызывающего одним копированием флота, без публикации
+     * снимка и без запроса публикации на следующем тике, который делает {@link #readSnapshot}.
+     * Вызывается только из потока симуляции между тиками, например когда тот же поток шагает модель
+     * и забирает кадры. Номер публикации в буфере не меняется.
+     *
+     * @param target буфер вызывающего, который переиспользуется между вызовами
+     * @return тот же буфер
+     */
+    public WorldSnapshot copyWorld(WorldSnapshot target) {
+        TrajectoryEngine trajectories = mTrajectories;
+        if (trajectories != null) {
+            writeTrajectories(trajectories);
+        }
+        writeWorld(target);
+        return target;
+    }
+
+    /**
+     * Копирует последний опубликованный снимок мира в буфер читателя.
+     * В отличие от отдельных геттеров все значения снимка относятся к одному тику.
+     *
+     * @param target буфер читателя, который переиспользуется между вызовами
+     * @return тот же буфер
+     */
+    public WorldSnapshot readSnapshot(WorldSnapshot target) {
+        return mSnapshots.readInto(target);
+    }
+
+    /**
+     * Возвращает номер последнего тика симуляции.
+     *
+     * @return номер тика
+     */
+    public long getTick() {
+        return mTick;
     }
 
     /**
      * Считаем следующие координаты и изменяют позицию робота
+     * за шаг стандартной длительности.
      */
     public void updateRobot() {
-        double distance = distance(mTargetPositionX, mTargetPositionY,
-                mRobotPositionX, mRobotPositionY);
-        if (distance < 0.5) {
+        updateRobot(DEFAULT_DURATION);
+    }
+
+    /**
+     * Строит путь основного робота к цели, если между ними есть препятствия.
+     *
+     * @return путь или null, если ехать можно напрямую
+     */
+    private NavigationPath planPath(int targetX, int targetY) {
+        mPathObstacleVersion = mPlanner.getObstacleVersion();
+        if (!mPlanner.hasObstacles()) {
+            return null;
+        }
+        NavigationPath path = mPlanner.findPath(mRobot.getPositionX(0), mRobot.getPositionY(0), targetX, targetY);
+        return path == null || path.size() <= 1 ? null : path;
+    }
+
+    /**
+     * Считаем следующие координаты и изменяют позицию робота: шаг флота из одного основного робота,
+     * который рулит к текущей точке пути или прямо к цели.
+     *
+     * @param duration длительность шага в миллисекундах
+     */
+    public void updateRobot(double duration) {
+        if (!steerRobot()) {
             return;
         }
-        double velocity = maxVelocity;
-        double angleToTarget = angleTo(mRobotPositionX, mRobotPositionY, mTargetPositionX, mTargetPositionY);
-        double angleDifference = asNormalizedRadians(angleToTarget - mRobotDirection);
-        double angularVelocity = (angleDifference < Math.PI) ? maxAngularVelocity : -maxAngularVelocity;
-        velocity = applyLimits(velocity, 0, maxVelocity);
-        angularVelocity = applyLimits(angularVelocity, -maxAngularVelocity, maxAngularVelocity);
-        int duration = 10;
-        double newX = mRobotPositionX + velocity / angularVelocity *
-                (Math.sin(mRobotDirection + angularVelocity * duration) - Math.sin(mRobotDirection));
+        if (support.hasListeners("robotState")) {
+            RobotState oldState = new RobotState(mRobot.getPositionX(0), mRobot.getPositionY(0),
+                    mRobot.getDirection(0));
+            mRobot.step(duration);
+            RobotState newState = new RobotState(mRobot.getPositionX(0), mRobot.getPositionY(0),
+                    mRobot.getDirection(0));
+            firePropertyChange("robotState", oldState, newState);
+        } else {
+            mRobot.step(duration);
+        }
+        mNotifier.publish();
+    }
+
+    /**
+     * Направляет основного робота к текущей точке пути или прямо к цели, записывая ее в столбец цели.
+     *
+     * @return false, если робот уже у цели
+     */
+    private boolean steerRobot() {
+        if (RobotKinematics.distance(mTargetPositionX, mTargetPositionY, mRobot.getPositionX(0),
+                mRobot.getPositionY(0)) < RobotKinematics.ARRIVAL_DISTANCE) {
+            return false;
+        }
+        NavigationPath path = currentPath();
+        if (path != null) {
+            // точки пути - центры ячеек карты, их координаты целые
+            mRobot.setTarget(0, (int) path.getX(mWaypoint), (int) path.getY(mWaypoint));
+        } else {
+            mRobot.setTarget(0, mTargetPositionX, mTargetPositionY);
+        }
+        return true;
+    }
 
-        if (!Double.isFinite(newX)) {
-            newX = mRobotPositionX + velocity * duration * Math.cos(mRobotDirection);
+    /**
+     * Тик в режиме аналитических траекторий. Основной робот рулит к точке пути в начале тика, как
+     * в пошаговой модели, и его поза вычисляется на конец тика. Флот обрабатывает только прибытия;
+     * позы флота переписываются в столбцы, только когда их кто-то прочитает: для снимка или записи.
+     *
+     * @param trajectories траектории флота
+     * @param duration     длительность тика в миллисекундах
+     */
+    private void advanceTrajectories(TrajectoryEngine trajectories, double duration) {
+        TrajectoryEngine robot = mRobotTrajectory;
+        if (steerRobot() && (robot.getTargetX(0) != mRobot.getTargetX(0)
+                || robot.getTargetY(0) != mRobot.getTargetY(0))) {
+            robot.setTarget(0, mRobot.getTargetX(0), mRobot.getTargetY(0), mTime);
         }
+        addNewRobots(trajectories);
+        mTime += duration;
 
-        double newY = mRobotPositionY - velocity / angularVelocity *
-                (Math.cos(mRobotDirection + angularVelocity * duration) - Math.cos(mRobotDirection));
+        double oldX = mRobot.getPositionX(0);
+        double oldY = mRobot.getPositionY(0);
+        double oldDirection = mRobot.getDirection(0);
+        mRobot.setPose(0, robot.getPositionX(0, mTime), robot.getPositionY(0, mTime), robot.getDirection(0, mTime));
+        if (oldX != mRobot.getPositionX(0) || oldY != mRobot.getPositionY(0)
+                || oldDirection != mRobot.getDirection(0)) {
+            if (support.hasListeners("robotState")) {
+                firePropertyChange("robotState", new RobotState(oldX, oldY, oldDirection),
+                        new RobotState(mRobot.getPositionX(0), mRobot.getPositionY(0), mRobot.getDirection(0)));
+            }
+            mNotifier.publish();
+        }
 
-        if (!Double.isFinite(newY)) {
-            newY = mRobotPositionY + velocity * duration * Math.sin(mRobotDirection);
+        int arrivals = trajectories.advanceTo(mTime, null);
+        boolean moved = arrivals > 0 || trajectories.movingCount() > 0;
+        if (moved) {
+            mNotifier.publish();
+        }
+        if (mSnapshots.isRequested() || mRecorder != null) {
+            writeTrajectories(trajectories);
+            if (mFleetIndexEnabled && (mFleet.size() > 0 || mFleetIndex.size() > 0)) {
+                mFleetIndex.update(mFleet);
+            }
+            if (moved && support.hasListeners("fleetState")) {
+                firePropertyChange("fleetState", null, mFleet);
+            }
         }
-        double newDirection = asNormalizedRadians(mRobotDirection + angularVelocity * duration);
-        RobotState oldState = new RobotState(mRobotPositionX, mRobotPositionY, mRobotDirection);
-        RobotState newState = new RobotState(newX, newY, newDirection);
-        mRobotPositionX = newX;
-        mRobotPositionY = newY;
-        mRobotDirection = newDirection;
-        support.firePropertyChange("robotState", oldState, newState);
     }
 
     /**
-     * Приводит угол к диапазону от 0 до 2π радиан.
-     * @param angle угол для нормализации
-     * @return нормализованный угол
+     * Планирует траектории роботов, добавленных во флот напрямую после последнего тика.
+     * Если флот очищали, траектории строятся заново по его столбцам.
      */
-    private static double asNormalizedRadians(double angle) {
-        while (angle < 0) {
-            angle += 2 * Math.PI;
+    private void addNewRobots(TrajectoryEngine trajectories) {
+        if (mFleet.size() < trajectories.size()) {
+            trajectories = buildTrajectories();
+            mTrajectories = trajectories;
+        }
+        for (int id = trajectories.size(); id < mFleet.size(); id++) {
+            trajectories.addRobot(mFleet.getPositionX(id), mFleet.getPositionY(id), mFleet.getDirection(id),
+                    mFleet.getTargetX(id), mFleet.getTargetY(id), mTime);
         }
-        while (angle >= 2 * Math.PI) {
-            angle -= 2 * Math.PI;
+    }
+
+    /**
+     * Строит траектории всех роботов флота от их текущих поз к целям из столбцов флота.
+     */
+    private TrajectoryEngine buildTrajectories() {
+        TrajectoryEngine trajectories = new TrajectoryEngine(Math.max(mFleet.size(), 16));
+        for (int id = 0; id < mFleet.size(); id++) {
+            trajectories.addRobot(mFleet.getPositionX(id), mFleet.getPositionY(id), mFleet.getDirection(id),
+                    mFleet.getTargetX(id), mFleet.getTargetY(id), mTime);
         }
-        return angle;
+        return trajectories;
     }
 
     /**
-     * Применяет ограничения к значению в заданном диапазоне.
-     * @param value значение, которое нужно ограничить
-     * @param min минимальное допустимое значение
-     * @param max максимальное допустимое значение
-     * @return ограниченное значение
+     * Переписывает в столбцы флота позы, вычисленные по траекториям на текущий момент.
      */
-    private static double applyLimits(double value, double min, double max) {
-        if (value < min)
-            return min;
-        if (value > max)
-            return max;
-        return value;
+    private void writeTrajectories(TrajectoryEngine trajectories) {
+        int size = Math.min(mFleet.size(), trajectories.size());
+        double time = mTime;
+        for (int id = 0; id < size; id++) {
+            mFleet.setPose(id, trajectories.getPositionX(id, time), trajectories.getPositionY(id, time),
+                    trajectories.getDirection(id, time));
+        }
     }
 
     /**
-     * Вычисляет расстояние между двумя точками.
+     * Переключает флот и основного робота между пошаговой моделью и аналитическими траекториями
+     * {@link TrajectoryEngine}: в аналитическом режиме движение между сменами цели решается в замкнутой форме,
+     * и тик стоит пропорционально числу событий, а не роботов. Позы флота тогда вычисляются
+     * только для снимков, записи траекторий и контрольных точек, и пространственный индекс обновляется
+     * вместе с ними. Основной робот объезжает препятствия, как и в пошаговой модели, а роботы флота
+     * в аналитическом режиме едут к целям напрямую.
+     * Меняет состояние напрямую, поэтому вызывается из потока симуляции, например из команды,
+     * или до запуска часов; остальные потоки переключают режим через {@link #submit}.
      *
-     * @param x1 координата X первой точки
-     * @param y1 координата Y первой точки
-     * @param x2 координата X второй точки
-     * @param y2 координата Y второй точки
-     * @return расстояние между точками
+     * @param analytic true - аналитические траектории, false - шаг по тикам
+     */
+    public void setAnalytic(boolean analytic) {
+        TrajectoryEngine trajectories = mTrajectories;
+        if (analytic == (trajectories != null)) {
+            return;
+        }
+        if (analytic) {
+            startTrajectories();
+        } else {
+            writeTrajectories(trajectories);
+            mTrajectories = null;
+            mRobotTrajectory = null;
+        }
+    }
+
+    /**
+     * Строит траектории основного робота и флота от их текущих поз.
      */
-    private static double distance(double x1, double y1, double x2, double y2) {
-        double diffX = x1 - x2;
-        double diffY = y1 - y2;
-        return Math.sqrt(diffX * diffX + diffY * diffY);
+    private void startTrajectories() {
+        TrajectoryEngine robot = new TrajectoryEngine(1);
+        robot.addRobot(mRobot.getPositionX(0), mRobot.getPositionY(0), mRobot.getDirection(0),
+                mRobot.getTargetX(0), mRobot.getTargetY(0), mTime);
+        mRobotTrajectory = robot;
+        mTrajectories = buildTrajectories();
     }
 
     /**
-     * Вычисляет угол между двумя точками.
+     * @return true, если роботы движутся по аналитическим траекториям
+     */
+    public boolean isAnalytic() {
+        return mTrajectories != null;
+    }
+
+    /**
+     * Возвращает путь, по которому едет основной робот, продвигая номер текущей точки:
+     * точка пропускается, если робот до нее доехал или уже видит следующую.
+     * Если путь перекрыло новое препятствие или карта изменилась, пока робот ехал напрямую,
+     * путь строится заново.
+     *
+     * @return путь или null, если робот едет к цели напрямую
+     */
+    private NavigationPath currentPath() {
+        NavigationPath path = mPath;
+        if (path != null ? !path.isValid() : mPlanner.getObstacleVersion() != mPathObstacleVersion) {
+            path = planPath(mTargetPositionX, mTargetPositionY);
+            mPath = path;
+        }
+        if (path != mFollowedPath) {
+            mFollowedPath = path;
+            mWaypoint = 0;
+        }
+        if (path == null) {
+            return null;
+        }
+        while (mWaypoint < path.size() - 1
+                && (RobotKinematics.distance(path.getX(mWaypoint), path.getY(mWaypoint),
+                        mRobot.getPositionX(0), mRobot.getPositionY(0)) < WAYPOINT_REACH
+                    || mPlanner.lineOfSight(mRobot.getPositionX(0), mRobot.getPositionY(0),
+                        path.getX(mWaypoint + 1), path.getY(mWaypoint + 1)))) {
+            mWaypoint++;
+        }
+        return path;
+    }
+
+    /**
+     * Делает шаг симуляции для всего флота одним проходом по столбцам.
+     */
+    public void updateFleet() {
+        updateFleet(DEFAULT_DURATION);
+    }
+
+    /**
+     * Делает шаг симуляции для всего флота одним проходом по столбцам.
+     *
+     * @param duration длительность шага в миллисекундах
+     */
+    public void updateFleet(double duration) {
+        if (mFleet.size() == 0) {
+            return;
+        }
+        if (mFleetEngine.step(mFleet, duration) > 0) {
+            if (support.hasListeners("fleetState")) {
+                firePropertyChange("fleetState", null, mFleet);
+            }
+            mNotifier.publish();
+        }
+    }
+
+    /**
+     * Устанавливает движок, которым считается шаг флота.
+     * Предыдущий движок закрывается сразу, поэтому метод вызывается из потока симуляции, например из команды,
+     * или до запуска часов: иначе тик, который еще шагает флот старым движком, получит отказ его пула.
+     * Остальные потоки меняют движок через {@link #submit}.
      *
-     * @param fromX координата X начальной точки
-     * @param fromY координата Y начальной точки
-     * @param toX   координата X конечной точки
-     * @param toY   координата Y конечной точки
-     * @return угол между точками в радианах
+     * @param engine новый движок шага флота
      */
-    private static double angleTo(double fromX, double fromY, double toX, double toY) {
-        double diffX = toX - fromX;
-        double diffY = toY - fromY;
+    public void setFleetEngine(FleetTickEngine engine) {
+        FleetTickEngine previous = mFleetEngine;
+        mFleetEngine = engine;
+        if (previous != engine) {
+            previous.close();
+        }
+    }
 
-        return asNormalizedRadians(Math.atan2(diffY, diffX));
+    /**
+     * Отправляет робота флота к цели, в обход препятствий, если они мешают.
+     * Меняет состояние напрямую, поэтому вызывается из потока симуляции, например из команды,
+     * или до запуска часов; остальные потоки отправляют изменение через {@link #submit}.
+     *
+     * @param id идентификатор робота во флоте
+     * @param x  координата X цели
+     * @param y  координата Y цели
+     */
+    public void setFleetTarget(int id, int x, int y) {
+        TrajectoryEngine trajectories = mTrajectories;
+        if (trajectories != null) {
+            addNewRobots(trajectories);
+            mNavigator.cancelGoal(id);
+            mFleet.setTarget(id, x, y);
+            mTrajectories.setTarget(id, x, y, mTime);
+        } else {
+            mNavigator.setGoal(mFleet, id, x, y);
+        }
+        mNotifier.publish();
     }
 
+    /**
+     * Переключает препятствие в ячейке карты, в которую попадает точка.
+     * Пути и поля потока, на которые это влияет, будут перестроены при следующем обращении.
+     * Меняет состояние напрямую, поэтому вызывается из потока симуляции, например из команды,
+     * или до запуска часов; остальные потоки отправляют изменение через {@link #submit}.
+     *
+     * @param x координата X точки
+     * @param y координата Y точки
+     */
+    public void toggleObstacle(double x, double y) {
+        mPlanner.toggleObstacle(x, y);
+        mNotifier.publish();
+    }
+
+    /**
+     * Выбирает ядро тригонометрии для основного робота и флота.
+     *
+     * @param math строгое или быстрое ядро
+     */
+    public void setMathKernel(MathKernel math) {
+        mRobot.setMathKernel(math);
+        mFleet.setMathKernel(math);
+    }
+
+    /**
+     * Возвращает планировщик путей с картой препятствий.
+     *
+     * @return планировщик путей
+     */
+    public PathPlanner getPathPlanner() {
+        return mPlanner;
+    }
+
+    /**
+     * Возвращает пространственный индекс флота, который обновляется каждый тик.
+     * Через него выполняются попадания курсором, выделение рамкой и поиск ближайшего робота.
+     *
+     * @return индекс флота
+     */
+    public SpatialGrid getFleetIndex() {
+        return mFleetIndex;
+    }
+
+    /**
+     * Включает или выключает обновление пространственного индекса флота каждый тик.
+     * Индекс хранит в куче копию позиций, поэтому для миров из десятков миллионов роботов
+     * без интерфейса его стоит выключить; запросы к выключенному индексу видят последнее обновление.
+     *
+     * @param enabled true - индекс обновляется каждый тик
+     */
+    public void setFleetIndexEnabled(boolean enabled) {
+        mFleetIndexEnabled = enabled;
+    }
+
+    /**
+     * Возвращает флот роботов, который симулируется вместе с основным роботом.
+     *
+     * @return флот роботов
+     */
+    public RobotFleet getFleet() {
+        return mFleet;
+    }
+
+    /**
+     * Поза основного робота читается без синхронизации с потоком симуляции;
+     * согласованные значения одного тика дает {@link #readSnapshot}.
+     */
     public double getRobotPositionX() {
-        return mRobotPositionX;
+        return mRobot.getPositionX(0);
     }
 
     public double getRobotPositionY() {
-        return mRobotPositionY;
+        return mRobot.getPositionY(0);
     }
 
     public double getRobotDirection() {
-        return mRobotDirection;
+        return mRobot.getDirection(0);
     }
 
     public int getTargetPositionX() {
@@ -155,4 +843,4 @@ public class GameModel {
     public int getTargetPositionY() {
         return mTargetPositionY;
     }
-}
\ No newline at end of file
+}
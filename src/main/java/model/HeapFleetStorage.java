@@ -0,0 +1,102 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Хранилище столбцов флота в примитивных массивах кучи.
+ * Массивы открыты пакету, чтобы {@link VectorFleetKernel} загружал их векторами напрямую.
+ */
+final class HeapFleetStorage implements FleetStorage {
+    double[] positionX;
+    double[] positionY;
+    double[] direction;
+    int[] targetX;
+    int[] targetY;
+
+    HeapFleetStorage(int capacity) {
+        positionX = new double[capacity];
+        positionY = new double[capacity];
+        direction = new double[capacity];
+        targetX = new int[capacity];
+        targetY = new int[capacity];
+    }
+
+    @Override
+    public int capacity() {
+        return positionX.length;
+    }
+
+    @Override
+    public void grow(int capacity, int size) {
+        positionX = Arrays.copyOf(positionX, capacity);
+        positionY = Arrays.copyOf(positionY, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        targetY = Arrays.copyOf(targetY, capacity);
+    }
+
+    @Override
+    public double positionX(int id) {
+        return positionX[id];
+    }
+
+    @Override
+    public double positionY(int id) {
+        return positionY[id];
+    }
+
+    @Override
+    public double direction(int id) {
+        return direction[id];
+    }
+
+    @Override
+    public int targetX(int id) {
+        return targetX[id];
+    }
+
+    @Override
+    public int targetY(int id) {
+        return targetY[id];
+    }
+
+    @Override
+    public void setPose(int id, double x, double y, double direction) {
+        positionX[id] = x;
+        positionY[id] = y;
+        this.direction[id] = direction;
+    }
+
+    @Override
+    public void setTarget(int id, int x, int y) {
+        targetX[id] = x;
+        targetY[id] = y;
+    }
+
+    @Override
+    public void copyTo(WorldSnapshot snapshot, int size) {
+        System.arraycopy(positionX, 0, snapshot.fleetPositionX, 0, size);
+        System.arraycopy(positionY, 0, snapshot.fleetPositionY, 0, size);
+        System.arraycopy(direction, 0, snapshot.fleetDirection, 0, size);
+        System.arraycopy(targetX, 0, snapshot.fleetTargetX, 0, size);
+        System.arraycopy(targetY, 0, snapshot.fleetTargetY, 0, size);
+    }
+
+    @Override
+    public void copyFrom(WorldSnapshot snapshot, int size) {
+        System.arraycopy(snapshot.fleetPositionX, 0, positionX, 0, size);
+        System.arraycopy(snapshot.fleetPositionY, 0, positionY, 0, size);
+        System.arraycopy(snapshot.fleetDirection, 0, direction, 0, size);
+        System.arraycopy(snapshot.fleetTargetX, 0, targetX, 0, size);
+        System.arraycopy(snapshot.fleetTargetY, 0, targetY, 0, size);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
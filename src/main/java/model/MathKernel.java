@@ -0,0 +1,43 @@
+package model;
+
+/**
+ * Ядро тригонометрии для рулевого управления роботов.
+ * Строгий режим повторяет прежнее поведение через {@link Math}, быстрый режим
+ * использует таблицы и полиномы с документированной максимальной ошибкой.
+ * Режим выбирается для развертывания системным свойством robots.math=strict|fast.
+ */
+public interface MathKernel {
+    /**
+     * Строгое ядро: {@link Math} и нормализация угла циклами, как раньше.
+     */
+    MathKernel STRICT = new StrictMathKernel();
+    /**
+     * Быстрое ядро: см. {@link FastMathKernel} с оценками ошибок.
+     */
+    MathKernel FAST = new FastMathKernel();
+
+    double sin(double angle);
+
+    double cos(double angle);
+
+    double atan2(double y, double x);
+
+    double sqrt(double value);
+
+    /**
+     * Приводит угол к диапазону от 0 до 2π радиан.
+     *
+     * @param angle угол для нормализации
+     * @return нормализованный угол
+     */
+    double normalizeRadians(double angle);
+
+    /**
+     * Выбирает ядро по системному свойству robots.math.
+     *
+     * @return быстрое ядро для значения fast, иначе строгое
+     */
+    static MathKernel fromSystemProperties() {
+        return "fast".equalsIgnoreCase(System.getProperty("robots.math", "strict")) ? FAST : STRICT;
+    }
+}
@@ -0,0 +1,15 @@
+package model;
+
+/**
+ * Внешнее воздействие на модель: щелчок мыши, команда сценария или команда управления.
+ * Команды отправляются через {@link GameModel#submit} из любого потока и применяются
+ * потоком симуляции в начале тика, поэтому весь тик видит согласованное состояние.
+ */
+public interface ModelCommand {
+    /**
+     * Применяет команду. Вызывается только из потока симуляции.
+     *
+     * @param model модель
+     */
+    void apply(GameModel model);
+}
@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Слушатель объединенных уведомлений об изменении модели.
+ */
+public interface ModelUpdateListener {
+    /**
+     * Вызывается не чаще, чем разрешено при регистрации слушателя.
+     * Все изменения модели до указанной версии уже видны.
+     *
+     * @param version версия модели на момент доставки уведомления
+     */
+    void onModelUpdated(long version);
+}
@@ -0,0 +1,145 @@
+package model;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Хранилище столбцов флота вне кучи: каждый столбец - сегмент памяти общей арены,
+ * доступ к элементам идет через {@link VarHandle} раскладки элемента.
+ * <p>
+ * Куча содержит только несколько объектов хранилища, сколько бы роботов ни было во флоте,
+ * поэтому ее размер и паузы сборщика мусора не растут вместе с флотом. Арена общая, так как
+ * шаг флота читает и пишет столбцы из потоков {@link FleetTickEngine}. Рост выделяет столбцы
+ * в новой арене, копирует роботов и сразу закрывает старую арену, не дожидаясь сборщика.
+ * <p>
+ * API внешней памяти в Java 21 - preview, поэтому класс компилируется с --enable-preview
+ * и загружается, только если JVM запущена с тем же флагом; проверка - {@link RobotFleet#isOffHeapSupported()}.
+ * Остальные классы проекта от preview не зависят.
+ */
+final class OffHeapFleetStorage implements FleetStorage {
+    private static final VarHandle DOUBLE = ValueLayout.JAVA_DOUBLE.arrayElementVarHandle();
+    private static final VarHandle INT = ValueLayout.JAVA_INT.arrayElementVarHandle();
+
+    private Arena mArena;
+    private MemorySegment mPositionX;
+    private MemorySegment mPositionY;
+    private MemorySegment mDirection;
+    private MemorySegment mTargetX;
+    private MemorySegment mTargetY;
+    private int mCapacity;
+
+    private OffHeapFleetStorage(int capacity) {
+        allocateColumns(capacity);
+    }
+
+    /**
+     * Создает хранилище. Возвращает интерфейс, чтобы вызывающий код не ссылался на этот класс
+     * в сигнатурах и мог загружаться без --enable-preview.
+     *
+     * @param capacity начальная вместимость
+     * @return хранилище вне кучи
+     */
+    static FleetStorage allocate(int capacity) {
+        return new OffHeapFleetStorage(capacity);
+    }
+
+    private void allocateColumns(int capacity) {
+        mArena = Arena.ofShared();
+        mPositionX = mArena.allocate(capacity * (long) Double.BYTES, Double.BYTES);
+        mPositionY = mArena.allocate(capacity * (long) Double.BYTES, Double.BYTES);
+        mDirection = mArena.allocate(capacity * (long) Double.BYTES, Double.BYTES);
+        mTargetX = mArena.allocate(capacity * (long) Integer.BYTES, Integer.BYTES);
+        mTargetY = mArena.allocate(capacity * (long) Integer.BYTES, Integer.BYTES);
+        mCapacity = capacity;
+    }
+
+    @Override
+    public int capacity() {
+        return mCapacity;
+    }
+
+    @Override
+    public void grow(int capacity, int size) {
+        Arena previous = mArena;
+        MemorySegment positionX = mPositionX;
+        MemorySegment positionY = mPositionY;
+        MemorySegment direction = mDirection;
+        MemorySegment targetX = mTargetX;
+        MemorySegment targetY = mTargetY;
+        allocateColumns(capacity);
+        MemorySegment.copy(positionX, 0, mPositionX, 0, size * (long) Double.BYTES);
+        MemorySegment.copy(positionY, 0, mPositionY, 0, size * (long) Double.BYTES);
+        MemorySegment.copy(direction, 0, mDirection, 0, size * (long) Double.BYTES);
+        MemorySegment.copy(targetX, 0, mTargetX, 0, size * (long) Integer.BYTES);
+        MemorySegment.copy(targetY, 0, mTargetY, 0, size * (long) Integer.BYTES);
+        previous.close();
+    }
+
+    @Override
+    public double positionX(int id) {
+        return (double) DOUBLE.get(mPositionX, (long) id);
+    }
+
+    @Override
+    public double positionY(int id) {
+        return (double) DOUBLE.get(mPositionY, (long) id);
+    }
+
+    @Override
+    public double direction(int id) {
+        return (double) DOUBLE.get(mDirection, (long) id);
+    }
+
+    @Override
+    public int targetX(int id) {
+        return (int) INT.get(mTargetX, (long) id);
+    }
+
+    @Override
+    public int targetY(int id) {
+        return (int) INT.get(mTargetY, (long) id);
+    }
+
+    @Override
+    public void setPose(int id, double x, double y, double direction) {
+        DOUBLE.set(mPositionX, (long) id, x);
+        DOUBLE.set(mPositionY, (long) id, y);
+        DOUBLE.set(mDirection, (long) id, direction);
+    }
+
+    @Override
+    public void setTarget(int id, int x, int y) {
+        INT.set(mTargetX, (long) id, x);
+        INT.set(mTargetY, (long) id, y);
+    }
+
+    @Override
+    public void copyTo(WorldSnapshot snapshot, int size) {
+        MemorySegment.copy(mPositionX, ValueLayout.JAVA_DOUBLE, 0, snapshot.fleetPositionX, 0, size);
+        MemorySegment.copy(mPositionY, ValueLayout.JAVA_DOUBLE, 0, snapshot.fleetPositionY, 0, size);
+        MemorySegment.copy(mDirection, ValueLayout.JAVA_DOUBLE, 0, snapshot.fleetDirection, 0, size);
+        MemorySegment.copy(mTargetX, ValueLayout.JAVA_INT, 0, snapshot.fleetTargetX, 0, size);
+        MemorySegment.copy(mTargetY, ValueLayout.JAVA_INT, 0, snapshot.fleetTargetY, 0, size);
+    }
+
+    @Override
+    public void copyFrom(WorldSnapshot snapshot, int size) {
+        MemorySegment.copy(snapshot.fleetPositionX, 0, mPositionX, ValueLayout.JAVA_DOUBLE, 0, size);
+        MemorySegment.copy(snapshot.fleetPositionY, 0, mPositionY, ValueLayout.JAVA_DOUBLE, 0, size);
+        MemorySegment.copy(snapshot.fleetDirection, 0, mDirection, ValueLayout.JAVA_DOUBLE, 0, size);
+        MemorySegment.copy(snapshot.fleetTargetX, 0, mTargetX, ValueLayout.JAVA_INT, 0, size);
+        MemorySegment.copy(snapshot.fleetTargetY, 0, mTargetY, ValueLayout.JAVA_INT, 0, size);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        mArena.close();
+    }
+}
@@ -0,0 +1,333 @@
+package model;
+
+/**
+ * Флот роботов, хранящийся по столбцам (structure of arrays).
+ * Позиции, направления и цели лежат в примитивных столбцах, поэтому шаг
+ * симуляции проходит по всем роботам за один проход без создания объектов.
+ * Идентификатор робота - его индекс в столбцах.
+ * <p>
+ * Столбцы лежат в массивах кучи или, для очень больших миров, вне кучи, см. {@link #offHeap}.
+ * Флот вне кучи нужно закрыть, чтобы освободить память.
+ */
+public class RobotFleet implements AutoCloseable {
+    private final FleetStorage mStorage;
+    private int mSize;
+    private MathKernel mMath = MathKernel.fromSystemProperties();
+    private boolean mVectorized = isVectorSupported() && !"false".equals(System.getProperty("robots.vector"));
+
+    /**
+     * Создает пустой флот.
+     *
+     * @param initialCapacity начальная вместимость столбцов
+     */
+    public RobotFleet(int initialCapacity) {
+        this(new HeapFleetStorage(Math.max(initialCapacity, 1)));
+    }
+
+    private RobotFleet(FleetStorage storage) {
+        mStorage = storage;
+    }
+
+    /**
+     * Создает пустой флот, столбцы которого лежат вне кучи: размер кучи и паузы сборщика мусора
+     * не зависят от количества роботов. Шаг флота вне кучи всегда скалярный.
+     *
+     * @param initialCapacity начальная вместимость столбцов; для десятков миллионов роботов
+     *                        лучше сразу указать ожидаемый размер, чтобы не копировать столбцы при росте
+     * @return флот вне кучи
+     * @throws UnsupportedOperationException если JVM запущена без --enable-preview
+     */
+    public static RobotFleet offHeap(int initialCapacity) {
+        if (!isOffHeapSupported()) {
+            throw new UnsupportedOperationException(
+                    "Хранение флота вне кучи недоступно: запустите JVM с --enable-preview");
+        }
+        return new RobotFleet(OffHeapFleetStorage.allocate(Math.max(initialCapacity, 1)));
+    }
+
+    /**
+     * Создает пустой флот по системному свойству robots.storage=heap|offheap.
+     *
+     * @param initialCapacity начальная вместимость столбцов
+     * @return флот вне кучи для значения offheap, иначе флот в куче
+     */
+    public static RobotFleet fromSystemProperties(int initialCapacity) {
+        return "offheap".equalsIgnoreCase(System.getProperty("robots.storage", "heap"))
+                ? offHeap(initialCapacity) : new RobotFleet(initialCapacity);
+    }
+
+    /**
+     * Проверяет, что флот можно хранить вне кучи: API внешней памяти в Java 21 - preview,
+     * поэтому JVM должна быть запущена с --enable-preview.
+     *
+     * @return true, если {@link #offHeap} доступен
+     */
+    public static boolean isOffHeapSupported() {
+        return OffHeapSupport.AVAILABLE;
+    }
+
+    /**
+     * @return true, если столбцы флота лежат вне кучи
+     */
+    public boolean isOffHeap() {
+        return mStorage.isOffHeap();
+    }
+
+    /**
+     * Добавляет робота во флот.
+     *
+     * @param x         координата X робота
+     * @param y         координата Y робота
+     * @param direction направление робота в радианах
+     * @param targetX   координата X цели
+     * @param targetY   координата Y цели
+     * @return идентификатор нового робота
+     */
+    public int addRobot(double x, double y, double direction, int targetX, int targetY) {
+        if (mSize == mStorage.capacity()) {
+            mStorage.grow(mSize * 2, mSize);
+        }
+        int id = mSize;
+        mStorage.setPose(id, x, y, direction);
+        mStorage.setTarget(id, targetX, targetY);
+        mSize++;
+        return id;
+    }
+
+    /**
+     * Удаляет всех роботов, сохраняя выделенные столбцы.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Устанавливает цель для робота.
+     *
+     * @param id идентификатор робота
+     * @param x  координата X цели
+     * @param y  координата Y цели
+     */
+    public void setTarget(int id, int x, int y) {
+        checkId(id);
+        mStorage.setTarget(id, x, y);
+    }
+
+    /**
+     * Переставляет робота в новую позу, например при восстановлении контрольной точки.
+     *
+     * @param id        идентификатор робота
+     * @param x         координата X робота
+     * @param y         координата Y робота
+     * @param direction направление робота в радианах
+     */
+    void setPose(int id, double x, double y, double direction) {
+        checkId(id);
+        mStorage.setPose(id, x, y, direction);
+    }
+
+    /**
+     * Выбирает ядро тригонометрии для шага флота.
+     *
+     * @param math строгое или быстрое ядро
+     */
+    public void setMathKernel(MathKernel math) {
+        mMath = math;
+    }
+
+    public MathKernel getMathKernel() {
+        return mMath;
+    }
+
+    /**
+     * Проверяет, что векторный шаг флота доступен: модуль jdk.incubator.vector подключен
+     * (java --add-modules jdk.incubator.vector) и процессор считает хотя бы два double за инструкцию.
+     *
+     * @return true, если векторный шаг можно включить
+     */
+    public static boolean isVectorSupported() {
+        return VectorSupport.AVAILABLE;
+    }
+
+    /**
+     * Включает или выключает векторный шаг флота, см. {@link VectorFleetKernel}.
+     * По умолчанию он включен, если доступен и системное свойство robots.vector не равно false.
+     * Флот вне кучи векторный шаг не использует.
+     *
+     * @param vectorized true - векторный шаг, false - скалярный с текущим ядром тригонометрии
+     * @throws UnsupportedOperationException если векторный шаг недоступен
+     */
+    public void setVectorized(boolean vectorized) {
+        if (vectorized && !isVectorSupported()) {
+            throw new UnsupportedOperationException(
+                    "Векторный шаг недоступен: запустите JVM с --add-modules jdk.incubator.vector");
+        }
+        mVectorized = vectorized;
+    }
+
+    public boolean isVectorized() {
+        return mVectorized;
+    }
+
+    /**
+     * Делает шаг симуляции для всех роботов флота.
+     *
+     * @param duration длительность шага
+     * @return количество роботов, которые сдвинулись
+     */
+    public int step(double duration) {
+        return stepRange(0, mSize, duration);
+    }
+
+    /**
+     * Делает шаг симуляции для роботов с идентификаторами из [from, to).
+     * Роботы не зависят друг от друга, поэтому непересекающиеся диапазоны можно считать параллельно.
+     *
+     * @param from     первый идентификатор диапазона
+     * @param to       идентификатор после последнего в диапазоне
+     * @param duration длительность шага
+     * @return количество роботов, которые сдвинулись
+     */
+    public int stepRange(int from, int to, double duration) {
+        if (mVectorized && mStorage instanceof HeapFleetStorage heap && VectorFleetKernel.accepts(duration)) {
+            return VectorFleetKernel.stepRange(this, heap.positionX, heap.positionY, heap.direction,
+                    heap.targetX, heap.targetY, from, to, duration);
+        }
+        return stepScalar(from, to, duration);
+    }
+
+    /**
+     * Делает шаг для роботов из [from, to) по одному роботу с текущим ядром тригонометрии.
+     *
+     * @param from     первый идентификатор диапазона
+     * @param to       идентификатор после последнего в диапазоне
+     * @param duration длительность шага
+     * @return количество роботов, которые сдвинулись
+     */
+    int stepScalar(int from, int to, double duration) {
+        FleetStorage storage = mStorage;
+        MathKernel math = mMath;
+        double velocity = RobotKinematics.MAX_VELOCITY;
+        int moved = 0;
+        for (int i = from; i < to; i++) {
+            double x = storage.positionX(i);
+            double y = storage.positionY(i);
+            int tx = storage.targetX(i);
+            int ty = storage.targetY(i);
+            if (RobotKinematics.distance(math, tx, ty, x, y) < RobotKinematics.ARRIVAL_DISTANCE) {
+                continue;
+            }
+            double dir = storage.direction(i);
+            double angularVelocity = RobotKinematics.angularVelocity(math, x, y, dir, tx, ty);
+            storage.setPose(i,
+                    RobotKinematics.nextX(math, x, dir, velocity, angularVelocity, duration),
+                    RobotKinematics.nextY(math, y, dir, velocity, angularVelocity, duration),
+                    RobotKinematics.nextDirection(math, dir, angularVelocity, duration));
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Проверяет, что робот достиг своей цели.
+     *
+     * @param id идентификатор робота
+     * @return true, если робот находится у цели
+     */
+    public boolean isArrived(int id) {
+        checkId(id);
+        return RobotKinematics.distance(mStorage.targetX(id), mStorage.targetY(id),
+                mStorage.positionX(id), mStorage.positionY(id))
+                < RobotKinematics.ARRIVAL_DISTANCE;
+    }
+
+    /**
+     * Копирует столбцы флота в снимок.
+     *
+     * @param snapshot снимок, в который копируется состояние
+     */
+    void writeTo(WorldSnapshot snapshot) {
+        int size = mSize;
+        snapshot.ensureCapacity(size);
+        mStorage.copyTo(snapshot, size);
+        snapshot.fleetSize = size;
+    }
+
+    /**
+     * Заменяет столбцы флота столбцами снимка.
+     *
+     * @param snapshot снимок, из которого копируется состояние
+     */
+    void readFrom(WorldSnapshot snapshot) {
+        int size = snapshot.fleetSize;
+        if (mStorage.capacity() < size) {
+            mStorage.grow(size, 0);
+        }
+        mStorage.copyFrom(snapshot, size);
+        mSize = size;
+    }
+
+    /**
+     * Освобождает столбцы флота вне кучи; для флота в куче ничего не делает.
+     * После закрытия флот вне кучи использовать нельзя.
+     */
+    @Override
+    public void close() {
+        mStorage.close();
+    }
+
+    /**
+     * Проверка доступности векторного шага в отдельном классе: так {@link VectorFleetKernel}
+     * не загружается, если модуля нет.
+     */
+    private static final class VectorSupport {
+        static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+                && VectorFleetKernel.lanes() >= 2;
+    }
+
+    /**
+     * Проверка доступности хранения вне кучи: попытка загрузить класс, скомпилированный с preview API.
+     */
+    private static final class OffHeapSupport {
+        static final boolean AVAILABLE = probe();
+
+        private static boolean probe() {
+            try {
+                Class.forName("model.OffHeapFleetStorage");
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= mSize) {
+            throw new IndexOutOfBoundsException("Робот " + id + " не найден во флоте из " + mSize);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public double getPositionX(int id) {
+        return mStorage.positionX(id);
+    }
+
+    public double getPositionY(int id) {
+        return mStorage.positionY(id);
+    }
+
+    public double getDirection(int id) {
+        return mStorage.direction(id);
+    }
+
+    public int getTargetX(int id) {
+        return mStorage.targetX(id);
+    }
+
+    public int getTargetY(int id) {
+        return mStorage.targetY(id);
+    }
+}
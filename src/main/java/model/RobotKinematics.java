@@ -0,0 +1,131 @@
+package model;
+
+/**
+ * Кинематика робота: общие формулы движения для одиночного робота и флота.
+ * Все методы статические и не создают объектов, чтобы их можно было вызывать в горячем цикле.
+ */
+final class RobotKinematics {
+    static final double MAX_VELOCITY = 0.1;
+    static final double MAX_ANGULAR_VELOCITY = 0.001;
+    /**
+     * Расстояние до цели, при котором робот считается прибывшим.
+     */
+    static final double ARRIVAL_DISTANCE = 0.5;
+
+    private RobotKinematics() {
+    }
+
+    /**
+     * Выбирает угловую скорость, с которой робот поворачивает к цели.
+     *
+     * @param math      ядро тригонометрии
+     * @param x         координата X робота
+     * @param y         координата Y робота
+     * @param direction направление робота в радианах
+     * @param targetX   координата X цели
+     * @param targetY   координата Y цели
+     * @return угловая скорость в пределах [-MAX_ANGULAR_VELOCITY, MAX_ANGULAR_VELOCITY]
+     */
+    static double angularVelocity(MathKernel math, double x, double y, double direction,
+                                  double targetX, double targetY) {
+        double angleToTarget = angleTo(math, x, y, targetX, targetY);
+        double angleDifference = math.normalizeRadians(angleToTarget - direction);
+        double angularVelocity = (angleDifference < Math.PI) ? MAX_ANGULAR_VELOCITY : -MAX_ANGULAR_VELOCITY;
+        return applyLimits(angularVelocity, -MAX_ANGULAR_VELOCITY, MAX_ANGULAR_VELOCITY);
+    }
+
+    /**
+     * Считает координату X после движения по дуге.
+     * Разность синусов вычитает близкие значения, поэтому ошибка ядра умножается на радиус поворота v/ω.
+     */
+    static double nextX(MathKernel math, double x, double direction, double velocity, double angularVelocity,
+                        double duration) {
+        double newX = x + velocity / angularVelocity *
+                (math.sin(direction + angularVelocity * duration) - math.sin(direction));
+        if (!Double.isFinite(newX)) {
+            newX = x + velocity * duration * math.cos(direction);
+        }
+        return newX;
+    }
+
+    /**
+     * Считает координату Y после движения по дуге.
+     */
+    static double nextY(MathKernel math, double y, double direction, double velocity, double angularVelocity,
+                        double duration) {
+        double newY = y - velocity / angularVelocity *
+                (math.cos(direction + angularVelocity * duration) - math.cos(direction));
+        if (!Double.isFinite(newY)) {
+            newY = y + velocity * duration * math.sin(direction);
+        }
+        return newY;
+    }
+
+    /**
+     * Считает направление робота после поворота.
+     */
+    static double nextDirection(MathKernel math, double direction, double angularVelocity, double duration) {
+        return math.normalizeRadians(direction + angularVelocity * duration);
+    }
+
+    /**
+     * Приводит угол к диапазону от 0 до 2π радиан.
+     * @param angle угол для нормализации
+     * @return нормализованный угол
+     */
+    static double asNormalizedRadians(double angle) {
+        return MathKernel.STRICT.normalizeRadians(angle);
+    }
+
+    /**
+     * Применяет ограничения к значению в заданном диапазоне.
+     * @param value значение, которое нужно ограничить
+     * @param min минимальное допустимое значение
+     * @param max максимальное допустимое значение
+     * @return ограниченное значение
+     */
+    static double applyLimits(double value, double min, double max) {
+        if (value < min)
+            return min;
+        if (value > max)
+            return max;
+        return value;
+    }
+
+    /**
+     * Вычисляет расстояние между двумя точками.
+     *
+     * @param math ядро тригонометрии
+     * @param x1 координата X первой точки
+     * @param y1 координата Y первой точки
+     * @param x2 координата X второй точки
+     * @param y2 координата Y второй точки
+     * @return расстояние между точками
+     */
+    static double distance(MathKernel math, double x1, double y1, double x2, double y2) {
+        double diffX = x1 - x2;
+        double diffY = y1 - y2;
+        return math.sqrt(diffX * diffX + diffY * diffY);
+    }
+
+    static double distance(double x1, double y1, double x2, double y2) {
+        return distance(MathKernel.STRICT, x1, y1, x2, y2);
+    }
+
+    /**
+     * Вычисляет угол между двумя точками.
+     *
+     * @param math  ядро тригонометрии
+     * @param fromX координата X начальной точки
+     * @param fromY координата Y начальной точки
+     * @param toX   координата X конечной точки
+     * @param toY   координата Y конечной точки
+     * @return угол между точками в радианах
+     */
+    static double angleTo(MathKernel math, double fromX, double fromY, double toX, double toY) {
+        double diffX = toX - fromX;
+        double diffY = toY - fromY;
+
+        return math.normalizeRadians(math.atan2(diffY, diffX));
+    }
+}
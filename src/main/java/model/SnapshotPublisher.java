@@ -0,0 +1,117 @@
+package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Публикация снимков мира через seqlock.
+ * Писатель (поток симуляции) копирует состояние в заранее выделенный общий буфер,
+ * окружая запись нечетным и четным значением счетчика. Читатели копируют буфер в свой
+ * {@link WorldSnapshot} и повторяют чтение, если счетчик изменился, поэтому никогда не видят
+ * смесь двух тиков. Ни писатель, ни читатель не выделяют память после прогрева.
+ * <p>
+ * Писатель публикует снимок только по запросу: каждое чтение выставляет флаг, и следующий тик
+ * публикует свежее состояние. Без читателей копирование флота не стоит ничего, и общий буфер
+ * не выделяется вовсе: до первого чтения запросов нет, а первое чтение видит пустой снимок.
+ */
+public class SnapshotPublisher {
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(SnapshotPublisher.class, "mSequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final WorldSnapshot mShared = new WorldSnapshot();
+    @SuppressWarnings("unused")
+    private volatile long mSequence;
+    private volatile boolean mRequested;
+    private long mPublications;
+
+    /**
+     * Проверяет, просил ли кто-нибудь свежий снимок после последней публикации.
+     *
+     * @return true, если снимок стоит опубликовать
+     */
+    public boolean isRequested() {
+        return mRequested;
+    }
+
+    /**
+     * Начинает запись снимка. Вызывается только из потока симуляции.
+     *
+     * @return общий буфер, в который нужно записать состояние
+     */
+    WorldSnapshot beginWrite() {
+        long sequence = (long) SEQUENCE.getVolatile(this);
+        SEQUENCE.setVolatile(this, sequence + 1);
+        VarHandle.storeStoreFence();
+        return mShared;
+    }
+
+    /**
+     * Завершает запись снимка и делает его видимым читателям.
+     */
+    void endWrite() {
+        mShared.version = ++mPublications;
+        mRequested = false;
+        long sequence = (long) SEQUENCE.getVolatile(this);
+        SEQUENCE.setRelease(this, sequence + 1);
+    }
+
+    /**
+     * Копирует последний опубликованный снимок в буфер читателя.
+     * Может вызываться из любого потока одновременно с публикацией.
+     *
+     * @param target буфер читателя
+     * @return тот же буфер с согласованным снимком
+     */
+    public WorldSnapshot readInto(WorldSnapshot target) {
+        mRequested = true;
+        while (true) {
+            long before = (long) SEQUENCE.getAcquire(this);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            copy(mShared, target);
+            VarHandle.loadLoadFence();
+            long after = (long) SEQUENCE.getVolatile(this);
+            if (before == after) {
+                return target;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Копирует снимок. Во время гонки с писателем столбцы могут быть заменены,
+     * поэтому размер ограничивается фактической длиной массивов; такое чтение отбросит проверка счетчика.
+     */
+    private static void copy(WorldSnapshot source, WorldSnapshot target) {
+        target.version = source.version;
+        target.tick = source.tick;
+        target.robotPositionX = source.robotPositionX;
+        target.robotPositionY = source.robotPositionY;
+        target.robotDirection = source.robotDirection;
+        target.targetPositionX = source.targetPositionX;
+        target.targetPositionY = source.targetPositionY;
+        double[] positionX = source.fleetPositionX;
+        double[] positionY = source.fleetPositionY;
+        double[] direction = source.fleetDirection;
+        int[] targetX = source.fleetTargetX;
+        int[] targetY = source.fleetTargetY;
+        int size = Math.min(source.fleetSize, Math.min(positionX.length, Math.min(positionY.length,
+                Math.min(direction.length, Math.min(targetX.length, targetY.length)))));
+        target.ensureCapacity(size);
+        System.arraycopy(positionX, 0, target.fleetPositionX, 0, size);
+        System.arraycopy(positionY, 0, target.fleetPositionY, 0, size);
+        System.arraycopy(direction, 0, target.fleetDirection, 0, size);
+        System.arraycopy(targetX, 0, target.fleetTargetX, 0, size);
+        System.arraycopy(targetY, 0, target.fleetTargetY, 0, size);
+        target.fleetSize = size;
+    }
+}
@@ -0,0 +1,359 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Пространственный индекс роботов флота на равномерной сетке.
+ * Ячейки хранятся в хеш-таблице, поэтому мир не ограничен заранее известными размерами.
+ * Каждая ячейка - двусвязный список идентификаторов на массивах, так что перенос робота
+ * в соседнюю ячейку стоит O(1), а запросы просматривают только ячейки рядом с областью запроса.
+ * <p>
+ * Индекс хранит собственную копию позиций на момент последнего {@link #update}.
+ * Обновление и запросы синхронизированы, поэтому запросы из потока интерфейса видят
+ * индекс целиком до или после тика.
+ */
+public class SpatialGrid {
+    private static final int EMPTY = -1;
+
+    private final double mCellSize;
+    private final double mInverseCellSize;
+
+    private int[] mBucketHead = new int[16];
+    private int mBucketMask = 15;
+
+    private double[] mX = new double[0];
+    private double[] mY = new double[0];
+    private int[] mBucket = new int[0];
+    private int[] mNext = new int[0];
+    private int[] mPrev = new int[0];
+    private int mSize;
+
+    private double mMinX;
+    private double mMinY;
+    private double mMaxX;
+    private double mMaxY;
+
+    /**
+     * Создает индекс.
+     *
+     * @param cellSize размер ячейки сетки, обычно порядка размера робота или радиуса типичного запроса
+     */
+    public SpatialGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Размер ячейки должен быть положительным: " + cellSize);
+        }
+        mCellSize = cellSize;
+        mInverseCellSize = 1 / cellSize;
+        Arrays.fill(mBucketHead, EMPTY);
+    }
+
+    /**
+     * Приводит индекс в соответствие с позициями флота.
+     * Роботы, оставшиеся в своей ячейке, не перемещаются в списках.
+     *
+     * @param fleet флот роботов
+     */
+    public synchronized void update(RobotFleet fleet) {
+        int size = fleet.size();
+        prepare(size);
+        for (int id = 0; id < size; id++) {
+            place(id, fleet.getPositionX(id), fleet.getPositionY(id));
+        }
+        mSize = size;
+    }
+
+    /**
+     * Приводит индекс в соответствие с позициями флота в снимке мира,
+     * например чтобы интерфейс выбирал видимых роботов по тому же снимку, который рисует.
+     *
+     * @param snapshot снимок мира
+     */
+    public synchronized void update(WorldSnapshot snapshot) {
+        int size = snapshot.getFleetSize();
+        prepare(size);
+        for (int id = 0; id < size; id++) {
+            place(id, snapshot.getFleetPositionX(id), snapshot.getFleetPositionY(id));
+        }
+        mSize = size;
+    }
+
+    /**
+     * Находит ближайшего к точке робота в пределах радиуса, например робота под курсором.
+     *
+     * @param x      координата X точки
+     * @param y      координата Y точки
+     * @param radius радиус поиска
+     * @return идентификатор робота или -1, если в радиусе никого нет
+     */
+    public synchronized int findAt(double x, double y, double radius) {
+        int best = EMPTY;
+        double bestDistance = radius * radius;
+        int fromX = cell(x - radius);
+        int toX = cell(x + radius);
+        int fromY = cell(y - radius);
+        int toY = cell(y + radius);
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int id = mBucketHead[bucketOf(cx, cy)]; id != EMPTY; id = mNext[id]) {
+                    double distance = squaredDistance(id, x, y);
+                    if (distance <= bestDistance) {
+                        bestDistance = distance;
+                        best = id;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Перебирает роботов в круге.
+     *
+     * @param x       координата X центра
+     * @param y       координата Y центра
+     * @param radius  радиус круга
+     * @param visitor получает идентификаторы найденных роботов
+     * @return количество найденных роботов
+     */
+    public synchronized int forEachInRadius(double x, double y, double radius, IntConsumer visitor) {
+        double squaredRadius = radius * radius;
+        int found = 0;
+        if (cellCount(x - radius, y - radius, x + radius, y + radius) > mSize) {
+            for (int id = 0; id < mSize; id++) {
+                if (squaredDistance(id, x, y) <= squaredRadius) {
+                    visitor.accept(id);
+                    found++;
+                }
+            }
+            return found;
+        }
+        int fromX = cell(x - radius);
+        int toX = cell(x + radius);
+        int fromY = cell(y - radius);
+        int toY = cell(y + radius);
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int id = mBucketHead[bucketOf(cx, cy)]; id != EMPTY; id = mNext[id]) {
+                    if (cell(mX[id]) == cx && cell(mY[id]) == cy && squaredDistance(id, x, y) <= squaredRadius) {
+                        visitor.accept(id);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Перебирает роботов в прямоугольнике, например при выделении рамкой.
+     *
+     * @param x1      координата X первого угла
+     * @param y1      координата Y первого угла
+     * @param x2      координата X противоположного угла
+     * @param y2      координата Y противоположного угла
+     * @param visitor получает идентификаторы найденных роботов
+     * @return количество найденных роботов
+     */
+    public synchronized int forEachInRect(double x1, double y1, double x2, double y2, IntConsumer visitor) {
+        double left = Math.min(x1, x2);
+        double right = Math.max(x1, x2);
+        double top = Math.min(y1, y2);
+        double bottom = Math.max(y1, y2);
+        int found = 0;
+        if (cellCount(left, top, right, bottom) > mSize) {
+            for (int id = 0; id < mSize; id++) {
+                if (inRect(id, left, top, right, bottom)) {
+                    visitor.accept(id);
+                    found++;
+                }
+            }
+            return found;
+        }
+        int fromX = cell(left);
+        int toX = cell(right);
+        int fromY = cell(top);
+        int toY = cell(bottom);
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int id = mBucketHead[bucketOf(cx, cy)]; id != EMPTY; id = mNext[id]) {
+                    if (cell(mX[id]) == cx && cell(mY[id]) == cy && inRect(id, left, top, right, bottom)) {
+                        visitor.accept(id);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Находит ближайшего к точке робота, просматривая кольца ячеек вокруг нее.
+     * Поиск останавливается, как только следующее кольцо не может содержать робота ближе найденного.
+     *
+     * @param x координата X точки
+     * @param y координата Y точки
+     * @return идентификатор робота или -1, если индекс пуст
+     */
+    public synchronized int findNearest(double x, double y) {
+        if (mSize == 0) {
+            return EMPTY;
+        }
+        int centerX = cell(x);
+        int centerY = cell(y);
+        double reach = Math.max(Math.max(Math.abs(x - mMinX), Math.abs(x - mMaxX)),
+                Math.max(Math.abs(y - mMinY), Math.abs(y - mMaxY)));
+        int maxRing = (int) Math.ceil(reach * mInverseCellSize) + 1;
+        if ((long) (2 * maxRing + 1) * (2 * maxRing + 1) > 4L * mSize) {
+            return nearestByScan(x, y);
+        }
+        int best = EMPTY;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double ringDistance = (ring - 1) * mCellSize;
+            if (best != EMPTY && ringDistance > 0 && ringDistance * ringDistance > bestDistance) {
+                break;
+            }
+            for (int cx = centerX - ring; cx <= centerX + ring; cx++) {
+                for (int cy = centerY - ring; cy <= centerY + ring; cy++) {
+                    if (Math.max(Math.abs(cx - centerX), Math.abs(cy - centerY)) != ring) {
+                        continue;
+                    }
+                    for (int id = mBucketHead[bucketOf(cx, cy)]; id != EMPTY; id = mNext[id]) {
+                        double distance = squaredDistance(id, x, y);
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = id;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return количество проиндексированных роботов
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    private void prepare(int size) {
+        if (size < mSize) {
+            clear();
+        }
+        if (size > mBucketHead.length / 2) {
+            rehash(Integer.highestOneBit(Math.max(size, 8) - 1) << 2);
+        }
+        ensureCapacity(size);
+        mMinX = Double.POSITIVE_INFINITY;
+        mMinY = Double.POSITIVE_INFINITY;
+        mMaxX = Double.NEGATIVE_INFINITY;
+        mMaxY = Double.NEGATIVE_INFINITY;
+    }
+
+    private void place(int id, double x, double y) {
+        mX[id] = x;
+        mY[id] = y;
+        int bucket = bucketOf(cell(x), cell(y));
+        if (id >= mSize) {
+            link(id, bucket);
+        } else if (mBucket[id] != bucket) {
+            unlink(id);
+            link(id, bucket);
+        }
+        mMinX = Math.min(mMinX, x);
+        mMinY = Math.min(mMinY, y);
+        mMaxX = Math.max(mMaxX, x);
+        mMaxY = Math.max(mMaxY, y);
+    }
+
+    private int nearestByScan(double x, double y) {
+        int best = EMPTY;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int id = 0; id < mSize; id++) {
+            double distance = squaredDistance(id, x, y);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = id;
+            }
+        }
+        return best;
+    }
+
+    private double squaredDistance(int id, double x, double y) {
+        double dx = mX[id] - x;
+        double dy = mY[id] - y;
+        return dx * dx + dy * dy;
+    }
+
+    private boolean inRect(int id, double left, double top, double right, double bottom) {
+        double x = mX[id];
+        double y = mY[id];
+        return x >= left && x <= right && y >= top && y <= bottom;
+    }
+
+    private long cellCount(double left, double top, double right, double bottom) {
+        return ((long) cell(right) - cell(left) + 1) * ((long) cell(bottom) - cell(top) + 1);
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate * mInverseCellSize);
+    }
+
+    private int bucketOf(int cellX, int cellY) {
+        int hash = cellX * 0x9E3779B1 + cellY * 0x85EBCA77;
+        return (hash ^ (hash >>> 15)) & mBucketMask;
+    }
+
+    private void link(int id, int bucket) {
+        int head = mBucketHead[bucket];
+        mBucket[id] = bucket;
+        mPrev[id] = EMPTY;
+        mNext[id] = head;
+        if (head != EMPTY) {
+            mPrev[head] = id;
+        }
+        mBucketHead[bucket] = id;
+    }
+
+    private void unlink(int id) {
+        int prev = mPrev[id];
+        int next = mNext[id];
+        if (prev != EMPTY) {
+            mNext[prev] = next;
+        } else {
+            mBucketHead[mBucket[id]] = next;
+        }
+        if (next != EMPTY) {
+            mPrev[next] = prev;
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(mBucketHead, EMPTY);
+        mSize = 0;
+    }
+
+    private void rehash(int buckets) {
+        mBucketHead = new int[buckets];
+        mBucketMask = buckets - 1;
+        Arrays.fill(mBucketHead, EMPTY);
+        for (int id = 0; id < mSize; id++) {
+            link(id, bucketOf(cell(mX[id]), cell(mY[id])));
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (mX.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mX.length * 2);
+        mX = Arrays.copyOf(mX, newCapacity);
+        mY = Arrays.copyOf(mY, newCapacity);
+        mBucket = Arrays.copyOf(mBucket, newCapacity);
+        mNext = Arrays.copyOf(mNext, newCapacity);
+        mPrev = Arrays.copyOf(mPrev, newCapacity);
+    }
+}
@@ -0,0 +1,37 @@
+package model;
+
+/**
+ * Строгое ядро тригонометрии: результаты совпадают с прежними вычислениями через {@link Math}.
+ */
+final class StrictMathKernel implements MathKernel {
+    @Override
+    public double sin(double angle) {
+        return Math.sin(angle);
+    }
+
+    @Override
+    public double cos(double angle) {
+        return Math.cos(angle);
+    }
+
+    @Override
+    public double atan2(double y, double x) {
+        return Math.atan2(y, x);
+    }
+
+    @Override
+    public double sqrt(double value) {
+        return Math.sqrt(value);
+    }
+
+    @Override
+    public double normalizeRadians(double angle) {
+        while (angle < 0) {
+            angle += 2 * Math.PI;
+        }
+        while (angle >= 2 * Math.PI) {
+            angle -= 2 * Math.PI;
+        }
+        return angle;
+    }
+}
@@ -0,0 +1,367 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Событийный движок траекторий, который решает движение роботов в замкнутой форме.
+ * <p>
+ * Между сменами цели движение робота детерминировано: он поворачивает с постоянной
+ * угловой скоростью по окружности радиуса v/ω, пока не окажется на касательной к цели,
+ * затем едет прямо до цели. Точка схода с окружности - точка касания прямой из цели,
+ * поэтому оба участка считаются сразу при {@link #setTarget}, а позиция в любой момент
+ * времени вычисляется по требованию. Если цель внутри окружности поворота, робот бесконечно
+ * кружит, как и в пошаговой модели.
+ * <p>
+ * Работа выполняется только при смене цели и при прибытии (очередь событий по времени прибытия),
+ * поэтому стоимость для простаивающего флота пропорциональна количеству событий, а не тиков.
+ * Модель непрерывная: в отличие от пошаговой {@link RobotFleet} робот не покачивается на прямом
+ * участке и поворачивает в направлении, выбранном в момент смены цели, поэтому время прибытия
+ * совпадает с пошаговой моделью с точностью до нескольких тиков.
+ */
+public class TrajectoryEngine {
+    private static final double VELOCITY = RobotKinematics.MAX_VELOCITY;
+    private static final double ANGULAR_VELOCITY = RobotKinematics.MAX_ANGULAR_VELOCITY;
+    private static final double TURN_RADIUS = VELOCITY / ANGULAR_VELOCITY;
+
+    /**
+     * Время начала плана и поза робота в этот момент.
+     */
+    private double[] mStartTime;
+    private double[] mStartX;
+    private double[] mStartY;
+    private double[] mStartDirection;
+    /**
+     * Угловая скорость на дуге со знаком и время конца дуги.
+     */
+    private double[] mAngularVelocity;
+    private double[] mArcEnd;
+    /**
+     * Поза в начале прямого участка и время прибытия.
+     */
+    private double[] mLineX;
+    private double[] mLineY;
+    private double[] mLineDirection;
+    private double[] mArrivalTime;
+    private int[] mTargetX;
+    private int[] mTargetY;
+    private int mSize;
+    /**
+     * Количество роботов, которые кружат вокруг цели внутри окружности поворота.
+     */
+    private int mCircling;
+
+    /**
+     * Двоичная куча идентификаторов роботов по времени прибытия и позиции роботов в ней.
+     */
+    private int[] mHeap;
+    private int[] mHeapIndex;
+    private int mHeapSize;
+
+    /**
+     * Создает пустой движок.
+     *
+     * @param initialCapacity начальная вместимость столбцов
+     */
+    public TrajectoryEngine(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        mStartTime = copy(mStartTime, capacity);
+        mStartX = copy(mStartX, capacity);
+        mStartY = copy(mStartY, capacity);
+        mStartDirection = copy(mStartDirection, capacity);
+        mAngularVelocity = copy(mAngularVelocity, capacity);
+        mArcEnd = copy(mArcEnd, capacity);
+        mLineX = copy(mLineX, capacity);
+        mLineY = copy(mLineY, capacity);
+        mLineDirection = copy(mLineDirection, capacity);
+        mArrivalTime = copy(mArrivalTime, capacity);
+        mTargetX = mTargetX == null ? new int[capacity] : Arrays.copyOf(mTargetX, capacity);
+        mTargetY = mTargetY == null ? new int[capacity] : Arrays.copyOf(mTargetY, capacity);
+        mHeap = mHeap == null ? new int[capacity] : Arrays.copyOf(mHeap, capacity);
+        mHeapIndex = mHeapIndex == null ? new int[capacity] : Arrays.copyOf(mHeapIndex, capacity);
+    }
+
+    private static double[] copy(double[] column, int capacity) {
+        return column == null ? new double[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    /**
+     * Добавляет робота и сразу планирует его движение к цели.
+     *
+     * @param x         координата X робота
+     * @param y         координата Y робота
+     * @param direction направление робота в радианах
+     * @param targetX   координата X цели
+     * @param targetY   координата Y цели
+     * @param time      время добавления в миллисекундах
+     * @return идентификатор робота
+     */
+    public int addRobot(double x, double y, double direction, int targetX, int targetY, double time) {
+        if (mSize == mStartTime.length) {
+            allocate(mSize * 2);
+        }
+        int id = mSize++;
+        mHeapIndex[id] = -1;
+        plan(id, time, x, y, RobotKinematics.asNormalizedRadians(direction), targetX, targetY);
+        return id;
+    }
+
+    /**
+     * Меняет цель робота. Текущая поза вычисляется в замкнутой форме, после чего строится новый план.
+     *
+     * @param id      идентификатор робота
+     * @param targetX координата X цели
+     * @param targetY координата Y цели
+     * @param time    время смены цели в миллисекундах
+     */
+    public void setTarget(int id, int targetX, int targetY, double time) {
+        checkId(id);
+        plan(id, time, getPositionX(id, time), getPositionY(id, time), getDirection(id, time), targetX, targetY);
+    }
+
+    /**
+     * Строит план движения: дуга до касательной к цели и прямой участок до нее.
+     */
+    private void plan(int id, double time, double x, double y, double direction, int targetX, int targetY) {
+        if (mArcEnd[id] == Double.POSITIVE_INFINITY) {
+            mCircling--;
+        }
+        mStartTime[id] = time;
+        mStartX[id] = x;
+        mStartY[id] = y;
+        mStartDirection[id] = direction;
+        mTargetX[id] = targetX;
+        mTargetY[id] = targetY;
+
+        double distance = RobotKinematics.distance(targetX, targetY, x, y);
+        if (distance < RobotKinematics.ARRIVAL_DISTANCE) {
+            mAngularVelocity[id] = 0;
+            setLine(id, time, x, y, direction, time);
+            return;
+        }
+        double omega = RobotKinematics.angularVelocity(MathKernel.STRICT, x, y, direction, targetX, targetY);
+        mAngularVelocity[id] = omega;
+        double sin = Math.sin(direction);
+        double cos = Math.cos(direction);
+        double centerX = omega > 0 ? x - TURN_RADIUS * sin : x + TURN_RADIUS * sin;
+        double centerY = omega > 0 ? y + TURN_RADIUS * cos : y - TURN_RADIUS * cos;
+        double centerDistance = RobotKinematics.distance(targetX, targetY, centerX, centerY);
+        if (centerDistance <= TURN_RADIUS) {
+            mArcEnd[id] = Double.POSITIVE_INFINITY;
+            mArrivalTime[id] = Double.POSITIVE_INFINITY;
+            mCircling++;
+            removeFromHeap(id);
+            return;
+        }
+        double alpha = Math.atan2(targetY - centerY, targetX - centerX);
+        double beta = Math.acos(TURN_RADIUS / centerDistance);
+        double tangentAngle = omega > 0 ? alpha - beta : alpha + beta;
+        double lineDirection = RobotKinematics.asNormalizedRadians(
+                omega > 0 ? tangentAngle + Math.PI / 2 : tangentAngle - Math.PI / 2);
+        double turn = omega > 0
+                ? RobotKinematics.asNormalizedRadians(lineDirection - direction)
+                : RobotKinematics.asNormalizedRadians(direction - lineDirection);
+        double arcEnd = time + turn / ANGULAR_VELOCITY;
+        double lineX = centerX + TURN_RADIUS * Math.cos(tangentAngle);
+        double lineY = centerY + TURN_RADIUS * Math.sin(tangentAngle);
+        double lineLength = Math.sqrt(centerDistance * centerDistance - TURN_RADIUS * TURN_RADIUS);
+        double arrival = arcEnd + Math.max(0, lineLength - RobotKinematics.ARRIVAL_DISTANCE) / VELOCITY;
+        setLine(id, arcEnd, lineX, lineY, lineDirection, arrival);
+    }
+
+    private void setLine(int id, double arcEnd, double lineX, double lineY, double lineDirection, double arrival) {
+        mArcEnd[id] = arcEnd;
+        mLineX[id] = lineX;
+        mLineY[id] = lineY;
+        mLineDirection[id] = lineDirection;
+        mArrivalTime[id] = arrival;
+        removeFromHeap(id);
+        pushToHeap(id);
+    }
+
+    /**
+     * Продвигает время движка и обрабатывает все прибытия до указанного момента.
+     * Стоимость пропорциональна количеству событий, а не количеству роботов.
+     *
+     * @param time      новое время в миллисекундах
+     * @param onArrival обработчик прибытия робота, может быть null
+     * @return количество обработанных событий
+     */
+    public int advanceTo(double time, IntConsumer onArrival) {
+        int events = 0;
+        while (mHeapSize > 0 && mArrivalTime[mHeap[0]] <= time) {
+            int id = popHeap();
+            events++;
+            if (onArrival != null) {
+                onArrival.accept(id);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Координата X робота в момент time, вычисленная в замкнутой форме.
+     */
+    public double getPositionX(int id, double time) {
+        if (time < mArcEnd[id]) {
+            return RobotKinematics.nextX(MathKernel.STRICT, mStartX[id], mStartDirection[id], VELOCITY, mAngularVelocity[id],
+                    Math.max(0, time - mStartTime[id]));
+        }
+        return mLineX[id] + VELOCITY * lineTime(id, time) * Math.cos(mLineDirection[id]);
+    }
+
+    /**
+     * Координата Y робота в момент time, вычисленная в замкнутой форме.
+     */
+    public double getPositionY(int id, double time) {
+        if (time < mArcEnd[id]) {
+            return RobotKinematics.nextY(MathKernel.STRICT, mStartY[id], mStartDirection[id], VELOCITY, mAngularVelocity[id],
+                    Math.max(0, time - mStartTime[id]));
+        }
+        return mLineY[id] + VELOCITY * lineTime(id, time) * Math.sin(mLineDirection[id]);
+    }
+
+    /**
+     * Направление робота в момент time, вычисленное в замкнутой форме.
+     */
+    public double getDirection(int id, double time) {
+        if (time < mArcEnd[id]) {
+            return RobotKinematics.nextDirection(MathKernel.STRICT, mStartDirection[id], mAngularVelocity[id],
+                    Math.max(0, time - mStartTime[id]));
+        }
+        return mLineDirection[id];
+    }
+
+    /**
+     * Время движения по прямому участку, ограниченное моментом прибытия.
+     */
+    private double lineTime(int id, double time) {
+        return Math.min(time, mArrivalTime[id]) - mArcEnd[id];
+    }
+
+    /**
+     * Время прибытия робота к цели или бесконечность, если цель внутри окружности поворота.
+     *
+     * @param id идентификатор робота
+     * @return время прибытия в миллисекундах
+     */
+    public double getArrivalTime(int id) {
+        checkId(id);
+        return mArrivalTime[id];
+    }
+
+    public int getTargetX(int id) {
+        return mTargetX[id];
+    }
+
+    public int getTargetY(int id) {
+        return mTargetY[id];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Количество роботов, прибытие которых еще ожидается.
+     *
+     * @return количество запланированных событий
+     */
+    public int pendingArrivals() {
+        return mHeapSize;
+    }
+
+    /**
+     * Количество роботов, которые еще движутся: ожидающие прибытия и кружащие вокруг цели.
+     *
+     * @return количество движущихся роботов
+     */
+    public int movingCount() {
+        return mHeapSize + mCircling;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= mSize) {
+            throw new IndexOutOfBoundsException("Робот " + id + " не найден среди " + mSize);
+        }
+    }
+
+    private void pushToHeap(int id) {
+        if (Double.isInfinite(mArrivalTime[id])) {
+            return;
+        }
+        int index = mHeapSize++;
+        mHeap[index] = id;
+        mHeapIndex[id] = index;
+        siftUp(index);
+    }
+
+    private int popHeap() {
+        int top = mHeap[0];
+        removeAt(0);
+        return top;
+    }
+
+    private void removeFromHeap(int id) {
+        int index = mHeapIndex[id];
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    private void removeAt(int index) {
+        int removed = mHeap[index];
+        mHeapIndex[removed] = -1;
+        int last = --mHeapSize;
+        if (index == last) {
+            return;
+        }
+        int moved = mHeap[last];
+        mHeap[index] = moved;
+        mHeapIndex[moved] = index;
+        siftDown(index);
+        siftUp(mHeapIndex[moved]);
+    }
+
+    private void siftUp(int index) {
+        int id = mHeap[index];
+        double key = mArrivalTime[id];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentId = mHeap[parent];
+            if (mArrivalTime[parentId] <= key) {
+                break;
+            }
+            mHeap[index] = parentId;
+            mHeapIndex[parentId] = index;
+            index = parent;
+        }
+        mHeap[index] = id;
+        mHeapIndex[id] = index;
+    }
+
+    private void siftDown(int index) {
+        int id = mHeap[index];
+        double key = mArrivalTime[id];
+        int half = mHeapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < mHeapSize && mArrivalTime[mHeap[right]] < mArrivalTime[mHeap[child]]) {
+                child = right;
+            }
+            int childId = mHeap[child];
+            if (key <= mArrivalTime[childId]) {
+                break;
+            }
+            mHeap[index] = childId;
+            mHeapIndex[childId] = index;
+            index = child;
+        }
+        mHeap[index] = id;
+        mHeapIndex[id] = index;
+    }
+}
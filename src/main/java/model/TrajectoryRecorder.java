@@ -0,0 +1,325 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Запись траекторий роботов в двоичный файл через отображение файла в память.
+ * <p>
+ * Файл записи состоит из заголовка и записей фиксированной ширины {@link #RECORD_SIZE}:
+ * номер тика (long), идентификатор робота (int), x, y и направление (float).
+ * За тик пишутся только роботы, поза которых изменилась, а каждый {@link #getKeyframeInterval()}-й
+ * тик - ключевой кадр с позами всех роботов. Основной робот пишется с идентификатором
+ * {@link #MAIN_ROBOT_ID}, его цель - с {@link #MAIN_TARGET_ID}.
+ * <p>
+ * Рядом лежит индекс с расширением {@code .idx}: для каждого записанного тика номер первой
+ * записи и размер флота. По нему {@link TrajectoryReplay} находит ключевой кадр любого тика
+ * за O(1), а файлы любого размера читаются через отображение и не загружаются в кучу.
+ * <p>
+ * Запись идет напрямую в отображенные области файла и не создает объектов на запись;
+ * новая область отображается раз в {@link #REGION_RECORDS} записей.
+ */
+public class TrajectoryRecorder implements Closeable {
+    static final int MAGIC = 0x524A5452;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 24;
+    static final int INDEX_ENTRY_SIZE = 16;
+    /**
+     * Количество записей и элементов индекса в одной отображаемой области файла.
+     */
+    static final long REGION_RECORDS = 1 << 22;
+    static final long INDEX_REGION_ENTRIES = 1 << 20;
+    static final int MAIN_ROBOT_ID = -1;
+    static final int MAIN_TARGET_ID = -2;
+    /**
+     * Позы основного робота и его цели хранятся в начале столбцов последних записанных поз.
+     */
+    static final int SLOT_OFFSET = 2;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+
+    private final Path mPath;
+    private final FileChannel mData;
+    private final FileChannel mIndex;
+    private final int mKeyframeInterval;
+
+    private MappedByteBuffer mDataRegion;
+    private long mDataRegionNumber = -1;
+    private MappedByteBuffer mIndexRegion;
+    private long mIndexRegionNumber = -1;
+
+    private long mFirstTick = -1;
+    private long mTicks;
+    private long mRecords;
+    /**
+     * Последние записанные позы, идентификатор робота id хранится по индексу id + SLOT_OFFSET.
+     */
+    private float[] mLastX = new float[0];
+    private float[] mLastY = new float[0];
+    private float[] mLastDirection = new float[0];
+    /**
+     * Размер флота в последнем записанном тике.
+     */
+    private int mLastFleetSize;
+
+    private boolean mClosed;
+    private IOException mFailure;
+
+    /**
+     * Создает запись с ключевыми кадрами по умолчанию.
+     *
+     * @param path путь к файлу записи; индекс создается рядом
+     * @throws IOException если файлы не удалось создать
+     */
+    public TrajectoryRecorder(Path path) throws IOException {
+        this(path, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Создает запись.
+     *
+     * @param path             путь к файлу записи; индекс создается рядом
+     * @param keyframeInterval через сколько тиков пишется полный кадр
+     * @throws IOException если файлы не удалось создать
+     */
+    public TrajectoryRecorder(Path path, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Интервал ключевых кадров должен быть положительным: "
+                    + keyframeInterval);
+        }
+        mPath = path;
+        mKeyframeInterval = keyframeInterval;
+        mData = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            mIndex = FileChannel.open(indexPath(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            mData.close();
+            throw e;
+        }
+        writeHeader();
+    }
+
+    /**
+     * Возвращает путь к индексу записи.
+     *
+     * @param path путь к файлу записи
+     * @return путь к индексу
+     */
+    static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".idx");
+    }
+
+    /**
+     * Записывает тик: изменившиеся позы или, на ключевом кадре, позы всех роботов.
+     * Вызывается потоком симуляции после шага. После закрытия или ошибки ничего не делает.
+     *
+     * @param tick            номер тика
+     * @param robotX          координата X основного робота
+     * @param robotY          координата Y основного робота
+     * @param robotDirection  направление основного робота
+     * @param targetX         координата X цели основного робота
+     * @param targetY         координата Y цели основного робота
+     * @param fleet           флот роботов
+     */
+    public synchronized void record(long tick, double robotX, double robotY, double robotDirection,
+                                    int targetX, int targetY, RobotFleet fleet) {
+        if (mClosed) {
+            return;
+        }
+        try {
+            if (mFirstTick < 0) {
+                mFirstTick = tick;
+            }
+            int size = fleet.size();
+            ensureSlots(size + SLOT_OFFSET);
+            forgetRemoved(size);
+            boolean keyframe = mTicks % mKeyframeInterval == 0;
+            writeIndexEntry(mTicks, mRecords, size);
+            writeIfChanged(keyframe, tick, MAIN_TARGET_ID, targetX, targetY, 0);
+            writeIfChanged(keyframe, tick, MAIN_ROBOT_ID, robotX, robotY, robotDirection);
+            for (int id = 0; id < size; id++) {
+                writeIfChanged(keyframe, tick, id, fleet.getPositionX(id), fleet.getPositionY(id),
+                        fleet.getDirection(id));
+            }
+            mTicks++;
+        } catch (IOException e) {
+            mFailure = e;
+            closeQuietly();
+        }
+    }
+
+    private void writeIfChanged(boolean keyframe, long tick, int id, double x, double y, double direction)
+            throws IOException {
+        int slot = id + SLOT_OFFSET;
+        float newX = (float) x;
+        float newY = (float) y;
+        float newDirection = (float) direction;
+        if (!keyframe && newX == mLastX[slot] && newY == mLastY[slot] && newDirection == mLastDirection[slot]) {
+            return;
+        }
+        mLastX[slot] = newX;
+        mLastY[slot] = newY;
+        mLastDirection[slot] = newDirection;
+
+        long region = mRecords / REGION_RECORDS;
+        if (region != mDataRegionNumber) {
+            mDataRegion = mData.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + region * REGION_RECORDS * RECORD_SIZE, REGION_RECORDS * RECORD_SIZE);
+            mDataRegionNumber = region;
+        }
+        int offset = (int) (mRecords % REGION_RECORDS) * RECORD_SIZE;
+        mDataRegion.putLong(offset, tick);
+        mDataRegion.putInt(offset + 8, id);
+        mDataRegion.putFloat(offset + 12, newX);
+        mDataRegion.putFloat(offset + 16, newY);
+        mDataRegion.putFloat(offset + 20, newDirection);
+        mRecords++;
+    }
+
+    private void writeIndexEntry(long entry, long firstRecord, int fleetSize) throws IOException {
+        long region = entry / INDEX_REGION_ENTRIES;
+        if (region != mIndexRegionNumber) {
+            mIndexRegion = mIndex.map(FileChannel.MapMode.READ_WRITE,
+                    region * INDEX_REGION_ENTRIES * INDEX_ENTRY_SIZE, INDEX_REGION_ENTRIES * INDEX_ENTRY_SIZE);
+            mIndexRegionNumber = region;
+        }
+        int offset = (int) (entry % INDEX_REGION_ENTRIES) * INDEX_ENTRY_SIZE;
+        mIndexRegion.putLong(offset, firstRecord);
+        mIndexRegion.putInt(offset + 8, fleetSize);
+    }
+
+    /**
+     * Расширяет столбцы последних поз; новые роботы получают NaN, чтобы их первая поза точно записалась.
+     */
+    private void ensureSlots(int slots) {
+        if (mLastX.length >= slots) {
+            return;
+        }
+        int oldLength = mLastX.length;
+        int capacity = Math.max(slots, oldLength * 2);
+        mLastX = Arrays.copyOf(mLastX, capacity);
+        mLastY = Arrays.copyOf(mLastY, capacity);
+        mLastDirection = Arrays.copyOf(mLastDirection, capacity);
+        Arrays.fill(mLastX, oldLength, capacity, Float.NaN);
+        Arrays.fill(mLastY, oldLength, capacity, Float.NaN);
+        Arrays.fill(mLastDirection, oldLength, capacity, Float.NaN);
+    }
+
+    /**
+     * Забывает последние позы роботов, которых больше нет во флоте. Ключевой кадр, записанный без них,
+     * не хранит их поз, поэтому вернувшийся под тем же идентификатором робот должен записаться,
+     * даже если стоит там же, где стоял прежний.
+     */
+    private void forgetRemoved(int size) {
+        if (size < mLastFleetSize) {
+            Arrays.fill(mLastX, size + SLOT_OFFSET, mLastFleetSize + SLOT_OFFSET, Float.NaN);
+            Arrays.fill(mLastY, size + SLOT_OFFSET, mLastFleetSize + SLOT_OFFSET, Float.NaN);
+            Arrays.fill(mLastDirection, size + SLOT_OFFSET, mLastFleetSize + SLOT_OFFSET, Float.NaN);
+        }
+        mLastFleetSize = size;
+    }
+
+    /**
+     * Записывает заголовок с текущими счетчиками. Заголовок - единственный источник длины записи:
+     * хвост последней отображенной области может остаться заполненным нулями.
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(RECORD_SIZE);
+        header.putInt(mKeyframeInterval);
+        header.putLong(Math.max(mFirstTick, 0));
+        header.putLong(mTicks);
+        header.putLong(mRecords);
+        header.clear();
+        mData.write(header, 0);
+    }
+
+    /**
+     * Завершает запись: пишет заголовок и обрезает файлы по записанным данным.
+     *
+     * @throws IOException если заголовок не удалось записать или запись ранее прервалась с ошибкой
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!mClosed) {
+            mClosed = true;
+            try {
+                finish();
+            } finally {
+                mData.close();
+                mIndex.close();
+            }
+        }
+        if (mFailure != null) {
+            throw mFailure;
+        }
+    }
+
+    private void finish() throws IOException {
+        writeHeader();
+        if (mDataRegion != null) {
+            mDataRegion.force();
+        }
+        if (mIndexRegion != null) {
+            mIndexRegion.force();
+        }
+        mDataRegion = null;
+        mIndexRegion = null;
+        try {
+            mData.truncate(HEADER_SIZE + mRecords * RECORD_SIZE);
+            mIndex.truncate(mTicks * INDEX_ENTRY_SIZE);
+        } catch (IOException e) {
+            // На некоторых системах нельзя обрезать файл, пока он отображен; длина берется из заголовка
+        }
+    }
+
+    private void closeQuietly() {
+        mClosed = true;
+        try {
+            finish();
+        } catch (IOException e) {
+            // ошибка записи уже сохранена в mFailure
+        }
+        try {
+            mData.close();
+            mIndex.close();
+        } catch (IOException e) {
+            // ошибка записи уже сохранена в mFailure
+        }
+    }
+
+    /**
+     * @return путь к файлу записи
+     */
+    public Path getPath() {
+        return mPath;
+    }
+
+    public int getKeyframeInterval() {
+        return mKeyframeInterval;
+    }
+
+    /**
+     * @return количество записанных тиков
+     */
+    public synchronized long getTickCount() {
+        return mTicks;
+    }
+
+    /**
+     * @return количество записанных поз
+     */
+    public synchronized long getRecordCount() {
+        return mRecords;
+    }
+}
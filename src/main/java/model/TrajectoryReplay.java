@@ -0,0 +1,251 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Чтение записи {@link TrajectoryRecorder} с переходом к любому тику.
+ * <p>
+ * Файл записи и индекс читаются через отображение в память по областям, поэтому в куче
+ * хранятся только позы текущего тика. Переход к тику находит ближайший ключевой кадр
+ * по индексу за O(1) и применяет не больше интервала ключевых кадров изменений после него;
+ * переход вперед в пределах интервала продолжает с текущего тика. Поэтому стоимость перехода
+ * не зависит от длины записи, а обратное воспроизведение стоит не дороже прямого перехода.
+ */
+public class TrajectoryReplay implements Closeable {
+    private final FileChannel mData;
+    private final FileChannel mIndex;
+    private final int mKeyframeInterval;
+    private final long mFirstTick;
+    private final long mTicks;
+    private final long mRecords;
+
+    private final MappedByteBuffer[] mDataRegions;
+    private final MappedByteBuffer[] mIndexRegions;
+
+    /**
+     * Тик, позы которого лежат в столбцах, или -1, если еще ничего не прочитано.
+     */
+    private long mTick = -1;
+    private int mFleetSize;
+    private long mVersion;
+    private float[] mX = new float[TrajectoryRecorder.SLOT_OFFSET];
+    private float[] mY = new float[TrajectoryRecorder.SLOT_OFFSET];
+    private float[] mDirection = new float[TrajectoryRecorder.SLOT_OFFSET];
+
+    /**
+     * Открывает запись и проверяет заголовок.
+     *
+     * @param path путь к файлу записи; индекс ищется рядом
+     * @throws IOException если файлы не удалось открыть или это не файл записи
+     */
+    public TrajectoryReplay(Path path) throws IOException {
+        mData = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            mIndex = FileChannel.open(TrajectoryRecorder.indexPath(path), StandardOpenOption.READ);
+        } catch (IOException e) {
+            mData.close();
+            throw e;
+        }
+        try {
+            ByteBuffer header = ByteBuffer.allocate(TrajectoryRecorder.HEADER_SIZE);
+            while (header.hasRemaining() && mData.read(header, header.position()) > 0) {
+                // читаем заголовок целиком
+            }
+            header.flip();
+            if (header.remaining() < TrajectoryRecorder.HEADER_SIZE || header.getInt() != TrajectoryRecorder.MAGIC) {
+                throw new IOException("Файл не является записью траекторий: " + path);
+            }
+            int version = header.getInt();
+            if (version != TrajectoryRecorder.FORMAT_VERSION) {
+                throw new IOException("Неподдерживаемая версия записи траекторий: " + version);
+            }
+            int recordSize = header.getInt();
+            if (recordSize != TrajectoryRecorder.RECORD_SIZE) {
+                throw new IOException("Неподдерживаемый размер записи: " + recordSize);
+            }
+            mKeyframeInterval = header.getInt();
+            mFirstTick = header.getLong();
+            mTicks = header.getLong();
+            mRecords = header.getLong();
+            if (mKeyframeInterval < 1 || mTicks < 0 || mRecords < 0
+                    || mData.size() < TrajectoryRecorder.HEADER_SIZE + mRecords * TrajectoryRecorder.RECORD_SIZE
+                    || mIndex.size() < mTicks * TrajectoryRecorder.INDEX_ENTRY_SIZE) {
+                throw new IOException("Запись траекторий повреждена или не завершена: " + path);
+            }
+        } catch (IOException e) {
+            mData.close();
+            mIndex.close();
+            throw e;
+        }
+        mDataRegions = new MappedByteBuffer[(int) regionCount(mRecords, TrajectoryRecorder.REGION_RECORDS)];
+        mIndexRegions = new MappedByteBuffer[(int) regionCount(mTicks, TrajectoryRecorder.INDEX_REGION_ENTRIES)];
+    }
+
+    private static long regionCount(long elements, long regionElements) {
+        return (elements + regionElements - 1) / regionElements;
+    }
+
+    /**
+     * @return номер первого записанного тика
+     */
+    public long getFirstTick() {
+        return mFirstTick;
+    }
+
+    /**
+     * @return номер последнего записанного тика или getFirstTick() - 1 для пустой записи
+     */
+    public long getLastTick() {
+        return mFirstTick + mTicks - 1;
+    }
+
+    /**
+     * @return количество записанных тиков
+     */
+    public long getTickCount() {
+        return mTicks;
+    }
+
+    /**
+     * Копирует позы указанного тика в снимок читателя.
+     * Тик вне записи приводится к ближайшему записанному. Цели флота в записи не хранятся.
+     *
+     * @param tick   номер тика
+     * @param target буфер читателя
+     * @return тот же буфер
+     * @throws IOException если область файла не удалось отобразить
+     */
+    public synchronized WorldSnapshot readInto(long tick, WorldSnapshot target) throws IOException {
+        if (mTicks == 0) {
+            return target;
+        }
+        seek(Math.max(mFirstTick, Math.min(tick, getLastTick())));
+        int size = mFleetSize;
+        target.ensureCapacity(size);
+        int offset = TrajectoryRecorder.SLOT_OFFSET;
+        for (int id = 0; id < size; id++) {
+            target.fleetPositionX[id] = mX[id + offset];
+            target.fleetPositionY[id] = mY[id + offset];
+            target.fleetDirection[id] = mDirection[id + offset];
+        }
+        Arrays.fill(target.fleetTargetX, 0, size, 0);
+        Arrays.fill(target.fleetTargetY, 0, size, 0);
+        target.fleetSize = size;
+        target.version = mVersion;
+        target.tick = mTick;
+        target.robotPositionX = mX[TrajectoryRecorder.MAIN_ROBOT_ID + offset];
+        target.robotPositionY = mY[TrajectoryRecorder.MAIN_ROBOT_ID + offset];
+        target.robotDirection = mDirection[TrajectoryRecorder.MAIN_ROBOT_ID + offset];
+        target.targetPositionX = (int) mX[TrajectoryRecorder.MAIN_TARGET_ID + offset];
+        target.targetPositionY = (int) mY[TrajectoryRecorder.MAIN_TARGET_ID + offset];
+        return target;
+    }
+
+    /**
+     * Переводит столбцы поз на указанный тик.
+     */
+    private void seek(long tick) throws IOException {
+        if (tick == mTick) {
+            return;
+        }
+        long entry = tick - mFirstTick;
+        long keyframe = entry - entry % mKeyframeInterval;
+        long from;
+        if (mTick >= 0 && mTick < tick && mTick - mFirstTick >= keyframe) {
+            from = mTick - mFirstTick + 1;
+        } else {
+            from = keyframe;
+        }
+        for (long e = from; e <= entry; e++) {
+            applyEntry(e);
+        }
+        mTick = tick;
+        mVersion++;
+    }
+
+    /**
+     * Применяет записи одного тика к столбцам поз.
+     */
+    private void applyEntry(long entry) throws IOException {
+        long firstRecord = indexLong(entry);
+        long endRecord = entry + 1 < mTicks ? indexLong(entry + 1) : mRecords;
+        mFleetSize = indexInt(entry);
+        ensureSlots(mFleetSize + TrajectoryRecorder.SLOT_OFFSET);
+        for (long record = firstRecord; record < endRecord; record++) {
+            MappedByteBuffer region = dataRegion(record / TrajectoryRecorder.REGION_RECORDS);
+            int offset = (int) (record % TrajectoryRecorder.REGION_RECORDS) * TrajectoryRecorder.RECORD_SIZE;
+            int slot = region.getInt(offset + 8) + TrajectoryRecorder.SLOT_OFFSET;
+            if (slot < 0 || slot >= mX.length) {
+                throw new IOException("Запись траекторий повреждена: робот " + (slot - TrajectoryRecorder.SLOT_OFFSET));
+            }
+            mX[slot] = region.getFloat(offset + 12);
+            mY[slot] = region.getFloat(offset + 16);
+            mDirection[slot] = region.getFloat(offset + 20);
+        }
+    }
+
+    private long indexLong(long entry) throws IOException {
+        MappedByteBuffer region = indexRegion(entry / TrajectoryRecorder.INDEX_REGION_ENTRIES);
+        return region.getLong((int) (entry % TrajectoryRecorder.INDEX_REGION_ENTRIES)
+                * TrajectoryRecorder.INDEX_ENTRY_SIZE);
+    }
+
+    private int indexInt(long entry) throws IOException {
+        MappedByteBuffer region = indexRegion(entry / TrajectoryRecorder.INDEX_REGION_ENTRIES);
+        return region.getInt((int) (entry % TrajectoryRecorder.INDEX_REGION_ENTRIES)
+                * TrajectoryRecorder.INDEX_ENTRY_SIZE + 8);
+    }
+
+    private MappedByteBuffer dataRegion(long number) throws IOException {
+        MappedByteBuffer region = mDataRegions[(int) number];
+        if (region == null) {
+            long start = number * TrajectoryRecorder.REGION_RECORDS;
+            long count = Math.min(TrajectoryRecorder.REGION_RECORDS, mRecords - start);
+            region = mData.map(FileChannel.MapMode.READ_ONLY,
+                    TrajectoryRecorder.HEADER_SIZE + start * TrajectoryRecorder.RECORD_SIZE,
+                    count * TrajectoryRecorder.RECORD_SIZE);
+            mDataRegions[(int) number] = region;
+        }
+        return region;
+    }
+
+    private MappedByteBuffer indexRegion(long number) throws IOException {
+        MappedByteBuffer region = mIndexRegions[(int) number];
+        if (region == null) {
+            long start = number * TrajectoryRecorder.INDEX_REGION_ENTRIES;
+            long count = Math.min(TrajectoryRecorder.INDEX_REGION_ENTRIES, mTicks - start);
+            region = mIndex.map(FileChannel.MapMode.READ_ONLY,
+                    start * TrajectoryRecorder.INDEX_ENTRY_SIZE, count * TrajectoryRecorder.INDEX_ENTRY_SIZE);
+            mIndexRegions[(int) number] = region;
+        }
+        return region;
+    }
+
+    private void ensureSlots(int slots) {
+        if (mX.length >= slots) {
+            return;
+        }
+        int capacity = Math.max(slots, mX.length * 2);
+        mX = Arrays.copyOf(mX, capacity);
+        mY = Arrays.copyOf(mY, capacity);
+        mDirection = Arrays.copyOf(mDirection, capacity);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        Arrays.fill(mDataRegions, null);
+        Arrays.fill(mIndexRegions, null);
+        try {
+            mData.close();
+        } finally {
+            mIndex.close();
+        }
+    }
+}
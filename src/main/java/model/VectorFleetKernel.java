@@ -0,0 +1,119 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Шаг флота на векторных инструкциях (Vector API, модуль jdk.incubator.vector).
+ * <p>
+ * Повторяет {@link RobotFleet#stepScalar} для нескольких роботов за инструкцию: 4 на AVX2, 8 на AVX-512.
+ * Прибывшие роботы исключаются маской, хвост диапазона короче вектора считается скалярным кодом.
+ * <p>
+ * Формулы преобразованы так, чтобы на робота приходилось по одному синусу и косинусу:
+ * <ul>
+ *     <li>вместо арктангенса и сравнения разности углов с π знак угловой скорости берется
+ *     из векторного произведения направления робота и направления на цель;</li>
+ *     <li>угол поворота за шаг ±ωt одинаков для всех роботов, поэтому разность синусов
+ *     в движении по дуге раскрыта по формуле синуса суммы: sin(ωt) и 1 - cos(ωt) = 2sin²(ωt/2)
+ *     считаются один раз на вызов, а вычитания близких значений нет.</li>
+ * </ul>
+ * Синус и косинус берутся из векторной библиотеки JDK (на x86 - SVML) с ошибкой не больше 1 ulp.
+ * За один тик координаты отличаются от строгого скалярного шага не больше чем на 1e-12,
+ * направление совпадает. Знак угловой скорости может отличаться, только когда цель лежит
+ * на прямой движения робота с точностью до ошибки округления.
+ * <p>
+ * Нормализация угла заменена одним условным прибавлением или вычитанием 2π, что совпадает
+ * со строгой нормализацией, пока направления лежат в [0, 2π). Группа, в которой есть робот
+ * с направлением вне этого диапазона, целиком считается скалярным кодом.
+ * <p>
+ * Класс загружается только после проверки {@link RobotFleet#isVectorSupported()}: без модуля
+ * jdk.incubator.vector обращение к нему завершилось бы {@link NoClassDefFoundError}.
+ */
+final class VectorFleetKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private VectorFleetKernel() {
+    }
+
+    /**
+     * @return количество роботов, которое считается одной инструкцией
+     */
+    static int lanes() {
+        return DOUBLES.length();
+    }
+
+    /**
+     * Проверяет, что за шаг направление меняется меньше чем на π, и одной поправки на 2π достаточно.
+     *
+     * @param duration длительность шага
+     * @return true, если шаг такой длительности можно считать векторным кодом
+     */
+    static boolean accepts(double duration) {
+        return Math.abs(duration) * RobotKinematics.MAX_ANGULAR_VELOCITY < Math.PI;
+    }
+
+    /**
+     * Делает шаг для роботов с идентификаторами из [from, to).
+     *
+     * @param fleet    флот, который считает скалярным кодом хвост и группы с ненормализованным направлением
+     * @param from     первый идентификатор диапазона
+     * @param to       идентификатор после последнего в диапазоне
+     * @param duration длительность шага
+     * @return количество роботов, которые сдвинулись
+     */
+    static int stepRange(RobotFleet fleet, double[] positionX, double[] positionY, double[] direction,
+                         int[] targetX, int[] targetY, int from, int to, double duration) {
+        double radius = RobotKinematics.MAX_VELOCITY / RobotKinematics.MAX_ANGULAR_VELOCITY;
+        double turn = RobotKinematics.MAX_ANGULAR_VELOCITY * duration;
+        double along = radius * Math.sin(turn);
+        double across = -2 * radius * Math.sin(turn / 2) * Math.sin(turn / 2);
+        int lanes = DOUBLES.length();
+        int moved = 0;
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += lanes) {
+            DoubleVector dir = DoubleVector.fromArray(DOUBLES, direction, i);
+            if (dir.compare(VectorOperators.LT, 0).or(dir.compare(VectorOperators.GE, TWO_PI)).anyTrue()) {
+                moved += fleet.stepScalar(i, i + lanes, duration);
+                continue;
+            }
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, positionX, i);
+            DoubleVector y = DoubleVector.fromArray(DOUBLES, positionY, i);
+            DoubleVector dx = toDoubles(IntVector.fromArray(INTS, targetX, i)).sub(x);
+            DoubleVector dy = toDoubles(IntVector.fromArray(INTS, targetY, i)).sub(y);
+            VectorMask<Double> moving = dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT)
+                    .compare(VectorOperators.LT, RobotKinematics.ARRIVAL_DISTANCE).not();
+            if (!moving.anyTrue()) {
+                continue;
+            }
+
+            DoubleVector sin = dir.lanewise(VectorOperators.SIN);
+            DoubleVector cos = dir.lanewise(VectorOperators.COS);
+            DoubleVector cross = cos.mul(dy).sub(sin.mul(dx));
+            VectorMask<Double> turnLeft = cross.compare(VectorOperators.GT, 0)
+                    .or(cross.compare(VectorOperators.EQ, 0).and(cos.mul(dx).add(sin.mul(dy))
+                            .compare(VectorOperators.GT, 0)));
+            DoubleVector sign = DoubleVector.broadcast(DOUBLES, -1).blend(1, turnLeft);
+            DoubleVector signedAcross = sign.mul(across);
+
+            x.add(cos.mul(along)).add(sin.mul(signedAcross)).intoArray(positionX, i, moving);
+            y.add(sin.mul(along)).sub(cos.mul(signedAcross)).intoArray(positionY, i, moving);
+            DoubleVector newDir = dir.add(sign.mul(turn));
+            newDir = newDir.blend(newDir.add(TWO_PI), newDir.compare(VectorOperators.LT, 0));
+            newDir = newDir.blend(newDir.sub(TWO_PI), newDir.compare(VectorOperators.GE, TWO_PI));
+            newDir.intoArray(direction, i, moving);
+            moved += moving.trueCount();
+        }
+        return moved + fleet.stepScalar(i, to, duration);
+    }
+
+    private static DoubleVector toDoubles(IntVector values) {
+        return (DoubleVector) values.convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+}
@@ -0,0 +1,271 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Контрольная точка мира: копия полного состояния модели на границе тика.
+ * <p>
+ * Двоичный формат с версией, все числа в порядке little-endian:
+ * <ul>
+ *     <li>заголовок {@link #HEADER_SIZE} байт: сигнатура, версия формата, номер тика,
+ *     поза и цель основного робота, размер флота, размеры карты препятствий,
+ *     количество слов карты, количество роботов в обходе препятствий и контрольная сумма CRC32C;</li>
+ *     <li>столбцы флота: x, y, направление (double), цель x, цель y (int);</li>
+ *     <li>занятые ячейки карты препятствий (long, как {@link java.util.BitSet#toLongArray()});</li>
+ *     <li>цели навигации флота: четверки идентификатор, цель x, цель y, последняя ячейка (int).</li>
+ * </ul>
+ * Столбцы пишутся и читаются целиком через прямой буфер, поэтому миллион роботов
+ * (около 40 МБ) записывается за время порядка копирования памяти. Файл сначала пишется
+ * во временный и затем переименовывается, поэтому прерванная запись не портит прежнюю точку.
+ * <p>
+ * Контрольная сумма считается по первым {@link #CHECKSUM_OFFSET} байтам заголовка и всем данным после него,
+ * поэтому усеченный или испорченный файл отвергается при чтении, до того как он заменит мир модели.
+ * Файлы версии 1 не содержат контрольной суммы и читаются без этой проверки.
+ */
+public class WorldCheckpoint {
+    static final int MAGIC = 0x52434B50;
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_SIZE = 80;
+    static final int CHECKSUM_OFFSET = 68;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    final WorldSnapshot world;
+    final long[] obstacles;
+    final int obstacleColumns;
+    final int obstacleRows;
+    /**
+     * Четверки: идентификатор робота, цель x, цель y, последняя ячейка навигации.
+     */
+    final int[] navigation;
+
+    WorldCheckpoint(WorldSnapshot world, long[] obstacles, int obstacleColumns, int obstacleRows,
+                    int[] navigation) {
+        this.world = world;
+        this.obstacles = obstacles;
+        this.obstacleColumns = obstacleColumns;
+        this.obstacleRows = obstacleRows;
+        this.navigation = navigation;
+    }
+
+    /**
+     * @return номер тика, на котором сделана контрольная точка
+     */
+    public long getTick() {
+        return world.tick;
+    }
+
+    public int getFleetSize() {
+        return world.fleetSize;
+    }
+
+    /**
+     * Записывает контрольную точку в файл.
+     *
+     * @param path путь к файлу
+     * @throws IOException если файл не удалось записать
+     */
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int size = world.fleetSize;
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(world.tick);
+            buffer.putDouble(world.robotPositionX);
+            buffer.putDouble(world.robotPositionY);
+            buffer.putDouble(world.robotDirection);
+            buffer.putInt(world.targetPositionX);
+            buffer.putInt(world.targetPositionY);
+            buffer.putInt(size);
+            buffer.putInt(obstacleColumns);
+            buffer.putInt(obstacleRows);
+            buffer.putInt(obstacles.length);
+            buffer.putInt(navigation.length / 4);
+            checksum.update(buffer.duplicate().clear().limit(CHECKSUM_OFFSET));
+            buffer.position(HEADER_SIZE);
+            flush(channel, buffer, null);
+
+            writeDoubles(channel, buffer, checksum, world.fleetPositionX, size);
+            writeDoubles(channel, buffer, checksum, world.fleetPositionY, size);
+            writeDoubles(channel, buffer, checksum, world.fleetDirection, size);
+            writeInts(channel, buffer, checksum, world.fleetTargetX, size);
+            writeInts(channel, buffer, checksum, world.fleetTargetY, size);
+            writeLongs(channel, buffer, checksum, obstacles, obstacles.length);
+            writeInts(channel, buffer, checksum, navigation, navigation.length);
+            buffer.putInt((int) checksum.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, CHECKSUM_OFFSET + buffer.position());
+            }
+            buffer.clear();
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает контрольную точку из файла.
+     *
+     * @param path путь к файлу
+     * @return контрольная точка
+     * @throws IOException если файл не удалось прочитать, он не является контрольной точкой,
+     *                     усечен или поврежден
+     */
+    public static WorldCheckpoint read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fill(channel, buffer, HEADER_SIZE, null);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Файл не является контрольной точкой: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION && version != 1) {
+                throw new IOException("Неподдерживаемая версия контрольной точки: " + version);
+            }
+            CRC32C checksum = version == FORMAT_VERSION ? new CRC32C() : null;
+            int expectedChecksum = buffer.getInt(CHECKSUM_OFFSET);
+            if (checksum != null) {
+                checksum.update(buffer.duplicate().clear().limit(CHECKSUM_OFFSET));
+            }
+            WorldSnapshot world = new WorldSnapshot();
+            world.tick = buffer.getLong();
+            world.robotPositionX = buffer.getDouble();
+            world.robotPositionY = buffer.getDouble();
+            world.robotDirection = buffer.getDouble();
+            world.targetPositionX = buffer.getInt();
+            world.targetPositionY = buffer.getInt();
+            int size = buffer.getInt();
+            int columns = buffer.getInt();
+            int rows = buffer.getInt();
+            int obstacleWords = buffer.getInt();
+            int navigating = buffer.getInt();
+            long expected = HEADER_SIZE + size * 32L + obstacleWords * 8L + navigating * 16L;
+            if (size < 0 || obstacleWords < 0 || navigating < 0 || channel.size() != expected) {
+                throw new IOException("Контрольная точка повреждена: " + path);
+            }
+
+            world.ensureCapacity(size);
+            world.fleetSize = size;
+            readDoubles(channel, buffer, checksum, world.fleetPositionX, size);
+            readDoubles(channel, buffer, checksum, world.fleetPositionY, size);
+            readDoubles(channel, buffer, checksum, world.fleetDirection, size);
+            readInts(channel, buffer, checksum, world.fleetTargetX, size);
+            readInts(channel, buffer, checksum, world.fleetTargetY, size);
+            long[] obstacles = new long[obstacleWords];
+            readLongs(channel, buffer, checksum, obstacles, obstacleWords);
+            int[] navigation = new int[navigating * 4];
+            readInts(channel, buffer, checksum, navigation, navigation.length);
+            if (checksum != null && (int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("Контрольная сумма не совпадает, контрольная точка повреждена: " + path);
+            }
+            return new WorldCheckpoint(world, obstacles, columns, rows, navigation);
+        }
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer, CRC32C checksum, double[] values,
+                                     int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int chunk = Math.min(count - offset, buffer.capacity() / Double.BYTES);
+            buffer.asDoubleBuffer().put(values, offset, chunk);
+            buffer.position(chunk * Double.BYTES);
+            flush(channel, buffer, checksum);
+            offset += chunk;
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, CRC32C checksum, int[] values,
+                                  int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int chunk = Math.min(count - offset, buffer.capacity() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, offset, chunk);
+            buffer.position(chunk * Integer.BYTES);
+            flush(channel, buffer, checksum);
+            offset += chunk;
+        }
+    }
+
+    private static void writeLongs(FileChannel channel, ByteBuffer buffer, CRC32C checksum, long[] values,
+                                   int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int chunk = Math.min(count - offset, buffer.capacity() / Long.BYTES);
+            buffer.asLongBuffer().put(values, offset, chunk);
+            buffer.position(chunk * Long.BYTES);
+            flush(channel, buffer, checksum);
+            offset += chunk;
+        }
+    }
+
+    private static void readDoubles(FileChannel channel, ByteBuffer buffer, CRC32C checksum, double[] values,
+                                    int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int chunk = Math.min(count - offset, buffer.capacity() / Double.BYTES);
+            fill(channel, buffer, chunk * Double.BYTES, checksum);
+            buffer.asDoubleBuffer().get(values, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static void readInts(FileChannel channel, ByteBuffer buffer, CRC32C checksum, int[] values,
+                                 int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int chunk = Math.min(count - offset, buffer.capacity() / Integer.BYTES);
+            fill(channel, buffer, chunk * Integer.BYTES, checksum);
+            buffer.asIntBuffer().get(values, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static void readLongs(FileChannel channel, ByteBuffer buffer, CRC32C checksum, long[] values,
+                                  int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int chunk = Math.min(count - offset, buffer.capacity() / Long.BYTES);
+            fill(channel, buffer, chunk * Long.BYTES, checksum);
+            buffer.asLongBuffer().get(values, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Записывает содержимое буфера целиком, добавляет его к контрольной сумме, если она передана,
+     * и очищает буфер.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        if (checksum != null) {
+            checksum.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Читает в начало буфера ровно указанное количество байт и добавляет их к контрольной сумме,
+     * если она передана.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int bytes, CRC32C checksum)
+            throws IOException {
+        buffer.clear();
+        buffer.limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Неожиданный конец контрольной точки");
+            }
+        }
+        buffer.flip();
+        if (checksum != null) {
+            checksum.update(buffer.duplicate());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Согласованный снимок состояния мира на один тик.
+ * Объект принадлежит читателю и переиспользуется между чтениями:
+ * столбцы флота растут только при увеличении флота, поэтому повторное чтение ничего не выделяет.
+ */
+public class WorldSnapshot {
+    long version;
+    long tick;
+    double robotPositionX;
+    double robotPositionY;
+    double robotDirection;
+    int targetPositionX;
+    int targetPositionY;
+    int fleetSize;
+    double[] fleetPositionX = new double[0];
+    double[] fleetPositionY = new double[0];
+    double[] fleetDirection = new double[0];
+    int[] fleetTargetX = new int[0];
+    int[] fleetTargetY = new int[0];
+
+    /**
+     * Гарантирует, что столбцы флота вмещают указанное количество роботов.
+     *
+     * @param capacity требуемая вместимость
+     */
+    void ensureCapacity(int capacity) {
+        if (fleetPositionX.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, fleetPositionX.length + (fleetPositionX.length >> 1));
+        fleetPositionX = Arrays.copyOf(fleetPositionX, newCapacity);
+        fleetPositionY = Arrays.copyOf(fleetPositionY, newCapacity);
+        fleetDirection = Arrays.copyOf(fleetDirection, newCapacity);
+        fleetTargetX = Arrays.copyOf(fleetTargetX, newCapacity);
+        fleetTargetY = Arrays.copyOf(fleetTargetY, newCapacity);
+    }
+
+    /**
+     * @return номер публикации снимка, 0 - снимок еще не публиковался
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return номер тика симуляции, на котором сделан снимок
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    public double getRobotPositionX() {
+        return robotPositionX;
+    }
+
+    public double getRobotPositionY() {
+        return robotPositionY;
+    }
+
+    public double getRobotDirection() {
+        return robotDirection;
+    }
+
+    public int getTargetPositionX() {
+        return targetPositionX;
+    }
+
+    public int getTargetPositionY() {
+        return targetPositionY;
+    }
+
+    public int getFleetSize() {
+        return fleetSize;
+    }
+
+    public double getFleetPositionX(int id) {
+        return fleetPositionX[id];
+    }
+
+    public double getFleetPositionY(int id) {
+        return fleetPositionY[id];
+    }
+
+    public double getFleetDirection(int id) {
+        return fleetDirection[id];
+    }
+
+    public int getFleetTargetX(int id) {
+        return fleetTargetX[id];
+    }
+
+    public int getFleetTargetY(int id) {
+        return fleetTargetY[id];
+    }
+
+    /**
+     * Заполняет снимок позами между двумя снимками: положение и направление каждого робота
+     * берутся на доле alpha пути от from к to, направление поворачивается по кратчайшей дуге.
+     * Номер, тик, цели и роботы, которых нет в from или которые сместились дальше maxDistance,
+     * например после перемотки записи, берутся из to.
+     *
+     * @param from        ранний снимок
+     * @param to          поздний снимок
+     * @param alpha       доля пути от 0 до 1
+     * @param maxDistance наибольшее смещение, которое еще интерполируется
+     * @return этот снимок
+     */
+    public WorldSnapshot interpolate(WorldSnapshot from, WorldSnapshot to, double alpha, double maxDistance) {
+        version = to.version;
+        tick = to.tick;
+        targetPositionX = to.targetPositionX;
+        targetPositionY = to.targetPositionY;
+        int size = to.fleetSize;
+        ensureCapacity(size);
+        fleetSize = size;
+        System.arraycopy(to.fleetTargetX, 0, fleetTargetX, 0, size);
+        System.arraycopy(to.fleetTargetY, 0, fleetTargetY, 0, size);
+        if (alpha >= 1 || from == to) {
+            robotPositionX = to.robotPositionX;
+            robotPositionY = to.robotPositionY;
+            robotDirection = to.robotDirection;
+            System.arraycopy(to.fleetPositionX, 0, fleetPositionX, 0, size);
+            System.arraycopy(to.fleetPositionY, 0, fleetPositionY, 0, size);
+            System.arraycopy(to.fleetDirection, 0, fleetDirection, 0, size);
+            return this;
+        }
+        double squaredMaxDistance = maxDistance * maxDistance;
+        double dx = to.robotPositionX - from.robotPositionX;
+        double dy = to.robotPositionY - from.robotPositionY;
+        boolean near = dx * dx + dy * dy <= squaredMaxDistance;
+        robotPositionX = near ? from.robotPositionX + dx * alpha : to.robotPositionX;
+        robotPositionY = near ? from.robotPositionY + dy * alpha : to.robotPositionY;
+        robotDirection = near ? interpolateAngle(from.robotDirection, to.robotDirection, alpha) : to.robotDirection;
+        int common = Math.min(size, from.fleetSize);
+        for (int id = 0; id < common; id++) {
+            dx = to.fleetPositionX[id] - from.fleetPositionX[id];
+            dy = to.fleetPositionY[id] - from.fleetPositionY[id];
+            if (dx * dx + dy * dy > squaredMaxDistance) {
+                fleetPositionX[id] = to.fleetPositionX[id];
+                fleetPositionY[id] = to.fleetPositionY[id];
+                fleetDirection[id] = to.fleetDirection[id];
+                continue;
+            }
+            fleetPositionX[id] = from.fleetPositionX[id] + dx * alpha;
+            fleetPositionY[id] = from.fleetPositionY[id] + dy * alpha;
+            fleetDirection[id] = interpolateAngle(from.fleetDirection[id], to.fleetDirection[id], alpha);
+        }
+        System.arraycopy(to.fleetPositionX, common, fleetPositionX, common, size - common);
+        System.arraycopy(to.fleetPositionY, common, fleetPositionY, common, size - common);
+        System.arraycopy(to.fleetDirection, common, fleetDirection, common, size - common);
+        return this;
+    }
+
+    private static double interpolateAngle(double from, double to, double alpha) {
+        return from + Math.IEEEremainder(to - from, 2 * Math.PI) * alpha;
+    }
+}
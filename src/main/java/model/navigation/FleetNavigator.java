@@ -0,0 +1,206 @@
+package model.navigation;
+
+import model.RobotFleet;
+
+import java.util.Arrays;
+
+/**
+ * Ведет роботов флота к целям в обход препятствий по общим полям потока.
+ * <p>
+ * Роботы с одной целевой ячейкой используют одно поле из {@link PathPlanner}.
+ * Каждый тик робот, сменивший ячейку, получает в столбец цели флота самую дальнюю точку
+ * спуска по полю, которая еще видна по прямой, поэтому существующее рулевое управление
+ * по дуге едет к ней без изменений. Когда видна сама цель, навигация для робота заканчивается.
+ */
+public class FleetNavigator {
+    private static final int NO_GOAL = -1;
+    /**
+     * Сколько ячеек вперед по полю просматривается в поисках видимой точки.
+     */
+    private static final int LOOKAHEAD_CELLS = 12;
+
+    private final PathPlanner planner;
+    private int[] goalX = new int[0];
+    private int[] goalY = new int[0];
+    private int[] lastCell = new int[0];
+    private FlowField[] fields = new FlowField[0];
+    private int navigating;
+
+    public FleetNavigator(PathPlanner planner) {
+        this.planner = planner;
+    }
+
+    /**
+     * Назначает роботу цель. Если цель видна или препятствий нет, она сразу записывается во флот.
+     *
+     * @param fleet флот роботов
+     * @param id    идентификатор робота
+     * @param x     координата X цели
+     * @param y     координата Y цели
+     */
+    public synchronized void setGoal(RobotFleet fleet, int id, int x, int y) {
+        ensureCapacity(fleet.size());
+        clearGoal(id);
+        if (!planner.hasObstacles()
+                || planner.lineOfSight(fleet.getPositionX(id), fleet.getPositionY(id), x, y)) {
+            fleet.setTarget(id, x, y);
+            return;
+        }
+        FlowField field = planner.flowField(x, y);
+        if (field == null) {
+            fleet.setTarget(id, x, y);
+            return;
+        }
+        goalX[id] = x;
+        goalY[id] = y;
+        fields[id] = field;
+        lastCell[id] = NO_GOAL;
+        navigating++;
+    }
+
+    /**
+     * Обновляет промежуточные цели роботов, которые едут в обход препятствий.
+     * Вызывается из потока симуляции перед шагом флота.
+     *
+     * @param fleet флот роботов
+     */
+    public synchronized void steer(RobotFleet fleet) {
+        if (navigating == 0) {
+            return;
+        }
+        int size = Math.min(fleet.size(), fields.length);
+        synchronized (planner) {
+            ObstacleMap map = planner.getMap();
+            for (int id = 0; id < size; id++) {
+                FlowField field = fields[id];
+                if (field == null) {
+                    continue;
+                }
+                double x = fleet.getPositionX(id);
+                double y = fleet.getPositionY(id);
+                int column = map.columnOf(x);
+                int row = map.rowOf(y);
+                int cell = map.contains(column, row) ? map.cellIndex(column, row) : NO_GOAL;
+                if (!field.isValid()) {
+                    field = planner.flowField(goalX[id], goalY[id]);
+                    fields[id] = field;
+                    lastCell[id] = NO_GOAL;
+                    if (field == null) {
+                        finish(fleet, id);
+                        continue;
+                    }
+                }
+                if (cell == lastCell[id]) {
+                    continue;
+                }
+                lastCell[id] = cell;
+                if (cell == NO_GOAL || map.lineOfSight(x, y, goalX[id], goalY[id])
+                        || field.getCost(cell) == FlowField.UNREACHABLE) {
+                    finish(fleet, id);
+                    continue;
+                }
+                int waypoint = cell;
+                int next = field.downhill(column, row);
+                for (int step = 0; step < LOOKAHEAD_CELLS && next >= 0; step++) {
+                    int nextColumn = next % map.getColumns();
+                    int nextRow = next / map.getColumns();
+                    if (!map.lineOfSight(x, y, map.centerX(nextColumn), map.centerY(nextRow))) {
+                        break;
+                    }
+                    waypoint = next;
+                    next = field.downhill(nextColumn, nextRow);
+                }
+                int columns = map.getColumns();
+                fleet.setTarget(id, (int) map.centerX(waypoint % columns), (int) map.centerY(waypoint / columns));
+            }
+        }
+    }
+
+    /**
+     * Копирует цели роботов, которые едут в обход препятствий.
+     *
+     * @return четверки: идентификатор робота, цель x, цель y, последняя ячейка
+     */
+    public synchronized int[] copyGoals() {
+        int[] goals = new int[navigating * 4];
+        int index = 0;
+        for (int id = 0; id < fields.length && index < goals.length; id++) {
+            if (fields[id] != null) {
+                goals[index++] = id;
+                goals[index++] = goalX[id];
+                goals[index++] = goalY[id];
+                goals[index++] = lastCell[id];
+            }
+        }
+        return goals;
+    }
+
+    /**
+     * Заменяет цели навигации скопированными {@link #copyGoals()}. Поля потока берутся из планировщика
+     * заново, поэтому при той же карте препятствий роботы продолжают путь так же, как до копирования.
+     *
+     * @param fleet флот роботов
+     * @param goals четверки: идентификатор робота, цель x, цель y, последняя ячейка
+     */
+    public synchronized void restoreGoals(RobotFleet fleet, int[] goals) {
+        Arrays.fill(fields, null);
+        navigating = 0;
+        ensureCapacity(fleet.size());
+        for (int index = 0; index + 3 < goals.length; index += 4) {
+            int id = goals[index];
+            if (id < 0 || id >= fleet.size()) {
+                continue;
+            }
+            FlowField field = planner.flowField(goals[index + 1], goals[index + 2]);
+            if (field == null) {
+                continue;
+            }
+            goalX[id] = goals[index + 1];
+            goalY[id] = goals[index + 2];
+            lastCell[id] = goals[index + 3];
+            fields[id] = field;
+            navigating++;
+        }
+    }
+
+    /**
+     * @return количество роботов, которые сейчас едут в обход препятствий
+     */
+    public synchronized int getNavigatingCount() {
+        return navigating;
+    }
+
+    /**
+     * Отменяет объезд препятствий для робота; цель во флоте остается прежней.
+     *
+     * @param id идентификатор робота
+     */
+    public synchronized void cancelGoal(int id) {
+        if (id < fields.length) {
+            clearGoal(id);
+        }
+    }
+
+    private void finish(RobotFleet fleet, int id) {
+        fleet.setTarget(id, goalX[id], goalY[id]);
+        clearGoal(id);
+    }
+
+    private void clearGoal(int id) {
+        if (fields[id] != null) {
+            fields[id] = null;
+            navigating--;
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (fields.length >= size) {
+            return;
+        }
+        int capacity = Math.max(size, fields.length * 2);
+        goalX = Arrays.copyOf(goalX, capacity);
+        goalY = Arrays.copyOf(goalY, capacity);
+        lastCell = Arrays.copyOf(lastCell, capacity);
+        fields = Arrays.copyOf(fields, capacity);
+    }
+}
@@ -0,0 +1,82 @@
+package model.navigation;
+
+/**
+ * Поле потока к одной цели: для каждой ячейки карты - стоимость пути до цели.
+ * Любой робот, идущий к этой цели, спускается по полю к соседу с меньшей стоимостью,
+ * поэтому поле строится один раз и используется всем флотом.
+ */
+public class FlowField {
+    static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+
+    private final ObstacleMap map;
+    private final int goalCell;
+    private final float[] cost;
+    private volatile boolean valid = true;
+
+    FlowField(ObstacleMap map, int goalCell, float[] cost) {
+        this.map = map;
+        this.goalCell = goalCell;
+        this.cost = cost;
+    }
+
+    /**
+     * Стоимость пути из ячейки до цели.
+     *
+     * @param cell индекс ячейки
+     * @return стоимость в ячейках или бесконечность, если цель недостижима
+     */
+    public float getCost(int cell) {
+        return cost[cell];
+    }
+
+    public int getGoalCell() {
+        return goalCell;
+    }
+
+    /**
+     * Поле становится недействительным, когда изменение препятствий может изменить стоимости.
+     *
+     * @return true, если поле актуально
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Находит соседнюю ячейку, ближайшую к цели. Диагональ разрешена, только если оба прилегающих
+     * соседа свободны, как и при построении поля.
+     *
+     * @param column столбец текущей ячейки
+     * @param row    строка текущей ячейки
+     * @return индекс соседней ячейки или -1, если спуск невозможен
+     */
+    public int downhill(int column, int row) {
+        int best = -1;
+        float bestCost = map.contains(column, row) ? cost[map.cellIndex(column, row)] : UNREACHABLE;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx == 0 && dy == 0) {
+                    continue;
+                }
+                int neighborColumn = column + dx;
+                int neighborRow = row + dy;
+                if (!map.contains(neighborColumn, neighborRow)) {
+                    continue;
+                }
+                if (dx != 0 && dy != 0 && (map.isBlocked(column + dx, row) || map.isBlocked(column, row + dy))) {
+                    continue;
+                }
+                int neighbor = map.cellIndex(neighborColumn, neighborRow);
+                if (cost[neighbor] < bestCost) {
+                    bestCost = cost[neighbor];
+                    best = neighbor;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,72 @@
+package model.navigation;
+
+/**
+ * Путь из точек поворота от точки старта. Последняя точка - сама цель, точка старта в путь не входит.
+ * Путь неизменяемый, поэтому один и тот же объект раздается всем роботам с одинаковым маршрутом.
+ */
+public class NavigationPath {
+    private final double startX;
+    private final double startY;
+    private final double[] waypointX;
+    private final double[] waypointY;
+    /**
+     * Закэшированный путь, копией которого с другой точкой цели является этот путь, или null.
+     */
+    private final NavigationPath source;
+    private volatile boolean valid = true;
+
+    NavigationPath(double startX, double startY, double[] waypointX, double[] waypointY) {
+        this(startX, startY, waypointX, waypointY, null);
+    }
+
+    /**
+     * @param source путь, вместе с которым становится недействительным этот путь, или null
+     */
+    NavigationPath(double startX, double startY, double[] waypointX, double[] waypointY, NavigationPath source) {
+        this.startX = startX;
+        this.startY = startY;
+        this.waypointX = waypointX;
+        this.waypointY = waypointY;
+        this.source = source;
+    }
+
+    /**
+     * @return координата X точки, из которой строился путь
+     */
+    public double getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return координата Y точки, из которой строился путь
+     */
+    public double getStartY() {
+        return startY;
+    }
+
+    public int size() {
+        return waypointX.length;
+    }
+
+    public double getX(int index) {
+        return waypointX[index];
+    }
+
+    public double getY(int index) {
+        return waypointY[index];
+    }
+
+    /**
+     * Путь становится недействительным, когда на нем появляется препятствие.
+     * Копия закэшированного пути становится недействительной вместе с ним.
+     *
+     * @return true, если путь все еще свободен
+     */
+    public boolean isValid() {
+        return valid && (source == null || source.isValid());
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+}
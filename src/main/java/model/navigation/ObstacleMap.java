@@ -0,0 +1,186 @@
+package model.navigation;
+
+import java.util.BitSet;
+
+/**
+ * Карта препятствий: прямоугольная сетка ячеек, каждая из которых свободна или занята.
+ * Все, что лежит за пределами карты, считается свободным.
+ * Класс не потокобезопасен, доступ к нему синхронизирует {@link PathPlanner}.
+ */
+public class ObstacleMap {
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final BitSet blocked;
+    private int blockedCount;
+    private long version;
+
+    /**
+     * Создает пустую карту.
+     *
+     * @param cellSize размер ячейки в пикселях
+     * @param columns  количество столбцов
+     * @param rows     количество строк
+     */
+    public ObstacleMap(double cellSize, int columns, int rows) {
+        if (!(cellSize > 0) || columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Некорректные размеры карты препятствий");
+        }
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.blocked = new BitSet(columns * rows);
+    }
+
+    /**
+     * Помечает ячейку занятой или свободной.
+     *
+     * @param column  столбец ячейки
+     * @param row     строка ячейки
+     * @param value   true - ячейка занята
+     * @return true, если состояние ячейки изменилось
+     */
+    boolean setBlocked(int column, int row, boolean value) {
+        if (!contains(column, row)) {
+            return false;
+        }
+        int cell = cellIndex(column, row);
+        if (blocked.get(cell) == value) {
+            return false;
+        }
+        blocked.set(cell, value);
+        blockedCount += value ? 1 : -1;
+        version++;
+        return true;
+    }
+
+    /**
+     * Заменяет все занятые ячейки карты.
+     *
+     * @param cells множество индексов занятых ячеек
+     */
+    void setAllBlocked(BitSet cells) {
+        blocked.clear();
+        blocked.or(cells);
+        int cellCount = columns * rows;
+        if (blocked.length() > cellCount) {
+            blocked.clear(cellCount, blocked.length());
+        }
+        blockedCount = blocked.cardinality();
+        version++;
+    }
+
+    public boolean isBlocked(int column, int row) {
+        return contains(column, row) && blocked.get(cellIndex(column, row));
+    }
+
+    public boolean isBlocked(int cell) {
+        return blocked.get(cell);
+    }
+
+    public boolean contains(int column, int row) {
+        return column >= 0 && row >= 0 && column < columns && row < rows;
+    }
+
+    public int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+
+    public int columnOf(double x) {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    public int rowOf(double y) {
+        return (int) Math.floor(y / cellSize);
+    }
+
+    /**
+     * Координата X центра столбца.
+     */
+    public double centerX(int column) {
+        return (column + 0.5) * cellSize;
+    }
+
+    /**
+     * Координата Y центра строки.
+     */
+    public double centerY(int row) {
+        return (row + 0.5) * cellSize;
+    }
+
+    /**
+     * Проверяет прямую видимость между точками: отрезок не проходит ни через одну занятую ячейку.
+     * Ячейки перебираются методом Amanatides-Woo.
+     *
+     * @return true, если отрезок свободен
+     */
+    public boolean lineOfSight(double fromX, double fromY, double toX, double toY) {
+        if (blockedCount == 0) {
+            return true;
+        }
+        int column = columnOf(fromX);
+        int row = rowOf(fromY);
+        int endColumn = columnOf(toX);
+        int endRow = rowOf(toY);
+        double dx = toX - fromX;
+        double dy = toY - fromY;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : Math.abs(cellSize / dx);
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : Math.abs(cellSize / dy);
+        double nextBoundaryX = (stepX > 0 ? column + 1 : column) * cellSize;
+        double nextBoundaryY = (stepY > 0 ? row + 1 : row) * cellSize;
+        double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY : (nextBoundaryX - fromX) / dx;
+        double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY : (nextBoundaryY - fromY) / dy;
+        int limit = Math.abs(endColumn - column) + Math.abs(endRow - row) + 1;
+        for (int i = 0; i < limit; i++) {
+            if (isBlocked(column, row)) {
+                return false;
+            }
+            if (column == endColumn && row == endRow) {
+                return true;
+            }
+            if (tMaxX < tMaxY) {
+                column += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                row += stepY;
+                tMaxY += tDeltaY;
+            }
+        }
+        return !isBlocked(endColumn, endRow);
+    }
+
+    /**
+     * Копирует занятые ячейки.
+     *
+     * @param target множество, в которое копируются индексы занятых ячеек
+     */
+    void copyBlocked(BitSet target) {
+        target.clear();
+        target.or(blocked);
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getBlockedCount() {
+        return blockedCount;
+    }
+
+    /**
+     * @return номер версии, который увеличивается при каждом изменении карты
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,558 @@
+package model.navigation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Планировщик путей по карте препятствий с кэшем.
+ * <p>
+ * Для одиночного робота путь ищется алгоритмом A* по 8-связной сетке и спрямляется
+ * по прямой видимости. Для множества роботов с общей целью строится одно поле потока
+ * (Дейкстра от цели), по которому спускаются все они. Пути и поля кэшируются по ячейкам
+ * старта и цели. При изменении препятствия сбрасываются только те записи, на которые
+ * изменение может повлиять: пути, проходящие через занятую ячейку, и поля, в которых
+ * ячейка или ее соседи достижимы.
+ * <p>
+ * Все методы синхронизированы на планировщике; для серии запросов за один тик
+ * вызывающий может сам захватить монитор планировщика.
+ */
+public class PathPlanner {
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+    private static final int MAX_CACHED_PATHS = 256;
+    private static final int MAX_CACHED_FIELDS = 16;
+
+    private final ObstacleMap map;
+    private final LinkedHashMap<Long, NavigationPath> pathCache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, NavigationPath> eldest) {
+                    if (size() > MAX_CACHED_PATHS) {
+                        eldest.getValue().invalidate();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    private final LinkedHashMap<Integer, FlowField> fieldCache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, FlowField> eldest) {
+                    if (size() > MAX_CACHED_FIELDS) {
+                        eldest.getValue().invalidate();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    /**
+     * Рабочие массивы A* и Дейкстры, переиспользуемые между запросами.
+     * Отметки поколений позволяют не очищать массивы перед каждым поиском.
+     */
+    private final float[] score;
+    private final int[] cameFrom;
+    private final int[] visitedGeneration;
+    private final int[] closedGeneration;
+    private final int[] heap;
+    private final int[] heapIndex;
+    private final float[] heapKey;
+    private int heapSize;
+    private int generation;
+
+    private long pathHits;
+    private long pathMisses;
+
+    public PathPlanner(ObstacleMap map) {
+        this.map = map;
+        int cells = map.getColumns() * map.getRows();
+        score = new float[cells];
+        cameFrom = new int[cells];
+        visitedGeneration = new int[cells];
+        closedGeneration = new int[cells];
+        heap = new int[cells];
+        heapIndex = new int[cells];
+        heapKey = new float[cells];
+    }
+
+    /**
+     * Меняет состояние ячейки, в которую попадает точка, и сбрасывает затронутые записи кэша.
+     *
+     * @param x       координата X точки
+     * @param y       координата Y точки
+     * @param blocked true - ячейка становится препятствием
+     * @return true, если карта изменилась
+     */
+    public synchronized boolean setObstacle(double x, double y, boolean blocked) {
+        int column = map.columnOf(x);
+        int row = map.rowOf(y);
+        if (!map.setBlocked(column, row, blocked)) {
+            return false;
+        }
+        invalidate(column, row, blocked);
+        return true;
+    }
+
+    /**
+     * Переключает состояние ячейки, в которую попадает точка.
+     *
+     * @param x координата X точки
+     * @param y координата Y точки
+     * @return новое состояние ячейки
+     */
+    public synchronized boolean toggleObstacle(double x, double y) {
+        boolean blocked = !map.isBlocked(map.columnOf(x), map.rowOf(y));
+        setObstacle(x, y, blocked);
+        return blocked;
+    }
+
+    /**
+     * Заменяет карту препятствий целиком, например при восстановлении контрольной точки.
+     * Все закэшированные пути и поля потока сбрасываются.
+     *
+     * @param cells множество индексов занятых ячеек
+     */
+    public synchronized void setObstacles(BitSet cells) {
+        map.setAllBlocked(cells);
+        for (NavigationPath path : pathCache.values()) {
+            path.invalidate();
+        }
+        pathCache.clear();
+        for (FlowField field : fieldCache.values()) {
+            field.invalidate();
+        }
+        fieldCache.clear();
+    }
+
+    private void invalidate(int column, int row, boolean blocked) {
+        Iterator<NavigationPath> paths = pathCache.values().iterator();
+        while (paths.hasNext()) {
+            NavigationPath path = paths.next();
+            if (!blocked || crosses(path, column, row)) {
+                path.invalidate();
+                paths.remove();
+            }
+        }
+        int cell = map.cellIndex(column, row);
+        Iterator<FlowField> fields = fieldCache.values().iterator();
+        while (fields.hasNext()) {
+            FlowField field = fields.next();
+            if (affects(field, column, row, cell, blocked)) {
+                field.invalidate();
+                fields.remove();
+            }
+        }
+    }
+
+    /**
+     * Проверяет, может ли путь из кэша проходить через ячейку, включая первый отрезок от старта.
+     * <p>
+     * Путь из кэша выдается для любой точки старта в ячейке старта, поэтому первый отрезок проверяется
+     * от центра этой ячейки, а ячейка с препятствием расширяется на половину ячейки во все стороны.
+     * Точки отрезков от разных стартов к одной точке поворота отстоят от соответствующих точек отрезка
+     * от центра не больше чем на половину ячейки по каждой оси, поэтому если препятствие задевает отрезок
+     * от какой-то точки ячейки старта, то отрезок от центра задевает расширенную ячейку.
+     * Остальные отрезки проверяются с тем же расширением.
+     */
+    private boolean crosses(NavigationPath path, int column, int row) {
+        double cellSize = map.getCellSize();
+        double margin = cellSize / 2;
+        double left = column * cellSize - margin;
+        double top = row * cellSize - margin;
+        double right = (column + 1) * cellSize + margin;
+        double bottom = (row + 1) * cellSize + margin;
+        double fromX = map.centerX(map.columnOf(path.getStartX()));
+        double fromY = map.centerY(map.rowOf(path.getStartY()));
+        for (int i = 0; i < path.size(); i++) {
+            if (segmentIntersectsBox(fromX, fromY, path.getX(i), path.getY(i), left, top, right, bottom)) {
+                return true;
+            }
+            fromX = path.getX(i);
+            fromY = path.getY(i);
+        }
+        return false;
+    }
+
+    private static boolean segmentIntersectsBox(double x1, double y1, double x2, double y2,
+                                                double left, double top, double right, double bottom) {
+        double t0 = 0;
+        double t1 = 1;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - left, right - x1, y1 - top, bottom - y1};
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false;
+                }
+                continue;
+            }
+            double t = q[i] / p[i];
+            if (p[i] < 0) {
+                t0 = Math.max(t0, t);
+            } else {
+                t1 = Math.min(t1, t);
+            }
+            if (t0 > t1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Новое препятствие меняет поле, только если ячейка была достижима.
+     * Освобожденная ячейка меняет поле, только если до кого-то из ее соседей можно дойти.
+     */
+    private boolean affects(FlowField field, int column, int row, int cell, boolean blocked) {
+        if (blocked) {
+            return field.getCost(cell) != FlowField.UNREACHABLE;
+        }
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (map.contains(column + dx, row + dy)
+                        && field.getCost(map.cellIndex(column + dx, row + dy)) != FlowField.UNREACHABLE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ищет путь между точками. Путь берется из кэша, если он уже строился для тех же ячеек
+     * и с тех пор не был затронут изменениями препятствий.
+     *
+     * @return путь или null, если цель недостижима
+     */
+    public synchronized NavigationPath findPath(double fromX, double fromY, double toX, double toY) {
+        int fromColumn = map.columnOf(fromX);
+        int fromRow = map.rowOf(fromY);
+        int toColumn = map.columnOf(toX);
+        int toRow = map.rowOf(toY);
+        if (map.lineOfSight(fromX, fromY, toX, toY)) {
+            return new NavigationPath(fromX, fromY, new double[]{toX}, new double[]{toY});
+        }
+        if (!map.contains(fromColumn, fromRow) || !map.contains(toColumn, toRow)
+                || map.isBlocked(toColumn, toRow)) {
+            return null;
+        }
+        long key = ((long) map.cellIndex(fromColumn, fromRow) << 32) | map.cellIndex(toColumn, toRow);
+        NavigationPath cached = pathCache.get(key);
+        if (cached != null) {
+            pathHits++;
+            return withEndpoints(cached, fromX, fromY, toX, toY);
+        }
+        pathMisses++;
+        NavigationPath path = aStar(fromColumn, fromRow, toColumn, toRow, fromX, fromY, toX, toY);
+        if (path != null) {
+            pathCache.put(key, path);
+        }
+        return path;
+    }
+
+    /**
+     * Кэш хранит путь для ячеек; точные точки старта и цели внутри ячеек подставляются в копию.
+     * Кэш сбрасывает только свой экземпляр, поэтому копия разделяет его действительность.
+     */
+    private static NavigationPath withEndpoints(NavigationPath path, double fromX, double fromY,
+                                                double toX, double toY) {
+        int size = path.size();
+        if (path.getStartX() == fromX && path.getStartY() == fromY
+                && path.getX(size - 1) == toX && path.getY(size - 1) == toY) {
+            return path;
+        }
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = path.getX(i);
+            ys[i] = path.getY(i);
+        }
+        xs[size - 1] = toX;
+        ys[size - 1] = toY;
+        return new NavigationPath(fromX, fromY, xs, ys, path);
+    }
+
+    private NavigationPath aStar(int fromColumn, int fromRow, int toColumn, int toRow,
+                                 double fromX, double fromY, double toX, double toY) {
+        int start = map.cellIndex(fromColumn, fromRow);
+        int goal = map.cellIndex(toColumn, toRow);
+        int columns = map.getColumns();
+        nextGeneration();
+        score[start] = 0;
+        cameFrom[start] = -1;
+        visitedGeneration[start] = generation;
+        heapPush(start, heuristic(fromColumn, fromRow, toColumn, toRow));
+        while (heapSize > 0) {
+            int current = heapPop();
+            if (current == goal) {
+                return buildPath(goal, fromX, fromY, toX, toY);
+            }
+            closedGeneration[current] = generation;
+            int column = current % columns;
+            int row = current / columns;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int neighbor = passableNeighbor(column, row, dx, dy);
+                    if (neighbor < 0 || closedGeneration[neighbor] == generation) {
+                        continue;
+                    }
+                    float tentative = score[current] + (dx != 0 && dy != 0 ? DIAGONAL_COST : 1);
+                    if (visitedGeneration[neighbor] == generation && tentative >= score[neighbor]) {
+                        continue;
+                    }
+                    score[neighbor] = tentative;
+                    cameFrom[neighbor] = current;
+                    float key = tentative + heuristic(column + dx, row + dy, toColumn, toRow);
+                    if (visitedGeneration[neighbor] == generation && heapIndex[neighbor] >= 0) {
+                        heapDecrease(neighbor, key);
+                    } else {
+                        visitedGeneration[neighbor] = generation;
+                        heapPush(neighbor, key);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Собирает путь по ссылкам на предков и спрямляет его: точка поворота остается,
+     * только если без нее пропадает прямая видимость.
+     */
+    private NavigationPath buildPath(int goal, double fromX, double fromY, double toX, double toY) {
+        int columns = map.getColumns();
+        int length = 0;
+        for (int cell = goal; cell >= 0; cell = cameFrom[cell]) {
+            length++;
+        }
+        int[] cells = new int[length];
+        int index = length;
+        for (int cell = goal; cell >= 0; cell = cameFrom[cell]) {
+            cells[--index] = cell;
+        }
+        double[] xs = new double[length];
+        double[] ys = new double[length];
+        int count = 0;
+        double anchorX = fromX;
+        double anchorY = fromY;
+        for (int i = 1; i < length; i++) {
+            double nextX = i == length - 1 ? toX : map.centerX(cells[i] % columns);
+            double nextY = i == length - 1 ? toY : map.centerY(cells[i] / columns);
+            if (!map.lineOfSight(anchorX, anchorY, nextX, nextY)) {
+                xs[count] = map.centerX(cells[i - 1] % columns);
+                ys[count] = map.centerY(cells[i - 1] / columns);
+                anchorX = xs[count];
+                anchorY = ys[count];
+                count++;
+            }
+        }
+        xs[count] = toX;
+        ys[count] = toY;
+        count++;
+        return new NavigationPath(fromX, fromY, Arrays.copyOf(xs, count), Arrays.copyOf(ys, count));
+    }
+
+    /**
+     * Возвращает поле потока к ячейке с точкой цели, строя его при первом обращении.
+     *
+     * @return поле или null, если цель вне карты или занята
+     */
+    public synchronized FlowField flowField(double toX, double toY) {
+        int column = map.columnOf(toX);
+        int row = map.rowOf(toY);
+        if (!map.contains(column, row) || map.isBlocked(column, row)) {
+            return null;
+        }
+        int goal = map.cellIndex(column, row);
+        FlowField field = fieldCache.get(goal);
+        if (field == null) {
+            field = dijkstra(goal);
+            fieldCache.put(goal, field);
+        }
+        return field;
+    }
+
+    private FlowField dijkstra(int goal) {
+        int cells = map.getColumns() * map.getRows();
+        int columns = map.getColumns();
+        float[] cost = new float[cells];
+        Arrays.fill(cost, FlowField.UNREACHABLE);
+        nextGeneration();
+        cost[goal] = 0;
+        visitedGeneration[goal] = generation;
+        heapPush(goal, 0);
+        while (heapSize > 0) {
+            int current = heapPop();
+            int column = current % columns;
+            int row = current / columns;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int neighbor = passableNeighbor(column, row, dx, dy);
+                    if (neighbor < 0) {
+                        continue;
+                    }
+                    float tentative = cost[current] + (dx != 0 && dy != 0 ? DIAGONAL_COST : 1);
+                    if (tentative >= cost[neighbor]) {
+                        continue;
+                    }
+                    cost[neighbor] = tentative;
+                    if (visitedGeneration[neighbor] == generation && heapIndex[neighbor] >= 0) {
+                        heapDecrease(neighbor, tentative);
+                    } else {
+                        visitedGeneration[neighbor] = generation;
+                        heapPush(neighbor, tentative);
+                    }
+                }
+            }
+        }
+        return new FlowField(map, goal, cost);
+    }
+
+    /**
+     * Соседняя ячейка, в которую можно перейти: свободна и, для диагонали, не срезает угол препятствия.
+     *
+     * @return индекс ячейки или -1
+     */
+    private int passableNeighbor(int column, int row, int dx, int dy) {
+        if (dx == 0 && dy == 0) {
+            return -1;
+        }
+        int neighborColumn = column + dx;
+        int neighborRow = row + dy;
+        if (!map.contains(neighborColumn, neighborRow) || map.isBlocked(neighborColumn, neighborRow)) {
+            return -1;
+        }
+        if (dx != 0 && dy != 0 && (map.isBlocked(column + dx, row) || map.isBlocked(column, row + dy))) {
+            return -1;
+        }
+        return map.cellIndex(neighborColumn, neighborRow);
+    }
+
+    private static float heuristic(int column, int row, int toColumn, int toRow) {
+        int dx = Math.abs(toColumn - column);
+        int dy = Math.abs(toRow - row);
+        return Math.max(dx, dy) + (DIAGONAL_COST - 1) * Math.min(dx, dy);
+    }
+
+    /**
+     * Проверяет прямую видимость между точками.
+     */
+    public synchronized boolean lineOfSight(double fromX, double fromY, double toX, double toY) {
+        return map.lineOfSight(fromX, fromY, toX, toY);
+    }
+
+    /**
+     * Копирует занятые ячейки карты для отрисовки.
+     *
+     * @param target множество индексов занятых ячеек
+     * @return версия карты, соответствующая копии
+     */
+    public synchronized long copyObstacles(BitSet target) {
+        map.copyBlocked(target);
+        return map.getVersion();
+    }
+
+    public synchronized long getObstacleVersion() {
+        return map.getVersion();
+    }
+
+    public synchronized boolean hasObstacles() {
+        return map.getBlockedCount() > 0;
+    }
+
+    public ObstacleMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return количество запросов пути, обслуженных из кэша
+     */
+    public synchronized long getPathHits() {
+        return pathHits;
+    }
+
+    /**
+     * @return количество запросов пути, для которых запускался A*
+     */
+    public synchronized long getPathMisses() {
+        return pathMisses;
+    }
+
+    private void nextGeneration() {
+        generation++;
+        if (generation == 0) {
+            Arrays.fill(visitedGeneration, 0);
+            Arrays.fill(closedGeneration, 0);
+            generation = 1;
+        }
+        heapSize = 0;
+    }
+
+    private void heapPush(int cell, float key) {
+        int index = heapSize++;
+        heap[index] = cell;
+        heapKey[cell] = key;
+        heapIndex[cell] = index;
+        siftUp(index);
+    }
+
+    private int heapPop() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void heapDecrease(int cell, float key) {
+        heapKey[cell] = key;
+        siftUp(heapIndex[cell]);
+    }
+
+    private void siftUp(int index) {
+        int cell = heap[index];
+        float key = heapKey[cell];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentCell = heap[parent];
+            if (heapKey[parentCell] <= key) {
+                break;
+            }
+            heap[index] = parentCell;
+            heapIndex[parentCell] = index;
+            index = parent;
+        }
+        heap[index] = cell;
+        heapIndex[cell] = index;
+    }
+
+    private void siftDown(int index) {
+        int cell = heap[index];
+        float key = heapKey[cell];
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < heapSize && heapKey[heap[right]] < heapKey[heap[child]]) {
+                child = right;
+            }
+            int childCell = heap[child];
+            if (key <= heapKey[childCell]) {
+                break;
+            }
+            heap[index] = childCell;
+            heapIndex[childCell] = index;
+            index = child;
+        }
+        heap[index] = cell;
+        heapIndex[cell] = index;
+    }
+}
@@ -21,14 +21,14 @@ public class WindowStateManager {
      */
     private final File configLocation;
     /**
-     * Ссылка на контейнер окон
+     * Ссылка на контейнер окон: главное окно приложения или любой другой контейнер с панелью содержимого
      */
-    private final JFrame parentFrame;
+    private final RootPaneContainer parentFrame;
 
     /**
      * Устанавливает путь по умолчанию для сохранения конфига
      */
-    public WindowStateManager(JFrame parentFrame) {
+    public WindowStateManager(RootPaneContainer parentFrame) {
         this.parentFrame = parentFrame;
         configLocation = new File(
                 System.getProperty("user.home") +
@@ -40,7 +40,7 @@ public class WindowStateManager {
     /**
      * Устанавливает кастомный путь для сохранения конфига
      */
-    public WindowStateManager(File configLocation, JFrame parentFrame) {
+    public WindowStateManager(File configLocation, RootPaneContainer parentFrame) {
         this.configLocation = configLocation;
         this.parentFrame = parentFrame;
     }
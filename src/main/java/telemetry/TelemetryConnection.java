@@ -0,0 +1,180 @@
+package telemetry;
+
+import model.WorldSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Состояние одного клиента телеметрии. Используется только потоком сервера.
+ * <p>
+ * Клиент хранит позы роботов в том виде, в каком они ушли в последнем отправленном кадре,
+ * и следующий кадр содержит только отличия от них. Исходящий буфер вмещает ровно один кадр:
+ * если к моменту следующего кадра предыдущий еще не ушел в сокет, новый кадр отбрасывается,
+ * а его изменения попадут в первый кадр после того, как клиент догонит.
+ */
+final class TelemetryConnection {
+    private static final int INPUT_CAPACITY = 256;
+
+    final SocketChannel channel;
+    private final ByteBuffer mInput = ByteBuffer.allocate(INPUT_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer mOutput = ByteBuffer.allocate(TelemetryProtocol.FRAME_HEADER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN).flip();
+
+    private float[] mSentX = new float[0];
+    private float[] mSentY = new float[0];
+    private float[] mSentDirection = new float[0];
+    private int mSentSize;
+    private boolean mKeyframeSent;
+
+    private long mFrameIntervalNanos;
+    private long mNextFrameNanos;
+    /**
+     * Снимок сервера новее последнего кадра клиента.
+     */
+    private boolean mPending;
+    private long mDroppedFrames;
+
+    TelemetryConnection(SocketChannel channel, double rate) {
+        this.channel = channel;
+        setRate(rate);
+    }
+
+    void setRate(double rate) {
+        mFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    void markPending() {
+        mPending = true;
+    }
+
+    /**
+     * @return момент, когда клиенту можно отправить следующий кадр, или Long.MAX_VALUE, если отправлять нечего
+     */
+    long nextFrameNanos() {
+        return mPending ? mNextFrameNanos : Long.MAX_VALUE;
+    }
+
+    long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * Кодирует снимок в кадр, если клиенту пора его получить.
+     *
+     * @param snapshot снимок сервера
+     * @param now      текущее время в наносекундах
+     * @return true, если кадр закодирован и его нужно отправить
+     */
+    boolean encodeIfDue(WorldSnapshot snapshot, long now) {
+        if (!mPending || now < mNextFrameNanos) {
+            return false;
+        }
+        mNextFrameNanos = now + mFrameIntervalNanos;
+        if (mOutput.hasRemaining()) {
+            mDroppedFrames++;
+            return false;
+        }
+        mPending = false;
+        encode(snapshot);
+        return true;
+    }
+
+    private void encode(WorldSnapshot snapshot) {
+        int size = snapshot.getFleetSize();
+        if (mSentX.length < size) {
+            int capacity = Math.max(size, mSentX.length * 2);
+            mSentX = Arrays.copyOf(mSentX, capacity);
+            mSentY = Arrays.copyOf(mSentY, capacity);
+            mSentDirection = Arrays.copyOf(mSentDirection, capacity);
+        }
+        int frameCapacity = TelemetryProtocol.FRAME_HEADER_SIZE + size * TelemetryProtocol.POSE_SIZE;
+        if (mOutput.capacity() < frameCapacity) {
+            mOutput = ByteBuffer.allocate(frameCapacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer out = mOutput.clear();
+        out.position(TelemetryProtocol.FRAME_HEADER_SIZE);
+        int known = Math.min(mSentSize, size);
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            float x = (float) snapshot.getFleetPositionX(id);
+            float y = (float) snapshot.getFleetPositionY(id);
+            float direction = (float) snapshot.getFleetDirection(id);
+            if (id < known && Float.floatToIntBits(x) == Float.floatToIntBits(mSentX[id])
+                    && Float.floatToIntBits(y) == Float.floatToIntBits(mSentY[id])
+                    && Float.floatToIntBits(direction) == Float.floatToIntBits(mSentDirection[id])) {
+                continue;
+            }
+            mSentX[id] = x;
+            mSentY[id] = y;
+            mSentDirection[id] = direction;
+            out.putInt(id).putFloat(x).putFloat(y).putFloat(direction);
+            count++;
+        }
+        mSentSize = size;
+        int end = out.position();
+
+        out.position(0);
+        out.putInt(end - Integer.BYTES);
+        out.put(mKeyframeSent ? TelemetryProtocol.FRAME_DELTA : TelemetryProtocol.FRAME_KEY);
+        out.putLong(snapshot.getTick());
+        out.putFloat((float) snapshot.getRobotPositionX());
+        out.putFloat((float) snapshot.getRobotPositionY());
+        out.putFloat((float) snapshot.getRobotDirection());
+        out.putInt(snapshot.getTargetPositionX());
+        out.putInt(snapshot.getTargetPositionY());
+        out.putInt(size);
+        out.putInt(count);
+        out.position(0).limit(end);
+        mKeyframeSent = true;
+    }
+
+    /**
+     * Пишет в сокет сколько получится без блокировки.
+     *
+     * @return true, если кадр ушел целиком
+     * @throws IOException если соединение разорвано
+     */
+    boolean flush() throws IOException {
+        channel.write(mOutput);
+        return !mOutput.hasRemaining();
+    }
+
+    /**
+     * Читает из сокета доступные команды клиента.
+     *
+     * @param handler обработчик команд
+     * @return false, если клиент закрыл соединение или прислал некорректную команду
+     * @throws IOException если соединение разорвано
+     */
+    boolean read(TelemetryProtocol.CommandHandler handler) throws IOException {
+        if (channel.read(mInput) < 0) {
+            return false;
+        }
+        mInput.flip();
+        try {
+            while (mInput.remaining() >= Integer.BYTES) {
+                int length = mInput.getInt(mInput.position());
+                if (length < 1 || length > INPUT_CAPACITY - Integer.BYTES) {
+                    return false;
+                }
+                if (mInput.remaining() < Integer.BYTES + length) {
+                    break;
+                }
+                int end = mInput.position() + Integer.BYTES + length;
+                mInput.position(mInput.position() + Integer.BYTES);
+                if (!TelemetryProtocol.dispatch(mInput, length, this, handler)) {
+                    return false;
+                }
+                mInput.position(end);
+            }
+            return true;
+        } finally {
+            mInput.compact();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package telemetry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Двоичный протокол телеметрии. Все числа в порядке little-endian, каждое сообщение
+ * начинается с int длины оставшейся части сообщения, затем байт типа.
+ * <p>
+ * Кадры сервера ({@link #FRAME_KEY}, {@link #FRAME_DELTA}), заголовок {@link #FRAME_HEADER_SIZE} байт:
+ * длина, тип, номер тика (long), поза основного робота (3 float), его цель (2 int),
+ * размер флота (int) и количество поз в кадре (int). Затем позы по {@link #POSE_SIZE} байт:
+ * идентификатор (int), x, y, направление (float). Первый кадр клиента - ключевой и содержит
+ * весь флот, остальные - только роботов, чья поза изменилась с прошлого отправленного кадра
+ * или которые появились во флоте; если размер флота уменьшился, лишние роботы отбрасываются.
+ * <p>
+ * Команды клиента:
+ * <ul>
+ *     <li>{@link #COMMAND_TARGET}: новая цель основного робота, x и y (int);</li>
+ *     <li>{@link #COMMAND_FLEET_TARGET}: новая цель робота флота, идентификатор, x и y (int);</li>
+ *     <li>{@link #COMMAND_RATE}: максимальная частота кадров клиента в герцах (float).</li>
+ * </ul>
+ * Команда неизвестного типа или неверной длины закрывает соединение.
+ */
+public final class TelemetryProtocol {
+    public static final byte FRAME_KEY = 1;
+    public static final byte FRAME_DELTA = 2;
+    public static final int FRAME_HEADER_SIZE = 41;
+    public static final int POSE_SIZE = 16;
+
+    public static final byte COMMAND_TARGET = 1;
+    public static final byte COMMAND_FLEET_TARGET = 2;
+    public static final byte COMMAND_RATE = 3;
+
+    private TelemetryProtocol() {
+    }
+
+    /**
+     * Получатель команд клиентов.
+     */
+    interface CommandHandler {
+        void setTarget(int x, int y);
+
+        void setFleetTarget(int id, int x, int y);
+
+        void setRate(TelemetryConnection connection, float rate);
+    }
+
+    /**
+     * Разбирает одну команду; позиция буфера стоит на байте типа.
+     *
+     * @param input      буфер с командой
+     * @param length     длина команды вместе с байтом типа
+     * @param connection соединение, от которого пришла команда
+     * @param handler    получатель команд
+     * @return false, если команда некорректна
+     */
+    static boolean dispatch(ByteBuffer input, int length, TelemetryConnection connection, CommandHandler handler) {
+        byte type = input.get();
+        if (type == COMMAND_TARGET && length == 1 + 2 * Integer.BYTES) {
+            handler.setTarget(input.getInt(), input.getInt());
+        } else if (type == COMMAND_FLEET_TARGET && length == 1 + 3 * Integer.BYTES) {
+            handler.setFleetTarget(input.getInt(), input.getInt(), input.getInt());
+        } else if (type == COMMAND_RATE && length == 1 + Float.BYTES) {
+            handler.setRate(connection, input.getFloat());
+        } else {
+            return false;
+        }
+        return true;
+    }
+}
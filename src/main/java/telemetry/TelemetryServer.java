@@ -0,0 +1,309 @@
+package telemetry;
+
+import log.Logger;
+import model.GameModel;
+import model.ModelUpdateListener;
+import model.WorldSnapshot;
+
+import java.awt.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервер телеметрии на петлевом интерфейсе: передает снимки мира внешним инструментам
+ * и принимает от них команды целей. Формат сообщений описан в {@link TelemetryProtocol}.
+ * <p>
+ * Весь сетевой ввод-вывод идет в одном потоке на селекторе NIO. Поток симуляции о клиентах
+ * не знает: сервер подписывается на объединенные уведомления модели, пока подключен хотя бы
+ * один клиент, и сам копирует опубликованный снимок, поэтому тик платит только за публикацию
+ * снимка не чаще {@link #MAX_RATE} раз в секунду, сколько бы клиентов ни было. Команды клиентов
+ * попадают в очередь команд модели через {@link GameModel#submit}.
+ * <p>
+ * Каждый клиент получает кадры не чаще своей частоты; кадр, который не успел уйти в сокет
+ * к моменту следующего, отбрасывается, поэтому память на клиента ограничена одним кадром.
+ */
+public class TelemetryServer implements AutoCloseable {
+    /**
+     * Частота кадров нового клиента в герцах.
+     */
+    public static final double DEFAULT_RATE = 20;
+    /**
+     * Наибольшая частота кадров, которую может запросить клиент.
+     */
+    public static final double MAX_RATE = 60;
+
+    private final GameModel mModel;
+    private final Selector mSelector;
+    private final ServerSocketChannel mServer;
+    private final Thread mThread;
+    private final ArrayList<TelemetryConnection> mConnections = new ArrayList<>();
+    private final WorldSnapshot mSnapshot = new WorldSnapshot();
+    private final ModelUpdateListener mListener = version -> onModelUpdated();
+    private final TelemetryProtocol.CommandHandler mCommands = new Commands();
+
+    private volatile boolean mUpdated;
+    private volatile boolean mRunning = true;
+    private volatile int mClientCount;
+    private long mDroppedFramesOfClosed;
+    private volatile long mSentFrames;
+
+    /**
+     * Открывает сервер на петлевом интерфейсе и запускает его поток.
+     *
+     * @param model модель, снимки которой передаются клиентам
+     * @param port  порт; 0 - любой свободный, см. {@link #getPort()}
+     * @throws IOException если порт не удалось открыть
+     */
+    public TelemetryServer(GameModel model, int port) throws IOException {
+        mModel = model;
+        mSelector = Selector.open();
+        mServer = ServerSocketChannel.open();
+        try {
+            mServer.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            mServer.configureBlocking(false);
+            mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            mServer.close();
+            mSelector.close();
+            throw e;
+        }
+        mThread = new Thread(this::run, "telemetry server");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * @return порт, на котором сервер принимает подключения
+     */
+    public int getPort() {
+        return mServer.socket().getLocalPort();
+    }
+
+    public int getClientCount() {
+        return mClientCount;
+    }
+
+    /**
+     * @return количество кадров, отправленных всем клиентам
+     */
+    public long getSentFrames() {
+        return mSentFrames;
+    }
+
+    /**
+     * @return количество кадров, отброшенных из-за медленных клиентов
+     */
+    public synchronized long getDroppedFrames() {
+        long dropped = mDroppedFramesOfClosed;
+        for (TelemetryConnection connection : mConnections) {
+            dropped += connection.getDroppedFrames();
+        }
+        return dropped;
+    }
+
+    private void onModelUpdated() {
+        mUpdated = true;
+        mSelector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (mRunning) {
+                long now = System.nanoTime();
+                long next = Long.MAX_VALUE;
+                synchronized (this) {
+                    for (TelemetryConnection connection : mConnections) {
+                        next = Math.min(next, connection.nextFrameNanos());
+                    }
+                }
+                if (next == Long.MAX_VALUE) {
+                    mSelector.select();
+                } else if (next > now) {
+                    mSelector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - now)));
+                } else {
+                    mSelector.selectNow();
+                }
+                handleSelected();
+                sendFrames();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (mRunning) {
+                Logger.error("Сервер телеметрии остановлен: " + e.getMessage());
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handleSelected() throws IOException {
+        Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            TelemetryConnection connection = (TelemetryConnection) key.attachment();
+            try {
+                if (key.isReadable() && !connection.read(mCommands)) {
+                    disconnect(key);
+                    continue;
+                }
+                if (key.isWritable() && connection.flush()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } catch (IOException e) {
+                disconnect(key);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = mServer.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        TelemetryConnection connection = new TelemetryConnection(channel, DEFAULT_RATE);
+        if (mSnapshot.getVersion() != 0) {
+            connection.markPending();
+        }
+        channel.register(mSelector, SelectionKey.OP_READ, connection);
+        synchronized (this) {
+            mConnections.add(connection);
+            mClientCount = mConnections.size();
+        }
+        if (mClientCount == 1) {
+            mModel.addUpdateListener(mListener, MAX_RATE, Runnable::run);
+        }
+        mUpdated = true;
+    }
+
+    private void disconnect(SelectionKey key) {
+        TelemetryConnection connection = (TelemetryConnection) key.attachment();
+        key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // соединение уже разорвано
+        }
+        synchronized (this) {
+            mConnections.remove(connection);
+            mClientCount = mConnections.size();
+            mDroppedFramesOfClosed += connection.getDroppedFrames();
+        }
+        if (mClientCount == 0) {
+            mModel.removeUpdateListener(mListener);
+        }
+    }
+
+    /**
+     * Копирует свежий снимок, если модель изменилась, и отправляет кадры клиентам, которым пора.
+     * Чтение снимка заодно просит модель опубликовать следующий, поэтому кадры отстают
+     * от модели не больше чем на одно уведомление.
+     */
+    private void sendFrames() {
+        if (mConnections.isEmpty()) {
+            return;
+        }
+        if (mUpdated) {
+            mUpdated = false;
+            long version = mSnapshot.getVersion();
+            mModel.readSnapshot(mSnapshot);
+            if (mSnapshot.getVersion() != version) {
+                for (TelemetryConnection connection : mConnections) {
+                    connection.markPending();
+                }
+            }
+        }
+        long now = System.nanoTime();
+        for (SelectionKey key : mSelector.keys()) {
+            if (!(key.attachment() instanceof TelemetryConnection connection) || !key.isValid()) {
+                continue;
+            }
+            if (!connection.encodeIfDue(mSnapshot, now)) {
+                continue;
+            }
+            mSentFrames++;
+            try {
+                if (!connection.flush()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                disconnect(key);
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : mSelector.keys()) {
+            if (key.attachment() instanceof TelemetryConnection) {
+                disconnect(key);
+            }
+        }
+        try {
+            mServer.close();
+            mSelector.close();
+        } catch (IOException e) {
+            Logger.error("Не удалось закрыть сервер телеметрии: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает сервер и закрывает все соединения.
+     */
+    @Override
+    public void close() {
+        mRunning = false;
+        mSelector.wakeup();
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Команды клиентов: цели уходят в очередь команд модели, частота меняется сразу.
+     */
+    private class Commands implements TelemetryProtocol.CommandHandler {
+        @Override
+        public void setTarget(int x, int y) {
+            submit(model -> model.setTargetPosition(new Point(x, y)));
+        }
+
+        @Override
+        public void setFleetTarget(int id, int x, int y) {
+            submit(model -> {
+                if (id >= 0 && id < model.getFleet().size()) {
+                    model.setFleetTarget(id, x, y);
+                }
+            });
+        }
+
+        @Override
+        public void setRate(TelemetryConnection connection, float rate) {
+            connection.setRate(rate > 0 ? Math.min(rate, MAX_RATE) : DEFAULT_RATE);
+        }
+
+        private void submit(model.ModelCommand command) {
+            if (!mModel.submit(command)) {
+                Logger.error("Очередь команд модели заполнена, команда телеметрии отброшена");
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет оценки ошибки {@link FastMathKernel} из его описания относительно {@link StrictMathKernel}.
+ */
+class FastMathKernelTest {
+    private static final int SAMPLES = 1_000_000;
+
+    private final MathKernel fast = new FastMathKernel();
+    private final MathKernel strict = new StrictMathKernel();
+
+    @Test
+    void sinAndCosWithinBoundOnPrincipalRange() {
+        double maxError = 0;
+        for (int i = 0; i <= SAMPLES; i++) {
+            double angle = -2 * Math.PI + 6 * Math.PI * i / SAMPLES;
+            maxError = Math.max(maxError, Math.abs(fast.sin(angle) - strict.sin(angle)));
+            maxError = Math.max(maxError, Math.abs(fast.cos(angle) - strict.cos(angle)));
+        }
+        assertTrue(maxError <= 1.2e-15, "ошибка sin/cos " + maxError);
+    }
+
+    @Test
+    void sinAndCosWithinBoundUpToThousand() {
+        Random random = new Random(1);
+        double maxError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double angle = (random.nextDouble() * 2 - 1) * 1e3;
+            maxError = Math.max(maxError, Math.abs(fast.sin(angle) - strict.sin(angle)));
+            maxError = Math.max(maxError, Math.abs(fast.cos(angle) - strict.cos(angle)));
+        }
+        assertTrue(maxError <= 1e-13, "ошибка sin/cos " + maxError);
+    }
+
+    @Test
+    void atan2WithinBound() {
+        double maxError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double angle = 2 * Math.PI * i / SAMPLES;
+            double radius = 1 + i % 1000;
+            double y = radius * Math.sin(angle);
+            double x = radius * Math.cos(angle);
+            maxError = Math.max(maxError, Math.abs(fast.atan2(y, x) - strict.atan2(y, x)));
+        }
+        double[] edges = {0.0, -0.0, 1, -1, 1e-300, -1e-300, 1e300, -1e300};
+        for (double y : edges) {
+            for (double x : edges) {
+                maxError = Math.max(maxError, Math.abs(fast.atan2(y, x) - strict.atan2(y, x)));
+            }
+        }
+        assertTrue(maxError <= 1.4e-8, "ошибка atan2 " + maxError);
+    }
+
+    @Test
+    void normalizeMatchesStrictOnPrincipalRange() {
+        for (int i = 0; i <= SAMPLES; i++) {
+            double angle = -2 * Math.PI + 6 * Math.PI * i / SAMPLES;
+            assertEquals(strict.normalizeRadians(angle), fast.normalizeRadians(angle), 0, "угол " + angle);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнивает режим аналитических траекторий {@link GameModel#setAnalytic} с пошаговой моделью.
+ */
+class GameModelAnalyticTest {
+    private static final int ROBOTS = 200;
+    private static final int TICKS = 20000;
+    private static final double ARRIVED = RobotKinematics.ARRIVAL_DISTANCE + 0.1;
+
+    private static GameModel model(boolean analytic) {
+        GameModel model = new GameModel(new RobotFleet(16));
+        Random random = new Random(1);
+        for (int i = 0; i < ROBOTS; i++) {
+            model.getFleet().addRobot(random.nextDouble() * 800, random.nextDouble() * 800,
+                    random.nextDouble() * 2 * Math.PI, random.nextInt(800), random.nextInt(800));
+        }
+        model.setAnalytic(analytic);
+        model.setTargetPosition(new Point(500, 300));
+        return model;
+    }
+
+    private static WorldSnapshot run(GameModel model) {
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (tick == TICKS / 4) {
+                model.setFleetTarget(3, 100, 100);
+            }
+            model.update(GameModel.DEFAULT_DURATION);
+        }
+        WorldSnapshot snapshot = new WorldSnapshot();
+        // первое чтение просит модель опубликовать снимок на следующем тике
+        model.readSnapshot(snapshot);
+        model.update(GameModel.DEFAULT_DURATION);
+        return model.readSnapshot(snapshot);
+    }
+
+    private static double distance(double x, double y, int targetX, int targetY) {
+        return Math.hypot(x - targetX, y - targetY);
+    }
+
+    @Test
+    void robotsArriveWhereSteppedRobotsArrive() {
+        GameModel stepped = model(false);
+        GameModel analytic = model(true);
+        WorldSnapshot expected = run(stepped);
+        WorldSnapshot actual = run(analytic);
+
+        assertEquals(expected.getTick(), actual.getTick());
+        assertTrue(distance(actual.getRobotPositionX(), actual.getRobotPositionY(), 500, 300) < ARRIVED);
+        int arrived = 0;
+        RobotFleet fleet = analytic.getFleet();
+        for (int id = 0; id < ROBOTS; id++) {
+            int targetX = fleet.getTargetX(id);
+            int targetY = fleet.getTargetY(id);
+            if (distance(expected.getFleetPositionX(id), expected.getFleetPositionY(id), targetX, targetY) < ARRIVED) {
+                arrived++;
+                assertTrue(distance(actual.getFleetPositionX(id), actual.getFleetPositionY(id), targetX, targetY)
+                        < ARRIVED, "робот " + id);
+            }
+        }
+        assertTrue(arrived > ROBOTS / 2, "прибыло роботов: " + arrived);
+        assertEquals(100, fleet.getTargetX(3));
+        assertEquals(100, fleet.getTargetY(3));
+    }
+
+    @Test
+    void switchingModesKeepsPoses() {
+        GameModel model = model(false);
+        for (int tick = 0; tick < 100; tick++) {
+            model.update(GameModel.DEFAULT_DURATION);
+        }
+        RobotFleet fleet = model.getFleet();
+        double x = fleet.getPositionX(7);
+        double y = fleet.getPositionY(7);
+        double direction = fleet.getDirection(7);
+        model.setAnalytic(true);
+        model.setAnalytic(false);
+        assertEquals(x, fleet.getPositionX(7), 1e-9);
+        assertEquals(y, fleet.getPositionY(7), 1e-9);
+        assertEquals(direction, fleet.getDirection(7), 1e-9);
+    }
+}
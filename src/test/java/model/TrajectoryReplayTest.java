@@ -0,0 +1,187 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Записывает тики в {@link TrajectoryRecorder} и проверяет, что {@link TrajectoryReplay} при переходе
+ * к любому тику в любом порядке восстанавливает ровно записанные позы флота, основного робота и цели.
+ */
+class TrajectoryReplayTest {
+    private static final int KEYFRAME_INTERVAL = 16;
+    private static final int TICKS = 200;
+    private static final double DURATION = 10;
+    private static final int FIELD = 400;
+    private static final long FIRST_TICK = 1000;
+
+    @TempDir
+    Path mDirectory;
+
+    /**
+     * Записанный тик в той точности, в которой его хранит файл.
+     */
+    private static final class Frame {
+        final float robotX;
+        final float robotY;
+        final float robotDirection;
+        final int targetX;
+        final int targetY;
+        final float[] x;
+        final float[] y;
+        final float[] direction;
+
+        Frame(RobotFleet robot, RobotFleet fleet) {
+            robotX = (float) robot.getPositionX(0);
+            robotY = (float) robot.getPositionY(0);
+            robotDirection = (float) robot.getDirection(0);
+            targetX = robot.getTargetX(0);
+            targetY = robot.getTargetY(0);
+            int size = fleet.size();
+            x = new float[size];
+            y = new float[size];
+            direction = new float[size];
+            for (int id = 0; id < size; id++) {
+                x[id] = (float) fleet.getPositionX(id);
+                y[id] = (float) fleet.getPositionY(id);
+                direction[id] = (float) fleet.getDirection(id);
+            }
+        }
+    }
+
+    /**
+     * Записывает тики, в которых флот растет, сжимается, стоит на месте и получает новые цели.
+     */
+    private List<Frame> record(Path path) throws IOException {
+        Random random = new Random(3);
+        RobotFleet robot = new RobotFleet(1);
+        robot.addRobot(100, 100, 0, 300, 200);
+        RobotFleet fleet = new RobotFleet(16);
+        for (int i = 0; i < 30; i++) {
+            addRandomRobot(fleet, random);
+        }
+        List<Frame> frames = new ArrayList<>();
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(path, KEYFRAME_INTERVAL)) {
+            for (int tick = 0; tick < TICKS; tick++) {
+                if (tick == 40) {
+                    for (int i = 0; i < 10; i++) {
+                        addRandomRobot(fleet, random);
+                    }
+                }
+                if (tick == 70) {
+                    robot.setTarget(0, 50, 350);
+                    fleet.setTarget(5, 10, 10);
+                }
+                if (tick == 100) {
+                    fleet.clear();
+                }
+                if (tick == 130) {
+                    for (int i = 0; i < 20; i++) {
+                        addRandomRobot(fleet, random);
+                    }
+                }
+                robot.step(DURATION);
+                fleet.step(DURATION);
+                recorder.record(FIRST_TICK + tick, robot.getPositionX(0), robot.getPositionY(0),
+                        robot.getDirection(0), robot.getTargetX(0), robot.getTargetY(0), fleet);
+                frames.add(new Frame(robot, fleet));
+            }
+        }
+        return frames;
+    }
+
+    private static void addRandomRobot(RobotFleet fleet, Random random) {
+        fleet.addRobot(random.nextDouble() * FIELD, random.nextDouble() * FIELD,
+                random.nextDouble() * 2 * Math.PI, random.nextInt(FIELD), random.nextInt(FIELD));
+    }
+
+    private static void assertFrame(Frame expected, long tick, WorldSnapshot actual) {
+        assertEquals(tick, actual.getTick());
+        assertEquals(expected.robotX, actual.getRobotPositionX(), "робот X, тик " + tick);
+        assertEquals(expected.robotY, actual.getRobotPositionY(), "робот Y, тик " + tick);
+        assertEquals(expected.robotDirection, actual.getRobotDirection(), "направление робота, тик " + tick);
+        assertEquals(expected.targetX, actual.getTargetPositionX(), "цель X, тик " + tick);
+        assertEquals(expected.targetY, actual.getTargetPositionY(), "цель Y, тик " + tick);
+        assertEquals(expected.x.length, actual.getFleetSize(), "размер флота, тик " + tick);
+        for (int id = 0; id < expected.x.length; id++) {
+            assertEquals(expected.x[id], actual.getFleetPositionX(id), "робот " + id + " X, тик " + tick);
+            assertEquals(expected.y[id], actual.getFleetPositionY(id), "робот " + id + " Y, тик " + tick);
+            assertEquals(expected.direction[id], actual.getFleetDirection(id),
+                    "робот " + id + " направление, тик " + tick);
+        }
+    }
+
+    @Test
+    void seeksForwardBackwardAndBetweenKeyframes() throws IOException {
+        Path path = mDirectory.resolve("trajectories.bin");
+        List<Frame> frames = record(path);
+        try (TrajectoryReplay replay = new TrajectoryReplay(path)) {
+            assertEquals(FIRST_TICK, replay.getFirstTick());
+            assertEquals(FIRST_TICK + TICKS - 1, replay.getLastTick());
+            WorldSnapshot snapshot = new WorldSnapshot();
+            for (int tick = 0; tick < TICKS; tick++) {
+                assertFrame(frames.get(tick), FIRST_TICK + tick, replay.readInto(FIRST_TICK + tick, snapshot));
+            }
+            for (int tick = TICKS - 1; tick >= 0; tick--) {
+                assertFrame(frames.get(tick), FIRST_TICK + tick, replay.readInto(FIRST_TICK + tick, snapshot));
+            }
+            // тики между ключевыми кадрами вразброс, в том числе через сжатие и рост флота
+            int[] ticks = {KEYFRAME_INTERVAL + 5, 3, 150, 99, 101, 2 * KEYFRAME_INTERVAL - 1, 131, 7, 129, 100};
+            for (int tick : ticks) {
+                assertFrame(frames.get(tick), FIRST_TICK + tick, replay.readInto(FIRST_TICK + tick, snapshot));
+            }
+            Random random = new Random(5);
+            for (int i = 0; i < 100; i++) {
+                int tick = random.nextInt(TICKS);
+                assertFrame(frames.get(tick), FIRST_TICK + tick, replay.readInto(FIRST_TICK + tick, snapshot));
+            }
+        }
+    }
+
+    @Test
+    void robotsReturningAfterShrinkAreRestoredFromKeyframe() throws IOException {
+        Path path = mDirectory.resolve("trajectories.bin");
+        RobotFleet robot = new RobotFleet(1);
+        robot.addRobot(100, 100, 0, 100, 100);
+        RobotFleet fleet = new RobotFleet(4);
+        List<Frame> frames = new ArrayList<>();
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(path, KEYFRAME_INTERVAL)) {
+            for (int tick = 0; tick < 3 * KEYFRAME_INTERVAL; tick++) {
+                // стоящие роботы пропадают на время ключевого кадра и возвращаются в те же позы
+                if (tick == 0 || tick == 2 * KEYFRAME_INTERVAL + 3) {
+                    fleet.addRobot(10, 20, 1, 10, 20);
+                    fleet.addRobot(30, 40, 2, 30, 40);
+                }
+                if (tick == KEYFRAME_INTERVAL + 3) {
+                    fleet.clear();
+                }
+                fleet.step(DURATION);
+                recorder.record(FIRST_TICK + tick, robot.getPositionX(0), robot.getPositionY(0),
+                        robot.getDirection(0), robot.getTargetX(0), robot.getTargetY(0), fleet);
+                frames.add(new Frame(robot, fleet));
+            }
+        }
+        int tick = 2 * KEYFRAME_INTERVAL + 5;
+        try (TrajectoryReplay replay = new TrajectoryReplay(path)) {
+            assertFrame(frames.get(tick), FIRST_TICK + tick, replay.readInto(FIRST_TICK + tick, new WorldSnapshot()));
+        }
+    }
+
+    @Test
+    void ticksOutsideRecordingClampToEnds() throws IOException {
+        Path path = mDirectory.resolve("trajectories.bin");
+        List<Frame> frames = record(path);
+        try (TrajectoryReplay replay = new TrajectoryReplay(path)) {
+            WorldSnapshot snapshot = new WorldSnapshot();
+            assertFrame(frames.get(TICKS - 1), FIRST_TICK + TICKS - 1, replay.readInto(Long.MAX_VALUE, snapshot));
+            assertFrame(frames.get(0), FIRST_TICK, replay.readInto(0, snapshot));
+        }
+    }
+}
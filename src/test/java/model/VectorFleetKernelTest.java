@@ -0,0 +1,73 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Сравнивает векторный шаг флота со скалярным по оценкам из описания {@link VectorFleetKernel}.
+ * <p>
+ * Перед каждым тиком скалярный флот получает состояние векторного, поэтому сравнивается ошибка
+ * одного тика, а не накопленное расхождение траекторий.
+ */
+class VectorFleetKernelTest {
+    private static final int ROBOTS = 1000;
+    private static final int TICKS = 500;
+    private static final double DURATION = 10;
+    private static final int FIELD = 400;
+    private static final double TOLERANCE = 1e-12;
+
+    @Test
+    void vectorStepMatchesScalarStepEveryTick() {
+        assumeTrue(RobotFleet.isVectorSupported(), "векторный шаг недоступен");
+        Random random = new Random(1);
+        RobotFleet vector = new RobotFleet(ROBOTS);
+        RobotFleet scalar = new RobotFleet(ROBOTS);
+        for (int i = 0; i < ROBOTS; i++) {
+            vector.addRobot(random.nextDouble() * FIELD, random.nextDouble() * FIELD,
+                    random.nextDouble() * 2 * Math.PI, random.nextInt(FIELD), random.nextInt(FIELD));
+        }
+        vector.setVectorized(true);
+        scalar.setVectorized(false);
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            copy(vector, scalar);
+            double[] directions = new double[ROBOTS];
+            for (int i = 0; i < ROBOTS; i++) {
+                directions[i] = vector.getDirection(i);
+            }
+            int moved = vector.step(DURATION);
+            assertEquals(scalar.step(DURATION), moved, "роботов сдвинулось на тике " + tick);
+            for (int i = 0; i < ROBOTS; i++) {
+                String robot = "робот " + i + " на тике " + tick;
+                assertTrue(Math.abs(vector.getPositionX(i) - scalar.getPositionX(i)) <= TOLERANCE, robot);
+                assertTrue(Math.abs(vector.getPositionY(i) - scalar.getPositionY(i)) <= TOLERANCE, robot);
+                assertTrue(Math.abs(angle(vector.getDirection(i) - scalar.getDirection(i))) <= TOLERANCE, robot);
+                assertEquals(Math.signum(angle(scalar.getDirection(i) - directions[i])),
+                        Math.signum(angle(vector.getDirection(i) - directions[i])), "знак поворота, " + robot);
+            }
+        }
+    }
+
+    /**
+     * Переписывает в флот to роботов флота from.
+     */
+    private static void copy(RobotFleet from, RobotFleet to) {
+        to.clear();
+        for (int i = 0; i < from.size(); i++) {
+            to.addRobot(from.getPositionX(i), from.getPositionY(i), from.getDirection(i),
+                    from.getTargetX(i), from.getTargetY(i));
+        }
+    }
+
+    /**
+     * Приводит разность углов к [-π, π], чтобы направления по разные стороны от нуля сравнивались верно.
+     */
+    private static double angle(double difference) {
+        return Math.IEEEremainder(difference, 2 * Math.PI);
+    }
+}
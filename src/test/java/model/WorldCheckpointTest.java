@@ -0,0 +1,163 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет, что мир, восстановленный из файла {@link WorldCheckpoint}, продолжается точно так же,
+ * как исходный, а усеченный или испорченный файл отвергается и не меняет текущий мир.
+ */
+class WorldCheckpointTest {
+    private static final int ROBOTS = 300;
+    private static final int FIELD = 600;
+    private static final int TICKS_BEFORE = 300;
+    private static final int TICKS_AFTER = 500;
+
+    @TempDir
+    Path mDirectory;
+
+    /**
+     * Мир со стеной препятствий, основным роботом за стеной и частью флота, объезжающей стену.
+     */
+    private static GameModel world(long seed) {
+        GameModel model = new GameModel(new RobotFleet(16));
+        for (int y = 100; y < 500; y += 10) {
+            model.toggleObstacle(300, y);
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < ROBOTS; i++) {
+            model.getFleet().addRobot(random.nextDouble() * FIELD, random.nextDouble() * FIELD,
+                    random.nextDouble() * 2 * Math.PI, random.nextInt(FIELD), random.nextInt(FIELD));
+        }
+        for (int id = 0; id < ROBOTS; id += 3) {
+            model.setFleetTarget(id, id % 2 == 0 ? 500 : 100, 300);
+        }
+        model.setTargetPosition(new Point(500, 300));
+        return model;
+    }
+
+    private static void run(GameModel model, int ticks) {
+        for (int tick = 0; tick < ticks; tick++) {
+            model.update(GameModel.DEFAULT_DURATION);
+        }
+    }
+
+    /**
+     * Состояние мира, которое должно совпасть бит в бит: тик, позы, цели и размер флота.
+     */
+    private static double[] state(GameModel model) {
+        RobotFleet fleet = model.getFleet();
+        double[] state = new double[6 + 5 * fleet.size()];
+        state[0] = model.getTick();
+        state[1] = model.getRobotPositionX();
+        state[2] = model.getRobotPositionY();
+        state[3] = model.getRobotDirection();
+        state[4] = model.getTargetPositionX();
+        state[5] = fleet.size();
+        for (int id = 0; id < fleet.size(); id++) {
+            int offset = 6 + 5 * id;
+            state[offset] = fleet.getPositionX(id);
+            state[offset + 1] = fleet.getPositionY(id);
+            state[offset + 2] = fleet.getDirection(id);
+            state[offset + 3] = fleet.getTargetX(id);
+            state[offset + 4] = fleet.getTargetY(id);
+        }
+        return state;
+    }
+
+    @Test
+    void restoredWorldContinuesLikeOriginal() throws IOException {
+        GameModel original = world(1);
+        run(original, TICKS_BEFORE);
+        Path path = mDirectory.resolve("world.ckpt");
+        original.captureCheckpoint().write(path);
+
+        GameModel restored = new GameModel(new RobotFleet(16));
+        assertTrue(restored.restore(WorldCheckpoint.read(path)));
+        for (int tick = 0; tick < TICKS_AFTER; tick++) {
+            original.update(GameModel.DEFAULT_DURATION);
+            restored.update(GameModel.DEFAULT_DURATION);
+            assertArrayEquals(state(original), state(restored), "тик " + original.getTick());
+        }
+        assertEquals(original.getPathPlanner().getMap().getBlockedCount(),
+                restored.getPathPlanner().getMap().getBlockedCount());
+    }
+
+    @Test
+    void rewindToCheckpointRepeatsRun() {
+        GameModel model = world(2);
+        run(model, TICKS_BEFORE);
+        WorldCheckpoint checkpoint = model.captureCheckpoint();
+        double[][] expected = new double[TICKS_AFTER][];
+        for (int tick = 0; tick < TICKS_AFTER; tick++) {
+            model.update(GameModel.DEFAULT_DURATION);
+            expected[tick] = state(model);
+        }
+        assertTrue(model.restore(checkpoint));
+        for (int tick = 0; tick < TICKS_AFTER; tick++) {
+            model.update(GameModel.DEFAULT_DURATION);
+            assertArrayEquals(expected[tick], state(model), "тик " + model.getTick());
+        }
+    }
+
+    @Test
+    void truncatedOrCorruptFileIsRejectedAndWorldIsKept() throws IOException {
+        GameModel source = world(3);
+        run(source, TICKS_BEFORE);
+        Path path = mDirectory.resolve("world.ckpt");
+        source.captureCheckpoint().write(path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        Path truncated = mDirectory.resolve("truncated.ckpt");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 7));
+        Path shortHeader = mDirectory.resolve("header.ckpt");
+        Files.write(shortHeader, Arrays.copyOf(bytes, WorldCheckpoint.HEADER_SIZE / 2));
+        Path wrongMagic = mDirectory.resolve("magic.ckpt");
+        byte[] magic = bytes.clone();
+        magic[0] ^= 0x55;
+        Files.write(wrongMagic, magic);
+        Path flippedPose = mDirectory.resolve("pose.ckpt");
+        byte[] pose = bytes.clone();
+        pose[WorldCheckpoint.HEADER_SIZE + 8 * 17 + 3] ^= 0x10;
+        Files.write(flippedPose, pose);
+        Path flippedObstacles = mDirectory.resolve("obstacles.ckpt");
+        byte[] obstacles = bytes.clone();
+        obstacles[WorldCheckpoint.HEADER_SIZE + 32 * ROBOTS + 5] ^= 0x01;
+        Files.write(flippedObstacles, obstacles);
+
+        GameModel current = world(4);
+        GameModel twin = world(4);
+        run(current, 50);
+        run(twin, 50);
+        for (Path corrupt : new Path[]{truncated, shortHeader, wrongMagic, flippedPose, flippedObstacles}) {
+            assertThrows(IOException.class, () -> current.restore(WorldCheckpoint.read(corrupt)),
+                    corrupt.getFileName().toString());
+        }
+        run(current, 50);
+        run(twin, 50);
+        assertArrayEquals(state(twin), state(current));
+    }
+
+    @Test
+    void checkpointOfOtherMapSizeIsRejectedAndWorldIsKept() {
+        GameModel current = world(5);
+        GameModel twin = world(5);
+        WorldCheckpoint foreign = new WorldCheckpoint(new WorldSnapshot(), new long[0], 3, 3, new int[0]);
+        assertThrows(IllegalArgumentException.class, () -> current.restore(foreign));
+        run(current, 50);
+        run(twin, 50);
+        assertArrayEquals(state(twin), state(current));
+    }
+}
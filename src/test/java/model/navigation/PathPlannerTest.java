@@ -0,0 +1,68 @@
+package model.navigation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathPlannerTest {
+    /**
+     * Карта 10x10 ячеек по 10 единиц со стеной в столбце 5, открытой только в трех нижних строках.
+     */
+    private static PathPlanner plannerWithWall() {
+        PathPlanner planner = new PathPlanner(new ObstacleMap(10, 10, 10));
+        for (int row = 0; row < 7; row++) {
+            planner.setObstacle(55, row * 10 + 5, true);
+        }
+        return planner;
+    }
+
+    @Test
+    void copyWithOtherEndpointIsInvalidatedWithCachedPath() {
+        PathPlanner planner = plannerWithWall();
+        NavigationPath cached = planner.findPath(15, 15, 85, 15);
+        NavigationPath copy = planner.findPath(15, 15, 86, 16);
+        assertEquals(1, planner.getPathHits());
+        assertNotSame(cached, copy);
+        assertEquals(86, copy.getX(copy.size() - 1));
+        assertEquals(16, copy.getY(copy.size() - 1));
+        assertTrue(copy.size() >= 2);
+
+        // препятствие посередине первого отрезка пути между точками поворота
+        planner.setObstacle((copy.getX(0) + copy.getX(1)) / 2, (copy.getY(0) + copy.getY(1)) / 2, true);
+
+        assertFalse(cached.isValid());
+        assertFalse(copy.isValid());
+        long misses = planner.getPathMisses();
+        NavigationPath replanned = planner.findPath(15, 15, 86, 16);
+        assertEquals(misses + 1, planner.getPathMisses());
+        assertNotSame(copy, replanned);
+    }
+
+    @Test
+    void copyStaysValidWhenObstacleMissesPath() {
+        PathPlanner planner = plannerWithWall();
+        planner.findPath(15, 15, 85, 15);
+        NavigationPath copy = planner.findPath(15, 15, 86, 16);
+        planner.setObstacle(5, 95, true);
+        assertTrue(copy.isValid());
+    }
+
+    @Test
+    void obstacleOnFirstLegInvalidatesPathsFromAnyStartInCell() {
+        PathPlanner planner = plannerWithWall();
+        NavigationPath cached = planner.findPath(15, 15, 85, 15);
+        NavigationPath copy = planner.findPath(12, 18, 86, 16);
+        assertEquals(1, planner.getPathHits());
+        assertEquals(12, copy.getStartX());
+        assertEquals(18, copy.getStartY());
+
+        // препятствие посередине отрезка от старта копии к первой точке поворота
+        planner.setObstacle((copy.getStartX() + copy.getX(0)) / 2, (copy.getStartY() + copy.getY(0)) / 2, true);
+
+        assertFalse(cached.isValid());
+        assertFalse(copy.isValid());
+    }
+}